@@ -0,0 +1,97 @@
+package com.trxmgr.hometask.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * HTTP ingest rate of single creates against the batch endpoint. A batch
+ * size of 1 posts to {@code /transactions}, larger sizes post a JSON array to
+ * {@code /transactions/batch}; the {@code rows} counter is the ingest rate to
+ * compare, the primary score counts requests.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class BatchIngestBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Server {
+
+		@Param({ "1", "100", "1000" })
+		public int batchSize;
+
+		RunningApp app;
+		final AtomicLong nextId = new AtomicLong(1);
+
+		@Setup(Level.Trial)
+		public void start() throws IOException {
+			// Tomcat closes a connection after 100 requests by default
+			app = RunningApp.start("trxmgr.storage.wal.durability=async", "server.tomcat.max-keep-alive-requests=-1");
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() throws IOException {
+			app.close();
+		}
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Client {
+
+		public long rows;
+		HttpConnection connection;
+
+		@Setup(Level.Trial)
+		public void connect(Server server) throws IOException {
+			connection = new HttpConnection(server.app.port());
+		}
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			rows = 0;
+		}
+
+		@TearDown(Level.Trial)
+		public void disconnect() throws IOException {
+			connection.close();
+		}
+	}
+
+	@Benchmark
+	public int ingest(Server server, Client client) throws IOException {
+		int size = server.batchSize;
+		long id = server.nextId.getAndAdd(size);
+		client.rows += size;
+		if (size == 1) {
+			return client.connection.create(id, id % 1000);
+		}
+		StringBuilder json = new StringBuilder(size * 64).append('[');
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append(HttpConnection.json(id + i, (id + i) % 1000));
+		}
+		return client.connection.post("/transactions/batch", json.append(']').toString());
+	}
+
+}
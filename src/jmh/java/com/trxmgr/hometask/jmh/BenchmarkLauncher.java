@@ -0,0 +1,39 @@
+package com.trxmgr.hometask.jmh;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the selected benchmarks once per thread count and writes one JSON
+ * result file per run to {@code target/jmh}. Takes the regular JMH command
+ * line, plus {@code -Djmh.threads=1,4,16} for the thread counts. An explicit
+ * {@code -t} runs a single thread count.
+ */
+public class BenchmarkLauncher {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		String[] threadCounts = commandLine.getThreads().hasValue()
+				? new String[] { String.valueOf(commandLine.getThreads().get()) }
+				: System.getProperty("jmh.threads", "1,4,16").split(",");
+
+		File resultDir = new File("target/jmh");
+		resultDir.mkdirs();
+		for (String threads : threadCounts) {
+			int count = Integer.parseInt(threads.trim());
+			Options options = new OptionsBuilder()
+					.parent(commandLine)
+					.threads(count)
+					.resultFormat(ResultFormatType.JSON)
+					.result(new File(resultDir, "storage-t" + count + ".json").getPath())
+					.build();
+			new Runner(options).run();
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.trxmgr.hometask.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency percentiles of creates while many other keep-alive connections
+ * create transactions one after another, on the Tomcat platform pool and on
+ * virtual threads, with the group-commit log. Both ends run in the benchmark
+ * JVM, so the open file limit must allow twice the connection count.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ConnectionLoadBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Server {
+
+		@Param({ "false", "true" })
+		public boolean virtual;
+
+		// connections loading the server besides the measured ones
+		@Param({ "10000" })
+		public int connections;
+
+		RunningApp app;
+		final AtomicLong nextId = new AtomicLong(1);
+		private ExecutorService load;
+		private volatile boolean stopped;
+
+		@Setup(Level.Trial)
+		public void start() throws IOException {
+			app = RunningApp.start("spring.threads.virtual.enabled=" + virtual,
+					"server.tomcat.max-connections=" + (connections + 1000), "trxmgr.storage.wal.durability=group");
+			stopped = false;
+			load = Executors.newVirtualThreadPerTaskExecutor();
+			for (int c = 0; c < connections; c++) {
+				load.submit(() -> {
+					try (HttpConnection connection = new HttpConnection(app.port())) {
+						while (!stopped) {
+							long id = nextId.getAndIncrement();
+							connection.create(id, id % 1000);
+						}
+					}
+					return null;
+				});
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() throws IOException {
+			stopped = true;
+			load.close();
+			app.close();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Client {
+
+		HttpConnection connection;
+
+		@Setup(Level.Trial)
+		public void connect(Server server) throws IOException {
+			connection = new HttpConnection(server.app.port());
+		}
+
+		@TearDown(Level.Trial)
+		public void disconnect() throws IOException {
+			connection.close();
+		}
+	}
+
+	@Benchmark
+	public int create(Server server, Client client) throws IOException {
+		long id = server.nextId.getAndIncrement();
+		return client.connection.create(id, id % 1000);
+	}
+
+}
@@ -0,0 +1,67 @@
+package com.trxmgr.hometask.jmh;
+
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.trxmgr.hometask.entities.BankingTransaction;
+
+/**
+ * Reads of a small hot set of ids that serialize the transaction every time
+ * against reads served from the encoded read cache. Run with {@code -prof gc}
+ * to compare the bytes allocated per read.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class HotReadBenchmark {
+
+	private static final int HOT = 1000;
+
+	@State(Scope.Benchmark)
+	public static class Json {
+
+		final ObjectWriter writer = new ObjectMapper().writerFor(BankingTransaction.class);
+		// one instance, so reads allocate no lambda
+		final Function<BankingTransaction, byte[]> encoder = this::write;
+
+		byte[] write(BankingTransaction trx) {
+			try {
+				return writer.writeValueAsBytes(trx);
+			} catch (JsonProcessingException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	// the same ids of the store, picked at random by every thread
+	private static long hotId(StoreState store, ThreadState thread) {
+		return (thread.random.nextInt(HOT) * 0x9E3779B1L & 0x7FFFFFFFL) % store.size;
+	}
+
+	@Benchmark
+	public byte[] serialize(StoreState store, ThreadState thread, Json json) {
+		return json.write(store.storage.get(hotId(store, thread)));
+	}
+
+	@Benchmark
+	public byte[] cached(StoreState store, ThreadState thread, Json json) {
+		return store.storage.getEncoded(hotId(store, thread), json.encoder).getBytes();
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.trxmgr.hometask.jmh;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One keep-alive HTTP/1.1 connection sending requests one after another and
+ * skipping the response bodies, cheap enough to hold thousands of them.
+ */
+final class HttpConnection implements AutoCloseable {
+
+	private final Socket socket;
+	private final OutputStream out;
+	private final InputStream in;
+
+	HttpConnection(int port) throws IOException {
+		this.socket = new Socket("localhost", port);
+		socket.setSoTimeout(120_000);
+		this.out = socket.getOutputStream();
+		this.in = new BufferedInputStream(socket.getInputStream());
+	}
+
+	/**
+	 * Creates a transaction of the given user.
+	 *
+	 * @return the response status
+	 */
+	int create(long id, long user) throws IOException {
+		return post("/transactions", json(id, user));
+	}
+
+	static String json(long id, long user) {
+		return "{\"id\":" + id + ",\"type\":1,\"user\":" + user + ",\"amount\":" + id + "}";
+	}
+
+	int post(String path, String json) throws IOException {
+		out.write(("POST " + path + " HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\nContent-Length: "
+				+ json.length() + "\r\n\r\n" + json).getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+		return readResponse();
+	}
+
+	private int readResponse() throws IOException {
+		int status = Integer.parseInt(readLine().split(" ")[1]);
+		int length = 0;
+		boolean chunked = false;
+		for (String header = readLine(); !header.isEmpty(); header = readLine()) {
+			String lower = header.toLowerCase();
+			if (lower.startsWith("content-length:")) {
+				length = Integer.parseInt(lower.substring(15).trim());
+			} else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+				chunked = true;
+			}
+		}
+		if (!chunked) {
+			in.skipNBytes(length);
+			return status;
+		}
+		for (int size = Integer.parseInt(readLine(), 16); size > 0; size = Integer.parseInt(readLine(), 16)) {
+			in.skipNBytes(size);
+			readLine();
+		}
+		readLine();
+		return status;
+	}
+
+	private String readLine() throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+		for (int b = in.read(); b != '\n'; b = in.read()) {
+			if (b < 0) {
+				throw new IOException("connection closed");
+			}
+			if (b != '\r') {
+				line.write(b);
+			}
+		}
+		return line.toString(StandardCharsets.US_ASCII);
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+
+}
@@ -0,0 +1,112 @@
+package com.trxmgr.hometask.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency percentiles of creates while more clients than the fsync-per-write
+ * log can serve create transactions too, with and without admission control.
+ * The creates the measured threads got accepted and rejected are printed
+ * after each iteration.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class OverloadBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Server {
+
+		@Param({ "false", "true" })
+		public boolean admission;
+
+		// clients loading the server besides the measured ones
+		@Param({ "1000" })
+		public int clients;
+
+		RunningApp app;
+		final AtomicLong nextId = new AtomicLong(1);
+		final AtomicLong accepted = new AtomicLong();
+		final AtomicLong rejected = new AtomicLong();
+		private ExecutorService load;
+		private volatile boolean stopped;
+
+		@Setup(Level.Trial)
+		public void start() throws IOException {
+			app = RunningApp.start("trxmgr.admission.enabled=" + admission, "trxmgr.storage.wal.durability=fsync");
+			stopped = false;
+			load = Executors.newVirtualThreadPerTaskExecutor();
+			for (int c = 0; c < clients; c++) {
+				load.submit(() -> {
+					try (HttpConnection connection = new HttpConnection(app.port())) {
+						while (!stopped) {
+							long id = nextId.getAndIncrement();
+							connection.create(id, id % 1000);
+						}
+					}
+					return null;
+				});
+			}
+		}
+
+		@TearDown(Level.Iteration)
+		public void report() {
+			System.out.printf("accepted=%,d rejected=%,d%n", accepted.getAndSet(0), rejected.getAndSet(0));
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() throws IOException {
+			stopped = true;
+			load.close();
+			app.close();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Client {
+
+		HttpConnection connection;
+
+		@Setup(Level.Trial)
+		public void connect(Server server) throws IOException {
+			connection = new HttpConnection(server.app.port());
+		}
+
+		@TearDown(Level.Trial)
+		public void disconnect() throws IOException {
+			connection.close();
+		}
+	}
+
+	@Benchmark
+	public int create(Server server, Client client) throws IOException {
+		long id = server.nextId.getAndIncrement();
+		int status = client.connection.create(id, id % 1000);
+		if (status == 200) {
+			server.accepted.incrementAndGet();
+		} else if (status == 429) {
+			server.rejected.incrementAndGet();
+		}
+		return status;
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.trxmgr.hometask.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.trxmgr.hometask.services.RateLimitProperties;
+import com.trxmgr.hometask.services.UserRateLimiter;
+
+/**
+ * Cost of a per-user rate limit check with many distinct users, each with a
+ * bucket for the default limit and one for a type of its own.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1)
+public class RateLimitBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Limiter {
+
+		@Param({ "100000" })
+		public int users;
+
+		UserRateLimiter limiter;
+
+		@Setup(Level.Trial)
+		public void fill() {
+			RateLimitProperties properties = new RateLimitProperties();
+			properties.setEnabled(true);
+			// a burst large enough that every check takes a token, and no
+			// eviction, so every check finds its user's bucket
+			properties.setDefaults(new RateLimitProperties.Limit(1, 1_000_000_000));
+			properties.getTypes().put(1, new RateLimitProperties.Limit(1, 1_000_000_000));
+			properties.setEvictIntervalSeconds(0);
+			limiter = new UserRateLimiter(properties);
+			for (long user = 0; user < users; user++) {
+				limiter.tryAcquire(user, 0);
+				limiter.tryAcquire(user, 1);
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void close() {
+			limiter.shutdown();
+		}
+	}
+
+	@Benchmark
+	public long tryAcquire(Limiter limiter, ThreadState thread) {
+		return limiter.limiter.tryAcquire(thread.random.nextInt(limiter.users), thread.random.nextInt(2));
+	}
+
+}
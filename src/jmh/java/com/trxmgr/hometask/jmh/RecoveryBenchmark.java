@@ -0,0 +1,131 @@
+package com.trxmgr.hometask.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.services.StorageProperties;
+import com.trxmgr.hometask.services.TransactionStorage;
+
+/**
+ * Snapshot writing and startup recovery. {@code snapshot} writes a snapshot
+ * of a filled store, {@code recover} starts a store from a snapshot plus a
+ * log tail of {@value #TAIL} updates. Both are single shots and meant for one
+ * thread, {@code -t 1}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class RecoveryBenchmark {
+
+	static final int TAIL = 100_000;
+
+	@State(Scope.Benchmark)
+	public static abstract class Log {
+
+		@Param({ "2000000" })
+		public int rows;
+
+		@Param({ "heap", "columnar" })
+		public String engine;
+
+		StorageProperties properties;
+		private Path dir;
+
+		TransactionStorage open() throws IOException {
+			dir = Files.createTempDirectory("trxmgr-jmh");
+			properties = new StorageProperties();
+			properties.setEngine(StorageProperties.Engine.valueOf(engine));
+			properties.getWal().setDir(dir.toString());
+			properties.getWal().setDurability(StorageProperties.Durability.async);
+			properties.getWal().setSnapshotIntervalSeconds(0);
+			TransactionStorage storage = new TransactionStorage(properties);
+			List<BankingTransaction> batch = new ArrayList<>();
+			for (int i = 0; i < rows; i++) {
+				batch.add(StoreState.newTrx(i));
+				if (batch.size() == 10_000) {
+					storage.addAll(batch);
+					batch = new ArrayList<>();
+				}
+			}
+			storage.addAll(batch);
+			return storage;
+		}
+
+		@TearDown(Level.Trial)
+		public void delete() throws IOException {
+			FileSystemUtils.deleteRecursively(dir);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Live extends Log {
+
+		TransactionStorage storage;
+
+		@Setup(Level.Trial)
+		public void fill() throws IOException {
+			storage = open();
+		}
+
+		@TearDown(Level.Trial)
+		public void close() {
+			storage.cleanup();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Stopped extends Log {
+
+		TransactionStorage recovered;
+
+		@Setup(Level.Trial)
+		public void fill() throws IOException {
+			TransactionStorage storage = open();
+			storage.snapshot();
+			for (int i = 0; i < TAIL; i++) {
+				storage.updateStatus(i, BankingTransaction.COMPLETE_STATUS);
+			}
+			storage.cleanup();
+		}
+
+		@TearDown(Level.Iteration)
+		public void close() {
+			recovered.cleanup();
+			recovered = null;
+		}
+	}
+
+	@Benchmark
+	public void snapshot(Live live) throws IOException {
+		live.storage.snapshot();
+	}
+
+	@Benchmark
+	public int recover(Stopped stopped) {
+		stopped.recovered = new TransactionStorage(stopped.properties);
+		return stopped.recovered.size();
+	}
+
+}
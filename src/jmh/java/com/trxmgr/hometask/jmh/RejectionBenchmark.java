@@ -0,0 +1,69 @@
+package com.trxmgr.hometask.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.trxmgr.hometask.controllers.GlobalExceptionHandler;
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.InvalidTransationException.InvalidField;
+import com.trxmgr.hometask.services.TransactionStorage;
+
+/**
+ * Creates that are accepted against creates that are rejected by validation
+ * and answered with the pre-rendered response. Run with {@code -prof gc} to
+ * compare the bytes allocated per create.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class RejectionBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Store {
+
+		TransactionStorage storage;
+		final AtomicLong nextId = new AtomicLong(1);
+
+		// a fresh store per iteration, so accepted creates do not measure a
+		// growing heap
+		@Setup(Level.Iteration)
+		public void open() {
+			storage = new TransactionStorage();
+		}
+
+		@TearDown(Level.Iteration)
+		public void close() {
+			storage.cleanup();
+		}
+	}
+
+	@Benchmark
+	public boolean accepted(Store store) {
+		return store.storage.add(StoreState.newTrx(store.nextId.getAndIncrement()));
+	}
+
+	// the controller's path: validate, then write the rendered response
+	@Benchmark
+	public int rejected(Store store, ThreadState thread) {
+		int i = thread.random.nextInt(1_000_000);
+		BankingTransaction trx = new BankingTransaction(-1 - i, i % 100, i, i, 0, 0, 0);
+		InvalidField invalid = TransactionStorage.validate(trx);
+		return invalid == null ? 0 : GlobalExceptionHandler.<byte[]> invalid(invalid).getBody().length;
+	}
+
+}
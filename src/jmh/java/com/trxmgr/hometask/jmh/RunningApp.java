@@ -0,0 +1,54 @@
+package com.trxmgr.hometask.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import com.trxmgr.hometask.TrxmgrApplication;
+
+/**
+ * The application started inside the benchmark JVM on a free port, with a
+ * write-ahead log in a directory of its own that is deleted on close.
+ */
+final class RunningApp implements AutoCloseable {
+
+	private final ServletWebServerApplicationContext context;
+	private final Path dir;
+
+	private RunningApp(ServletWebServerApplicationContext context, Path dir) {
+		this.context = context;
+		this.dir = dir;
+	}
+
+	/**
+	 * @param properties application properties on top of a free port, the log
+	 *                   directory without snapshots and warn level logging
+	 */
+	static RunningApp start(String... properties) throws IOException {
+		Path dir = Files.createTempDirectory("trxmgr-jmh");
+		List<String> all = new ArrayList<>(List.of("server.port=0", "trxmgr.storage.wal.dir=" + dir,
+				"trxmgr.storage.wal.snapshot-interval-seconds=0", "logging.level.root=warn"));
+		all.addAll(Arrays.asList(properties));
+		ServletWebServerApplicationContext context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(
+				TrxmgrApplication.class).properties(all.toArray(String[]::new)).run();
+		return new RunningApp(context, dir);
+	}
+
+	int port() {
+		return context.getWebServer().getPort();
+	}
+
+	@Override
+	public void close() throws IOException {
+		context.close();
+		FileSystemUtils.deleteRecursively(dir);
+	}
+
+}
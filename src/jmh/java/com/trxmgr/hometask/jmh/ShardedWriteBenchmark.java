@@ -0,0 +1,93 @@
+package com.trxmgr.hometask.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.services.StorageProperties;
+import com.trxmgr.hometask.services.TransactionStorage;
+
+/**
+ * Write throughput of both engines by shard count. Each operation adds a new
+ * row and deletes the one the same thread added before, so the store keeps
+ * its size; run with {@code -t} or {@code -Djmh.threads} above the core count
+ * to see the shards relieve contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ShardedWriteBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class ShardedStore {
+
+		@Param({ "1", "4", "16" })
+		public int shards;
+
+		@Param({ "heap", "columnar" })
+		public String engine;
+
+		@Param({ "1000000" })
+		public int size;
+
+		TransactionStorage storage;
+		final AtomicLong nextId = new AtomicLong();
+
+		@Setup(Level.Trial)
+		public void fill() {
+			StorageProperties properties = new StorageProperties();
+			properties.setEngine(StorageProperties.Engine.valueOf(engine));
+			properties.setShards(shards);
+			storage = new TransactionStorage(properties);
+			List<BankingTransaction> batch = new ArrayList<>();
+			for (int i = 0; i < size; i++) {
+				batch.add(StoreState.newTrx(i));
+				if (batch.size() == 10_000) {
+					storage.addAll(batch);
+					batch = new ArrayList<>();
+				}
+			}
+			storage.addAll(batch);
+			nextId.set(size);
+		}
+
+		@TearDown(Level.Trial)
+		public void close() {
+			storage.cleanup();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Writer {
+
+		long last = -1;
+	}
+
+	@Benchmark
+	public BankingTransaction addDelete(ShardedStore store, Writer writer) {
+		long id = store.nextId.getAndIncrement();
+		store.storage.add(StoreState.newTrx(id));
+		BankingTransaction deleted = writer.last < 0 ? null : store.storage.delete(writer.last);
+		writer.last = id;
+		return deleted;
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.trxmgr.hometask.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+
+/**
+ * Throughput of the non-destructive storage operations on a store of fixed
+ * size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class StorageBenchmark {
+
+	@Benchmark
+	public BankingTransaction get(StoreState store, ThreadState thread) {
+		return store.storage.get(thread.id(store));
+	}
+
+	@Benchmark
+	public List<BankingTransaction> getPage(StoreState store, ThreadState thread) {
+		int pageSize = 20;
+		return store.storage.getPage(1 + thread.random.nextInt(store.size / pageSize), pageSize);
+	}
+
+	@Benchmark
+	public BankingTransaction updateStatus(StoreState store, ThreadState thread) {
+		int status = thread.random.nextBoolean() ? BankingTransaction.COMPLETE_STATUS
+				: BankingTransaction.FAILED_STATUS;
+		return store.storage.updateStatus(thread.id(store), status);
+	}
+
+	@Benchmark
+	public BankingTransaction updateAmount(StoreState store, ThreadState thread) {
+		return store.storage.updateAmount(thread.id(store), thread.random.nextLong(1_000_000));
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.trxmgr.hometask.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+
+/**
+ * Cost of add and delete. Both change the store, so every iteration runs a
+ * fixed batch of operations per thread and the store is restored between
+ * iterations. Scores are the time of a whole batch of {@value #BATCH}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = StorageChurnBenchmark.BATCH)
+@Measurement(iterations = 30, batchSize = StorageChurnBenchmark.BATCH)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class StorageChurnBenchmark {
+
+	static final int BATCH = 500;
+
+	@State(Scope.Benchmark)
+	public static class Churn {
+
+		int[] deleteOrder;
+		int deleteOffset;
+		final AtomicInteger deletes = new AtomicInteger();
+		final AtomicLong nextNew = new AtomicLong();
+
+		@Setup(Level.Trial)
+		public void shuffle(StoreState store) {
+			deleteOrder = new int[store.size];
+			SplittableRandom random = new SplittableRandom(42);
+			for (int i = 0; i < deleteOrder.length; i++) {
+				int j = random.nextInt(i + 1);
+				deleteOrder[i] = deleteOrder[j];
+				deleteOrder[j] = i;
+			}
+		}
+
+		@Setup(Level.Iteration)
+		public void reset(StoreState store) {
+			nextNew.set(store.size);
+			deletes.set(0);
+		}
+
+		@TearDown(Level.Iteration)
+		public void restore(StoreState store) {
+			List<Long> added = new ArrayList<>();
+			for (long id = store.size; id < nextNew.get(); id++) {
+				added.add(id);
+			}
+			store.storage.deleteAll(added);
+
+			List<BankingTransaction> deleted = new ArrayList<>();
+			for (int i = 0; i < deletes.get(); i++) {
+				deleted.add(StoreState.newTrx(deleteOrder[(deleteOffset + i) % deleteOrder.length]));
+			}
+			store.storage.addAll(deleted);
+			deleteOffset = (deleteOffset + deletes.get()) % deleteOrder.length;
+		}
+
+		long nextDelete() {
+			return deleteOrder[(deleteOffset + deletes.getAndIncrement()) % deleteOrder.length];
+		}
+	}
+
+	@Benchmark
+	public boolean add(StoreState store, Churn churn) {
+		return store.storage.add(StoreState.newTrx(churn.nextNew.getAndIncrement()));
+	}
+
+	@Benchmark
+	public BankingTransaction delete(StoreState store, Churn churn) {
+		return store.storage.delete(churn.nextDelete());
+	}
+
+}
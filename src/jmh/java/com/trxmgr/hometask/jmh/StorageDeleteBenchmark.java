@@ -0,0 +1,166 @@
+package com.trxmgr.hometask.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.services.TransactionStorage;
+
+/**
+ * Delete cost of the slot-indexed storage against the former ArrayList and
+ * fork-join search layout. Each call deletes a random row and adds it back,
+ * so the store keeps its size; adding is cheap in both layouts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class StorageDeleteBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Store {
+
+		@Param({ "legacy", "slot" })
+		public String layout;
+
+		@Param({ "1000000", "10000000" })
+		public int rows;
+
+		private LegacyStorage legacy;
+		private TransactionStorage storage;
+
+		@Setup(Level.Trial)
+		public void fill() {
+			if (layout.equals("legacy")) {
+				legacy = new LegacyStorage();
+				for (int i = 0; i < rows; i++) {
+					legacy.add(StoreState.newTrx(i));
+				}
+			} else {
+				storage = new TransactionStorage();
+				for (int i = 0; i < rows; i++) {
+					storage.add(StoreState.newTrx(i));
+				}
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void close() {
+			if (legacy != null) {
+				legacy.cleanup();
+			} else {
+				storage.cleanup();
+			}
+		}
+
+		// a row another thread deleted first is left for that thread to add back
+		BankingTransaction deleteAndAdd(long id) {
+			if (legacy != null) {
+				BankingTransaction trx = legacy.delete(id);
+				if (trx != null) {
+					legacy.add(trx);
+				}
+				return trx;
+			}
+			BankingTransaction trx = storage.delete(id);
+			if (trx != null) {
+				storage.add(StoreState.newTrx(id));
+			}
+			return trx;
+		}
+	}
+
+	@Benchmark
+	public BankingTransaction delete(Store store, ThreadState thread) {
+		return store.deleteAndAdd(thread.random.nextInt(store.rows));
+	}
+
+	// the storage layout before slot indexing, kept here as the baseline
+	private static class LegacyStorage {
+
+		private final Map<Long, BankingTransaction> trxMap = new ConcurrentHashMap<>();
+		private final List<BankingTransaction> trxList = new ArrayList<>();
+		private final ForkJoinPool searchPool = new ForkJoinPool();
+
+		void add(BankingTransaction trx) {
+			trxMap.put(trx.getId(), trx);
+			synchronized (trxList) {
+				trxList.add(trx);
+			}
+		}
+
+		BankingTransaction delete(long id) {
+			BankingTransaction trx = trxMap.remove(id);
+			if (trx == null) {
+				return trx;
+			}
+			synchronized (trxList) {
+				int targetIdx = searchPool.invoke(new LegacySearcher(trxList, 0, trxList.size(), id));
+				if (targetIdx >= 0) {
+					trxList.remove(targetIdx);
+				}
+			}
+			return trx;
+		}
+
+		void cleanup() {
+			searchPool.shutdown();
+		}
+	}
+
+	private static class LegacySearcher extends RecursiveTask<Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<BankingTransaction> all;
+		private final int start;
+		private final int end;
+		private final long target;
+
+		LegacySearcher(List<BankingTransaction> all, int start, int end, long target) {
+			this.all = all;
+			this.start = start;
+			this.end = end;
+			this.target = target;
+		}
+
+		@Override
+		protected Integer compute() {
+			int length = end - start;
+			if (length <= 10000) {
+				for (int i = start; i < end; i++) {
+					if (all.get(i).getId() == target) {
+						return i;
+					}
+				}
+				return -1;
+			}
+			int split = length / 2;
+			LegacySearcher left = new LegacySearcher(all, start, start + split, target);
+			left.fork();
+			LegacySearcher right = new LegacySearcher(all, start + split, end, target);
+			return Math.max(right.compute(), left.join());
+		}
+	}
+
+}
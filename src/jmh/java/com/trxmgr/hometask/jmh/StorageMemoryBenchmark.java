@@ -0,0 +1,111 @@
+package com.trxmgr.hometask.jmh;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.trxmgr.hometask.services.StorageProperties;
+import com.trxmgr.hometask.services.TransactionStorage;
+
+/**
+ * Retained heap and collector cost of the storage engines. Every iteration
+ * loads a fresh store with single adds, the threads share the rows; the score
+ * is the load time, and the iteration prints the heap the store retains, the
+ * collections the load caused and the time of a full collection with the
+ * store live. Add {@code -prof gc} for allocation rates.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class StorageMemoryBenchmark {
+
+	static final int CHUNK = 10_000;
+
+	@State(Scope.Benchmark)
+	public static class Load {
+
+		@Param({ "10000000" })
+		public int rows;
+
+		@Param({ "heap", "columnar" })
+		public String engine;
+
+		TransactionStorage storage;
+		final AtomicInteger next = new AtomicInteger();
+		private long heapBefore;
+		private long[] gcBefore;
+
+		@Setup(Level.Iteration)
+		public void open() {
+			StorageProperties properties = new StorageProperties();
+			properties.setEngine(StorageProperties.Engine.valueOf(engine));
+			storage = new TransactionStorage(properties);
+			next.set(0);
+			heapBefore = usedHeapAfterGc();
+			gcBefore = gcTotals();
+		}
+
+		@TearDown(Level.Iteration)
+		public void report() {
+			long[] gcAfter = gcTotals();
+			long retained = usedHeapAfterGc() - heapBefore;
+			long fullGcStart = System.nanoTime();
+			System.gc();
+			long fullGcMillis = (System.nanoTime() - fullGcStart) / 1_000_000;
+			System.out.printf("retained=%,dMB bytes/row=%d gc-count=%d gc-time=%,dms full-gc=%,dms size=%d%n",
+					retained >> 20, retained / rows, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1],
+					fullGcMillis, storage.size());
+			storage.cleanup();
+			storage = null;
+		}
+	}
+
+	@Benchmark
+	public int load(Load load) {
+		int added = 0;
+		for (int from; (from = load.next.getAndAdd(CHUNK)) < load.rows;) {
+			int to = Math.min(from + CHUNK, load.rows);
+			for (int i = from; i < to; i++) {
+				load.storage.add(StoreState.newTrx(i));
+				added++;
+			}
+		}
+		return added;
+	}
+
+	private static long usedHeapAfterGc() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static long[] gcTotals() {
+		long count = 0;
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return new long[] { count, time };
+	}
+
+}
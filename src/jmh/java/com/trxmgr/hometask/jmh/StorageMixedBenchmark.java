@@ -0,0 +1,65 @@
+package com.trxmgr.hometask.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+
+/**
+ * Readers and writers running against the same store at fixed ratios. The
+ * ratio is the thread split of each group, {@code -tg} changes it and
+ * {@code -t} scales it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class StorageMixedBenchmark {
+
+	@Benchmark
+	@Group("read90")
+	@GroupThreads(9)
+	public BankingTransaction read90Get(StoreState store, ThreadState thread) {
+		return store.storage.get(thread.id(store));
+	}
+
+	@Benchmark
+	@Group("read90")
+	@GroupThreads(1)
+	public BankingTransaction read90UpdateStatus(StoreState store, ThreadState thread) {
+		return store.storage.updateStatus(thread.id(store), BankingTransaction.COMPLETE_STATUS);
+	}
+
+	@Benchmark
+	@Group("read50")
+	@GroupThreads(2)
+	public List<BankingTransaction> read50GetPage(StoreState store, ThreadState thread) {
+		return store.storage.getPage(1 + thread.random.nextInt(store.size / 20), 20);
+	}
+
+	@Benchmark
+	@Group("read50")
+	@GroupThreads(1)
+	public BankingTransaction read50UpdateAmount(StoreState store, ThreadState thread) {
+		return store.storage.updateAmount(thread.id(store), thread.random.nextLong(1_000_000));
+	}
+
+	@Benchmark
+	@Group("read50")
+	@GroupThreads(1)
+	public BankingTransaction read50UpdateStatus(StoreState store, ThreadState thread) {
+		return store.storage.updateStatus(thread.id(store), BankingTransaction.FAILED_STATUS);
+	}
+
+}
@@ -0,0 +1,56 @@
+package com.trxmgr.hometask.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.services.StorageProperties;
+import com.trxmgr.hometask.services.TransactionStorage;
+
+/**
+ * A store shared by all benchmark threads, filled with ids 0 until size.
+ */
+@State(Scope.Benchmark)
+public class StoreState {
+
+	@Param({ "10000", "1000000", "10000000" })
+	public int size;
+
+	@Param({ "heap", "columnar" })
+	public String engine;
+
+	public TransactionStorage storage;
+
+	@Setup(Level.Trial)
+	public void fill() {
+		StorageProperties properties = new StorageProperties();
+		properties.setEngine(StorageProperties.Engine.valueOf(engine));
+		storage = new TransactionStorage(properties);
+		List<BankingTransaction> batch = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			batch.add(newTrx(i));
+			if (batch.size() == 10_000) {
+				storage.addAll(batch);
+				batch = new ArrayList<>();
+			}
+		}
+		storage.addAll(batch);
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		storage.cleanup();
+	}
+
+	static BankingTransaction newTrx(long id) {
+		return new BankingTransaction(id, (int) (id % 100), id % 100_000, id, 0, 0, 0);
+	}
+
+}
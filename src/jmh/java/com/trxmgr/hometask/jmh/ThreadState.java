@@ -0,0 +1,20 @@
+package com.trxmgr.hometask.jmh;
+
+import java.util.SplittableRandom;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-thread random source, so picking an id costs no contention.
+ */
+@State(Scope.Thread)
+public class ThreadState {
+
+	public final SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+
+	long id(StoreState store) {
+		return random.nextInt(store.size);
+	}
+
+}
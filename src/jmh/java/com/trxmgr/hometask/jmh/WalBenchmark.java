@@ -0,0 +1,75 @@
+package com.trxmgr.hometask.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.services.StorageProperties;
+import com.trxmgr.hometask.services.TransactionStorage;
+
+/**
+ * Durable write throughput of every durability mode. Each iteration writes to
+ * an empty store with a log in a fresh directory, so the log length does not
+ * carry over; run it with {@code -t 64} or {@code -Djmh.threads=1,16,64} to see
+ * how group commit scales with writers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class WalBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Log {
+
+		@Param({ "fsync", "group", "async" })
+		public String durability;
+
+		TransactionStorage storage;
+		final AtomicLong nextId = new AtomicLong();
+		private Path dir;
+
+		@Setup(Level.Iteration)
+		public void open() throws IOException {
+			dir = Files.createTempDirectory("trxmgr-jmh");
+			StorageProperties properties = new StorageProperties();
+			properties.getWal().setDir(dir.toString());
+			properties.getWal().setDurability(StorageProperties.Durability.valueOf(durability));
+			properties.getWal().setSnapshotIntervalSeconds(0);
+			storage = new TransactionStorage(properties);
+			nextId.set(0);
+		}
+
+		@TearDown(Level.Iteration)
+		public void close() throws IOException {
+			storage.cleanup();
+			FileSystemUtils.deleteRecursively(dir);
+		}
+	}
+
+	@Benchmark
+	public boolean add(Log log) {
+		long id = log.nextId.incrementAndGet();
+		return log.storage.add(new BankingTransaction(id, 0, id, id, 0, 0, 0));
+	}
+
+}
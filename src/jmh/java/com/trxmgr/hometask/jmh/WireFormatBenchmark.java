@@ -0,0 +1,94 @@
+package com.trxmgr.hometask.jmh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.PageResponse;
+import com.trxmgr.hometask.services.TrxRecord;
+
+/**
+ * Encode and decode cost of a cursor page in the JSON, CBOR and fixed-width
+ * record formats the controller negotiates. The encoded size of the page is
+ * printed when each trial sets up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1)
+public class WireFormatBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Page {
+
+		@Param({ "json", "cbor", "record" })
+		public String format;
+
+		@Param({ "100" })
+		public int pageSize;
+
+		PageResponse page;
+		ObjectMapper mapper;
+		byte[] bytes;
+
+		@Setup(Level.Trial)
+		public void encode() throws IOException {
+			List<BankingTransaction> rows = new ArrayList<>(pageSize);
+			long now = System.currentTimeMillis();
+			for (int i = 0; i < pageSize; i++) {
+				long id = 1_000_000_000L + i;
+				rows.add(new BankingTransaction(id, i % 100, 1_000_000L + i % 1000, 123_456L * i, i % 3, now + i,
+						now + i, 1));
+			}
+			page = new PageResponse(0, pageSize, PageResponse.UNCOUNTED, PageResponse.UNCOUNTED, rows);
+			page.setNextCursor((now + pageSize) + "-" + (1_000_000_000L + pageSize));
+			mapper = switch (format) {
+			case "json" -> new ObjectMapper();
+			case "cbor" -> new CBORMapper();
+			default -> null;
+			};
+			bytes = write(page);
+			System.out.printf("%s page of %d rows: %,d bytes, %.1f per row%n", format, pageSize, bytes.length,
+					(double) bytes.length / pageSize);
+		}
+
+		byte[] write(PageResponse page) throws IOException {
+			return mapper == null ? TrxRecord.encodePage(page) : mapper.writeValueAsBytes(page);
+		}
+
+		PageResponse read(byte[] bytes) throws IOException {
+			return mapper == null ? TrxRecord.decodePage(ByteBuffer.wrap(bytes))
+					: mapper.readValue(bytes, PageResponse.class);
+		}
+	}
+
+	@Benchmark
+	public byte[] encode(Page page) throws IOException {
+		return page.write(page.page);
+	}
+
+	@Benchmark
+	public PageResponse decode(Page page) throws IOException {
+		return page.read(page.bytes);
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.trxmgr.hometask.controllers;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.trxmgr.hometask.services.AdaptiveLimiter;
+import com.trxmgr.hometask.services.AdmissionProperties;
+import com.trxmgr.hometask.services.StorageTime;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Admits write requests through one {@link AdaptiveLimiter} per endpoint,
+ * which follows the time the request spent in storage calls, see
+ * {@link StorageTime}; reading a slow client's body does not count. A
+ * request that finds no slot within the queue timeout is answered with 429
+ * and a Retry-After header before its body is read. Reads are not limited.
+ */
+@Component
+public class AdmissionInterceptor implements HandlerInterceptor, WebMvcConfigurer {
+
+	private static final String ADMITTED = AdmissionInterceptor.class.getName() + ".admitted";
+	private static final byte[] REJECTED_BODY = "{\"message\":\"too many concurrent requests\"}"
+			.getBytes(StandardCharsets.UTF_8);
+
+	private final AdmissionProperties properties;
+	private final MeterRegistry registry;
+	private final String retryAfter;
+	private final Map<Method, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+	public AdmissionInterceptor(AdmissionProperties properties, MeterRegistry registry) {
+		super();
+		this.properties = properties;
+		this.registry = registry;
+		this.retryAfter = String.valueOf(properties.getRetryAfterSeconds());
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		if (properties.isEnabled()) {
+			registry.addInterceptor(this).addPathPatterns("/transactions/**");
+		}
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+			throws Exception {
+		if (!(handler instanceof HandlerMethod method) || HttpMethod.GET.matches(request.getMethod())
+				|| HttpMethod.HEAD.matches(request.getMethod())) {
+			return true;
+		}
+		Endpoint endpoint = endpoints.computeIfAbsent(method.getMethod(), this::endpoint);
+		if (!endpoint.limiter.acquire()) {
+			endpoint.rejected.increment();
+			response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+			response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+			response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+			response.getOutputStream().write(REJECTED_BODY);
+			return false;
+		}
+		request.setAttribute(ADMITTED, endpoint.limiter);
+		// left over by an earlier request on this thread
+		StorageTime.take();
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		if (request.getAttribute(ADMITTED) instanceof AdaptiveLimiter limiter) {
+			limiter.release(StorageTime.take());
+		}
+	}
+
+	private Endpoint endpoint(Method method) {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(properties);
+		Gauge.builder("trxmgr.admission.limit", limiter, AdaptiveLimiter::limit).tag("endpoint", method.getName())
+				.description("concurrent requests admitted").register(registry);
+		Gauge.builder("trxmgr.admission.in.flight", limiter, AdaptiveLimiter::inFlight)
+				.tag("endpoint", method.getName()).description("requests being handled").register(registry);
+		Gauge.builder("trxmgr.admission.queued", limiter, AdaptiveLimiter::queued).tag("endpoint", method.getName())
+				.description("requests waiting for a slot").register(registry);
+		Counter rejected = Counter.builder("trxmgr.admission.rejected").tag("endpoint", method.getName())
+				.description("requests refused with 429").register(registry);
+		return new Endpoint(limiter, rejected);
+	}
+
+	private record Endpoint(AdaptiveLimiter limiter, Counter rejected) {
+	}
+
+}
@@ -1,22 +1,108 @@
 package com.trxmgr.hometask.controllers;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.trxmgr.hometask.entities.IdempotencyConflictException;
+import com.trxmgr.hometask.entities.InvalidCursorException;
+import com.trxmgr.hometask.entities.InvalidIdempotencyKeyException;
 import com.trxmgr.hometask.entities.InvalidTransationException;
+import com.trxmgr.hometask.entities.InvalidTransationException.InvalidField;
+import com.trxmgr.hometask.entities.RateLimitedException;
+import com.trxmgr.hometask.entities.StorageFullException;
+import com.trxmgr.hometask.entities.VersionConflictException;
 
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    static final long STORAGE_FULL_RETRY_AFTER_SECONDS = 60;
+
+    // one rendered response per field, a rejected request only writes it
+    private static final Map<InvalidField, ResponseEntity<byte[]>> INVALID_FIELD_RESPONSES = new EnumMap<>(
+            InvalidField.class);
+
+    static {
+        for (InvalidField field : InvalidField.values()) {
+            byte[] body = ("{\"message\":\"" + InvalidTransationException.of(field) + "\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            INVALID_FIELD_RESPONSES.put(field,
+                    ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(body));
+        }
+    }
+
     @ExceptionHandler(InvalidTransationException.class)
-    public ResponseEntity<Map<String, String>> handleCustomException(InvalidTransationException ex) {
+    public ResponseEntity<byte[]> handleCustomException(InvalidTransationException ex) {
+        return INVALID_FIELD_RESPONSES.get(ex.getField());
+    }
+
+    // the rendered response for handlers that validate without throwing; its
+    // body is bytes whatever the handler's declared type
+    @SuppressWarnings("unchecked")
+    public static <T> ResponseEntity<T> invalid(InvalidField field) {
+        return (ResponseEntity<T>) INVALID_FIELD_RESPONSES.get(field);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Map<String, String>> handleCursorException(InvalidCursorException ex) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("message", ex.toString());
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<Map<String, String>> handleVersionConflict(VersionConflictException ex) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("message", ex.toString());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .eTag(TrxMgrController.etag(ex.getCurrentVersion())).body(errorResponse);
+    }
+
+    @ExceptionHandler(InvalidIdempotencyKeyException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidIdempotencyKey(InvalidIdempotencyKeyException ex) {
         Map<String, String> errorResponse = new HashMap<>();
         errorResponse.put("message", ex.toString());
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
+
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<Map<String, String>> handleIdempotencyConflict(IdempotencyConflictException ex) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("message", ex.toString());
+        return new ResponseEntity<>(errorResponse,
+                ex.isInFlight() ? HttpStatus.CONFLICT : HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    // room comes back only with deletes or moves to the cold tier
+    @ExceptionHandler(StorageFullException.class)
+    public ResponseEntity<Map<String, String>> handleStorageFull(StorageFullException ex) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("message", ex.toString());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(STORAGE_FULL_RETRY_AFTER_SECONDS)).body(errorResponse);
+    }
+
+    @ExceptionHandler(RateLimitedException.class)
+    public ResponseEntity<Map<String, String>> handleRateLimited(RateLimitedException ex) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("message", ex.toString());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds())).body(errorResponse);
+    }
+
+    @ExceptionHandler(JsonProcessingException.class)
+    public ResponseEntity<Map<String, String>> handleJsonException(JsonProcessingException ex) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("message", ex.getOriginalMessage());
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
 } 
\ No newline at end of file
@@ -1,8 +1,16 @@
 package com.trxmgr.hometask.controllers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.validation.annotation.Validated;
@@ -11,68 +19,283 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.trxmgr.hometask.entities.AggregateResponse;
 import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.BatchItemResult;
+import com.trxmgr.hometask.entities.BatchResponse;
+import com.trxmgr.hometask.entities.InvalidTransationException.InvalidField;
 import com.trxmgr.hometask.entities.PageResponse;
+import com.trxmgr.hometask.entities.RateLimitedException;
+import com.trxmgr.hometask.entities.StatusUpdate;
+import com.trxmgr.hometask.entities.TrxFilter;
+import com.trxmgr.hometask.services.ChangeStream;
+import com.trxmgr.hometask.services.EncodedTransaction;
+import com.trxmgr.hometask.services.IdempotencyCache;
+import com.trxmgr.hometask.services.NdjsonTransfer;
+import com.trxmgr.hometask.services.TrxRecord;
 import com.trxmgr.hometask.services.TransactionStorage;
+import com.trxmgr.hometask.services.UserRateLimiter;
 
 @RestController
 @Validated
-@RequestMapping("/transactions")
+// bodies in JSON or CBOR by Accept and Content-Type, the handlers of single
+// transactions, lists and pages also in fixed-width records; ids are numeric so
+// that /batch or /aggregate asked for records do not fall through to them
+@RequestMapping(value = "/transactions", produces = { MediaType.APPLICATION_JSON_VALUE,
+		MediaType.APPLICATION_CBOR_VALUE })
 public class TrxMgrController {
 
 	@Autowired
 	private TransactionStorage trxStorage;
+	@Autowired
+	private NdjsonTransfer ndjsonTransfer;
+	@Autowired
+	private ChangeStream changeStream;
+	@Autowired
+	private IdempotencyCache idempotencyCache;
+	@Autowired
+	private UserRateLimiter rateLimiter;
+	private final ObjectWriter jsonWriter;
 
-	@GetMapping(value = "/{id}", produces = "application/json")
-	public ResponseEntity<BankingTransaction> getTransaction(@PathVariable Long id) {
-		BankingTransaction trx = trxStorage.get(id);
-		return getResponse(trx);
+	public TrxMgrController(ObjectMapper mapper) {
+		super();
+		this.jsonWriter = mapper.writerFor(BankingTransaction.class);
+	}
+
+	// hot ids are answered with cached JSON bytes instead of serializing again
+	@GetMapping(value = "/{id:-?\\d+}", produces = { MediaType.APPLICATION_JSON_VALUE,
+			MediaType.APPLICATION_CBOR_VALUE, TrxRecord.MEDIA_TYPE_VALUE })
+	public ResponseEntity<?> getTransaction(@PathVariable Long id,
+			@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+		if (prefersBinary(accept)) {
+			return getResponse(trxStorage.get(id));
+		}
+		EncodedTransaction trx = trxStorage.getEncoded(id, this::toJson);
+		return trx == null ? ResponseEntity.notFound().build()
+				: ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).eTag(etag(trx.getVersion()))
+						.body(trx.getBytes());
+	}
+
+	// whether the client ranks CBOR or records above JSON
+	static boolean prefersBinary(String accept) {
+		if (accept == null) {
+			return false;
+		}
+		double binary = -1;
+		double json = -1;
+		for (MediaType type : MediaType.parseMediaTypes(accept)) {
+			if (type.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR)
+					|| type.equalsTypeAndSubtype(TrxRecordHttpMessageConverter.MEDIA_TYPE)) {
+				binary = Math.max(binary, type.getQualityValue());
+			} else if (type.includes(MediaType.APPLICATION_JSON)) {
+				json = Math.max(json, type.getQualityValue());
+			}
+		}
+		return binary > json;
 	}
 
-	@PostMapping(produces = "application/json")
-	public ResponseEntity<BankingTransaction> createTransaction(@RequestBody BankingTransaction newTrx) {
+	private byte[] toJson(BankingTransaction trx) {
+		try {
+			return jsonWriter.writeValueAsBytes(trx);
+		} catch (JsonProcessingException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// a retry with the same Idempotency-Key gets the first response again
+	@PostMapping(produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+			TrxRecord.MEDIA_TYPE_VALUE })
+	public ResponseEntity<BankingTransaction> createTransaction(@RequestBody BankingTransaction newTrx,
+			@RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey) {
+		if (idempotencyKey == null) {
+			return create(newTrx);
+		}
+		// the fields the client sets, the rest are assigned on add
+		List<Long> request = List.of(newTrx.getId(), (long) newTrx.getType(), newTrx.getUser(), newTrx.getAmount());
+		return idempotencyCache.execute(idempotencyKey, request, () -> create(newTrx));
+	}
+
+	private ResponseEntity<BankingTransaction> create(BankingTransaction newTrx) {
+		// rejected without an exception, add still throws for other callers
+		InvalidField invalid = TransactionStorage.validate(newTrx);
+		if (invalid != null) {
+			return GlobalExceptionHandler.invalid(invalid);
+		}
+		rateLimit(newTrx.getUser(), newTrx.getType());
 		boolean addSuccess = trxStorage.add(newTrx);
 		BankingTransaction trx = addSuccess ? trxStorage.get(newTrx.getId()) : null;
 		return trx == null ? ResponseEntity.badRequest().build() : ResponseEntity.ok(trx);
 	}
 
-	@DeleteMapping(value = "/{id}", produces = "application/json")
+	@DeleteMapping(value = "/{id:-?\\d+}", produces = { MediaType.APPLICATION_JSON_VALUE,
+			MediaType.APPLICATION_CBOR_VALUE, TrxRecord.MEDIA_TYPE_VALUE })
 	public ResponseEntity<BankingTransaction> deleteTransaction(@PathVariable Long id) {
 		BankingTransaction trx = trxStorage.delete(id);
 		return getResponse(trx);
 	}
 
-	@PostMapping(value = "/{id}/status", produces = "application/json")
-	public ResponseEntity<BankingTransaction> updateTransactionStatus(@PathVariable Long id, @RequestParam @NonNull Integer status) {
-		BankingTransaction trx = trxStorage.updateStatus(id, status);
+	@PostMapping(value = "/{id:-?\\d+}/status", produces = { MediaType.APPLICATION_JSON_VALUE,
+			MediaType.APPLICATION_CBOR_VALUE, TrxRecord.MEDIA_TYPE_VALUE })
+	public ResponseEntity<BankingTransaction> updateTransactionStatus(@PathVariable Long id, @RequestParam @NonNull Integer status,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		BankingTransaction trx = trxStorage.updateStatus(id, status, expectedVersion(ifMatch));
 		return getResponse(trx);
 	}
 
-	@PostMapping(value = "/{id}/amount", produces = "application/json")
+	@PostMapping(value = "/{id:-?\\d+}/amount", produces = { MediaType.APPLICATION_JSON_VALUE,
+			MediaType.APPLICATION_CBOR_VALUE, TrxRecord.MEDIA_TYPE_VALUE })
 	public ResponseEntity<BankingTransaction> updateTransactionAmount(@PathVariable Long id,
-			@RequestParam @NonNull Long amount) {
-		BankingTransaction trx = trxStorage.updateAmount(id, amount);
+			@RequestParam @NonNull Long amount,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		// checked before the owner lookup, so a bad amount is a 400 whether or
+		// not the limiter is on
+		if (!TransactionStorage.isValidAmount(amount)) {
+			return GlobalExceptionHandler.invalid(InvalidField.amount);
+		}
+		if (rateLimiter.isEnabled()) {
+			// the limit is the owner's, which the request does not carry: a
+			// request over it still costs this lookup, but never the update
+			BankingTransaction current = trxStorage.get(id);
+			if (current == null) {
+				return ResponseEntity.notFound().build();
+			}
+			rateLimit(current.getUser(), current.getType());
+		}
+		BankingTransaction trx = trxStorage.updateAmount(id, amount, expectedVersion(ifMatch));
 		return getResponse(trx);
 	}
 
-	@GetMapping(produces = "application/json")
+	@PostMapping(value = "/batch")
+	public ResponseEntity<BatchResponse> createTransactions(@RequestBody List<BankingTransaction> newTrxs) {
+		if (!rateLimiter.isEnabled()) {
+			return ResponseEntity.ok(new BatchResponse(trxStorage.addAll(newTrxs)));
+		}
+		// each transaction takes a token of its user, the refused ones are not stored
+		BatchItemResult[] results = new BatchItemResult[newTrxs.size()];
+		List<BankingTransaction> admitted = new ArrayList<>(newTrxs.size());
+		int[] positions = new int[newTrxs.size()];
+		for (int i = 0; i < results.length; i++) {
+			BankingTransaction trx = newTrxs.get(i);
+			if (rateLimiter.tryAcquire(trx.getUser(), trx.getType()) > 0) {
+				results[i] = BatchItemResult.tooManyRequests(trx.getId());
+			} else {
+				positions[admitted.size()] = i;
+				admitted.add(trx);
+			}
+		}
+		List<BatchItemResult> stored = trxStorage.addAll(admitted);
+		for (int i = 0; i < stored.size(); i++) {
+			results[positions[i]] = stored.get(i);
+		}
+		return ResponseEntity.ok(new BatchResponse(Arrays.asList(results)));
+	}
+
+	@PostMapping(value = "/batch/status")
+	public ResponseEntity<BatchResponse> updateTransactionStatuses(@RequestBody List<StatusUpdate> updates) {
+		return ResponseEntity.ok(new BatchResponse(trxStorage.updateStatusAll(updates)));
+	}
+
+	@DeleteMapping(value = "/batch")
+	public ResponseEntity<BatchResponse> deleteTransactions(@RequestBody List<Long> ids) {
+		return ResponseEntity.ok(new BatchResponse(trxStorage.deleteAll(ids)));
+	}
+
+	@GetMapping(value = "/export", produces = "application/x-ndjson")
+	public ResponseEntity<StreamingResponseBody> exportTransactions() {
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(ndjsonTransfer::export);
+	}
+
+	@PostMapping(value = "/import")
+	public ResponseEntity<BatchResponse> importTransactions(InputStream body) throws IOException {
+		return ResponseEntity.ok(ndjsonTransfer.importAll(body));
+	}
+
+	@GetMapping(produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+			TrxRecord.MEDIA_TYPE_VALUE })
 	public ResponseEntity<PageResponse> getTransactions(@RequestParam(defaultValue = "1") int pageNo,
-			@RequestParam(defaultValue = "10") int pageSize) {
+			@RequestParam(defaultValue = "10") int pageSize, @RequestParam(required = false) Long user,
+			@RequestParam(required = false) Integer type, @RequestParam(required = false) Integer status,
+			@RequestParam(required = false) Long createdFrom, @RequestParam(required = false) Long createdTo,
+			@RequestParam(required = false) Long updatedSince) {
 
-		List<BankingTransaction> pagedTrx = trxStorage.getPage(pageNo, pageSize);
-		int totalTrx = trxStorage.size();
-		int totalPage = trxStorage.getTotalPages(pageSize);
+		PageResponse page = trxStorage.page(pageNo, pageSize,
+				new TrxFilter(user, type, status, createdFrom, createdTo, updatedSince));
+		return ResponseEntity.ok(page);
+	}
 
-		PageResponse page = new PageResponse(pageNo, pageSize, totalPage, totalTrx, pagedTrx);
+	@GetMapping(params = "limit", produces = { MediaType.APPLICATION_JSON_VALUE,
+			MediaType.APPLICATION_CBOR_VALUE, TrxRecord.MEDIA_TYPE_VALUE })
+	public ResponseEntity<PageResponse> getTransactionsAfter(@RequestParam(required = false) String after,
+			@RequestParam int limit, @RequestParam(required = false) Long user,
+			@RequestParam(required = false) Integer type, @RequestParam(required = false) Integer status,
+			@RequestParam(required = false) Long createdFrom, @RequestParam(required = false) Long createdTo,
+			@RequestParam(required = false) Long updatedSince) {
+		PageResponse page = trxStorage.pageAfter(after, limit,
+				new TrxFilter(user, type, status, createdFrom, createdTo, updatedSince));
 		return ResponseEntity.ok(page);
 	}
 
+	// resumes after the Last-Event-ID header or the after parameter
+	@GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter changes(@RequestParam(required = false) Long after,
+			@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+		return changeStream.subscribe(lastEventId != null ? lastEventId : after);
+	}
+
+	@GetMapping(value = "/aggregate")
+	public ResponseEntity<AggregateResponse> aggregate(@RequestParam AggregateResponse.GroupBy groupBy,
+			@RequestParam(defaultValue = "sum") AggregateResponse.Metric metric,
+			@RequestParam(required = false) Long user, @RequestParam(required = false) Integer type,
+			@RequestParam(required = false) Integer status, @RequestParam(required = false) Long createdFrom,
+			@RequestParam(required = false) Long createdTo, @RequestParam(required = false) Long updatedSince) {
+		return ResponseEntity.ok(trxStorage.aggregate(groupBy, metric,
+				new TrxFilter(user, type, status, createdFrom, createdTo, updatedSince)));
+	}
+
+	private void rateLimit(long user, int type) {
+		long waitNanos = rateLimiter.tryAcquire(user, type);
+		if (waitNanos > 0) {
+			throw new RateLimitedException(user, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999)));
+		}
+	}
+
 	private ResponseEntity<BankingTransaction> getResponse(BankingTransaction trx) {
-		return trx == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(trx);
+		return trx == null ? ResponseEntity.notFound().build()
+				: ResponseEntity.ok().eTag(etag(trx.getVersion())).body(trx);
+	}
+
+	static String etag(long version) {
+		return "\"" + version + "\"";
+	}
+
+	// a missing header or * matches any version, a tag that is not one of ours
+	// matches none
+	private static long expectedVersion(String ifMatch) {
+		if (ifMatch == null || ifMatch.trim().equals("*")) {
+			return TransactionStorage.ANY_VERSION;
+		}
+		String tag = ifMatch.trim();
+		if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+			try {
+				long version = Long.parseLong(tag.substring(1, tag.length() - 1));
+				if (version > 0) {
+					return version;
+				}
+			} catch (NumberFormatException e) {
+				// falls through to no match
+			}
+		}
+		return -1;
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.trxmgr.hometask.controllers;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.PageResponse;
+import com.trxmgr.hometask.services.TrxRecord;
+
+/**
+ * Reads and writes transactions, transaction lists and pages in the
+ * fixed-width {@link TrxRecord} format. Other bodies are left to the JSON and
+ * CBOR converters.
+ */
+@Component
+public class TrxRecordHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+	public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(TrxRecord.MEDIA_TYPE_VALUE);
+
+	public TrxRecordHttpMessageConverter() {
+		super(MEDIA_TYPE);
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return clazz == BankingTransaction.class || clazz == PageResponse.class || List.class.isAssignableFrom(clazz);
+	}
+
+	@Override
+	public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+		return (isTransactionList(type) || type instanceof Class<?> clazz
+				&& (clazz == BankingTransaction.class || clazz == PageResponse.class)) && canRead(mediaType);
+	}
+
+	@Override
+	public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+		if (!canWrite(mediaType)) {
+			return false;
+		}
+		if (clazz == BankingTransaction.class || clazz == PageResponse.class) {
+			return true;
+		}
+		return List.class.isAssignableFrom(clazz) && isTransactionList(type);
+	}
+
+	private boolean isTransactionList(Type type) {
+		return type instanceof ParameterizedType list && list.getRawType() instanceof Class<?> raw
+				&& List.class.isAssignableFrom(raw) && list.getActualTypeArguments()[0] == BankingTransaction.class;
+	}
+
+	@Override
+	public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+			throws IOException, HttpMessageNotReadableException {
+		return readInternal(type instanceof Class<?> clazz ? clazz : List.class, inputMessage);
+	}
+
+	@Override
+	protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+			throws IOException, HttpMessageNotReadableException {
+		ByteBuffer buf = ByteBuffer.wrap(inputMessage.getBody().readAllBytes());
+		try {
+			if (clazz == BankingTransaction.class) {
+				if (buf.remaining() != TrxRecord.SIZE) {
+					throw new IllegalArgumentException("transaction record of " + buf.remaining() + " bytes");
+				}
+				return TrxRecord.read(buf);
+			}
+			return clazz == PageResponse.class ? TrxRecord.decodePage(buf) : TrxRecord.decodeList(buf);
+		} catch (IllegalArgumentException e) {
+			throw new HttpMessageNotReadableException(e.getMessage(), e, inputMessage);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage) throws IOException {
+		byte[] bytes;
+		if (body instanceof BankingTransaction trx) {
+			bytes = TrxRecord.encode(trx);
+		} else if (body instanceof PageResponse page) {
+			bytes = TrxRecord.encodePage(page);
+		} else {
+			bytes = TrxRecord.encodeList((List<BankingTransaction>) body);
+		}
+		outputMessage.getHeaders().setContentLength(bytes.length);
+		outputMessage.getBody().write(bytes);
+	}
+
+}
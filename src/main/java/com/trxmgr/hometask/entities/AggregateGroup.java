@@ -0,0 +1,58 @@
+package com.trxmgr.hometask.entities;
+
+import java.io.Serializable;
+
+public class AggregateGroup implements Serializable {
+
+	private static final long serialVersionUID = -5021763118457293842L;
+
+	private long key;
+	private long count;
+	// a Long for sum, count, min and max, a Double for avg
+	private Number value;
+
+	public AggregateGroup() {
+		super();
+	}
+
+	public AggregateGroup(long key, long count, Number value) {
+		super();
+		this.key = key;
+		this.count = count;
+		this.value = value;
+	}
+
+	public long getKey() {
+		return key;
+	}
+
+	public void setKey(long key) {
+		this.key = key;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public void setCount(long count) {
+		this.count = count;
+	}
+
+	public Number getValue() {
+		return value;
+	}
+
+	public void setValue(Number value) {
+		this.value = value;
+	}
+
+	@Override
+	public String toString() {
+		return "{"
+				+ "key:" + key + ","
+				+ "count:" + count + ","
+				+ "value:" + value
+				+ "}";
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.trxmgr.hometask.entities;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class AggregateResponse implements Serializable {
+
+	private static final long serialVersionUID = 7354289145001983315L;
+
+	public static enum GroupBy {
+		user, type, status;
+
+		public long keyOf(BankingTransaction trx) {
+			return switch (this) {
+			case user -> trx.getUser();
+			case type -> trx.getType();
+			case status -> trx.getStatus();
+			};
+		}
+	}
+
+	// all metrics aggregate the amount
+	public static enum Metric {
+		sum, count, avg, min, max
+	}
+
+	private GroupBy groupBy;
+	private Metric metric;
+	// in ascending key order
+	private List<AggregateGroup> groups;
+
+	public AggregateResponse() {
+		super();
+	}
+
+	public AggregateResponse(GroupBy groupBy, Metric metric, List<AggregateGroup> groups) {
+		super();
+		this.groupBy = groupBy;
+		this.metric = metric;
+		this.groups = groups;
+	}
+
+	public GroupBy getGroupBy() {
+		return groupBy;
+	}
+
+	public void setGroupBy(GroupBy groupBy) {
+		this.groupBy = groupBy;
+	}
+
+	public Metric getMetric() {
+		return metric;
+	}
+
+	public void setMetric(Metric metric) {
+		this.metric = metric;
+	}
+
+	public List<AggregateGroup> getGroups() {
+		return groups;
+	}
+
+	public void setGroups(List<AggregateGroup> groups) {
+		this.groups = groups;
+	}
+
+	@Override
+	public String toString() {
+		return "{"
+				+ "groupBy:" + groupBy + ","
+				+ "metric:" + metric + ","
+				+ "groups:" + groups
+				+ "}";
+	}
+
+}
@@ -17,6 +17,7 @@ public class BankingTransaction implements Serializable {
 	private int status;
 	private long created;
 	private long updated;	
+	private long version;
 
 	public BankingTransaction() {
 		super();
@@ -33,6 +34,12 @@ public class BankingTransaction implements Serializable {
 		this.updated = updated;
 	}
 
+	public BankingTransaction(long id, int type, long user, long amount, int status, long created, long updated,
+			long version) {
+		this(id, type, user, amount, status, created, updated);
+		this.version = version;
+	}
+
 	public long getId() {
 		return id;
 	}
@@ -89,6 +96,24 @@ public class BankingTransaction implements Serializable {
 		this.updated = updated;
 	}
 
+	// incremented by every update, stored rows start at 1
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
+	// stored rows are never modified, an update replaces them with a copy
+	public BankingTransaction withStatus(int status, long updated) {
+		return new BankingTransaction(id, type, user, amount, status, created, updated, version + 1);
+	}
+
+	public BankingTransaction withAmount(long amount, long updated) {
+		return new BankingTransaction(id, type, user, amount, status, created, updated, version + 1);
+	}
+
 	public static long getSerialversionuid() {
 		return serialVersionUID;
 	}
@@ -106,7 +131,8 @@ public class BankingTransaction implements Serializable {
 				+ "amount:" + amount + "," 
 				+ "status:" + status + ","	            
 				+ "created:" + created + "," 
-				+ "updated:" + updated 
+				+ "updated:" + updated + ","
+				+ "version:" + version
 				+ "}";
 	}
 
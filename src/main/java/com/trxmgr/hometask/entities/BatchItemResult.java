@@ -0,0 +1,97 @@
+package com.trxmgr.hometask.entities;
+
+import java.io.Serializable;
+
+public class BatchItemResult implements Serializable {
+
+	private static final long serialVersionUID = 8412375582934468813L;
+
+	public static final String DUPLICATE = "duplicate transaction";
+	public static final String NOT_FOUND = "transaction not found";
+	public static final String STORAGE_FULL = "storage is full";
+	public static final String RATE_LIMITED = "user is over its rate limit";
+
+	private long id;
+	private int status;
+	private String message;
+	private BankingTransaction transaction;
+
+	public BatchItemResult() {
+		super();
+	}
+
+	public BatchItemResult(long id, int status, String message, BankingTransaction transaction) {
+		super();
+		this.id = id;
+		this.status = status;
+		this.message = message;
+		this.transaction = transaction;
+	}
+
+	public static BatchItemResult ok(BankingTransaction trx) {
+		return new BatchItemResult(trx.getId(), 200, null, trx);
+	}
+
+	public static BatchItemResult badRequest(long id, String message) {
+		return new BatchItemResult(id, 400, message, null);
+	}
+
+	public static BatchItemResult notFound(long id) {
+		return new BatchItemResult(id, 404, NOT_FOUND, null);
+	}
+
+	public static BatchItemResult tooManyRequests(long id) {
+		return new BatchItemResult(id, 429, RATE_LIMITED, null);
+	}
+
+	public static BatchItemResult unavailable(long id) {
+		return new BatchItemResult(id, 503, STORAGE_FULL, null);
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public void setStatus(int status) {
+		this.status = status;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	public BankingTransaction getTransaction() {
+		return transaction;
+	}
+
+	public void setTransaction(BankingTransaction transaction) {
+		this.transaction = transaction;
+	}
+
+	public boolean succeeded() {
+		return status == 200;
+	}
+
+	@Override
+	public String toString() {
+		return "{"
+				+ "id:" + id + ","
+				+ "status:" + status + ","
+				+ "message:" + message + ","
+				+ "transaction:" + transaction
+				+ "}";
+	}
+
+}
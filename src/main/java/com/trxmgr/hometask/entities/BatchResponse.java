@@ -0,0 +1,70 @@
+package com.trxmgr.hometask.entities;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class BatchResponse implements Serializable {
+
+	private static final long serialVersionUID = 1914390875061374524L;
+
+	private int succeeded;
+	private int failed;
+	private List<BatchItemResult> results;
+
+	public BatchResponse() {
+		super();
+	}
+
+	public BatchResponse(List<BatchItemResult> results) {
+		super();
+		this.results = results;
+		for (BatchItemResult result : results) {
+			if (result.succeeded()) {
+				succeeded++;
+			} else {
+				failed++;
+			}
+		}
+	}
+
+	public BatchResponse(int succeeded, int failed, List<BatchItemResult> results) {
+		super();
+		this.succeeded = succeeded;
+		this.failed = failed;
+		this.results = results;
+	}
+
+	public int getSucceeded() {
+		return succeeded;
+	}
+
+	public void setSucceeded(int succeeded) {
+		this.succeeded = succeeded;
+	}
+
+	public int getFailed() {
+		return failed;
+	}
+
+	public void setFailed(int failed) {
+		this.failed = failed;
+	}
+
+	public List<BatchItemResult> getResults() {
+		return results;
+	}
+
+	public void setResults(List<BatchItemResult> results) {
+		this.results = results;
+	}
+
+	@Override
+	public String toString() {
+		return "{"
+				+ "succeeded:" + succeeded + ","
+				+ "failed:" + failed + ","
+				+ "results:" + results
+				+ "}";
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.trxmgr.hometask.entities;
+
+import java.io.Serializable;
+
+public class ChangeEvent implements Serializable {
+
+	private static final long serialVersionUID = 4476392047213780925L;
+
+	public static enum Operation {
+		added, deleted, status, amount
+	}
+
+	private long sequence;
+	private Operation operation;
+	// the row after the change, the removed row for deletes
+	private BankingTransaction transaction;
+
+	public ChangeEvent() {
+		super();
+	}
+
+	public ChangeEvent(long sequence, Operation operation, BankingTransaction transaction) {
+		super();
+		this.sequence = sequence;
+		this.operation = operation;
+		this.transaction = transaction;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	public Operation getOperation() {
+		return operation;
+	}
+
+	public void setOperation(Operation operation) {
+		this.operation = operation;
+	}
+
+	public BankingTransaction getTransaction() {
+		return transaction;
+	}
+
+	public void setTransaction(BankingTransaction transaction) {
+		this.transaction = transaction;
+	}
+
+	@Override
+	public String toString() {
+		return "{"
+				+ "sequence:" + sequence + ","
+				+ "operation:" + operation + ","
+				+ "transaction:" + transaction
+				+ "}";
+	}
+
+}
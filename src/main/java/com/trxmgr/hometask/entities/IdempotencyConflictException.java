@@ -0,0 +1,32 @@
+package com.trxmgr.hometask.entities;
+
+public class IdempotencyConflictException extends RuntimeException {
+
+	private static final long serialVersionUID = -6120481857209745316L;
+
+	private String key;
+	// the first request with the key has not finished, rather than a
+	// different request reusing it
+	private boolean inFlight;
+
+	public IdempotencyConflictException(String key, boolean inFlight) {
+		// answered as 409 or 422, no stack trace
+		super(null, null, false, false);
+		this.key = key;
+		this.inFlight = inFlight;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public boolean isInFlight() {
+		return inFlight;
+	}
+
+	@Override
+	public String toString() {
+		return inFlight ? "request with idempotency key[" + key + "] is still in progress"
+				: "idempotency key[" + key + "] was used for a different request";
+	}
+}
@@ -0,0 +1,28 @@
+package com.trxmgr.hometask.entities;
+
+public class InvalidCursorException extends IllegalArgumentException {
+
+	private static final long serialVersionUID = -2316064734919431170L;
+
+	private String cursor;
+
+	public InvalidCursorException(String cursor) {
+		super();
+		this.cursor = cursor;
+	}
+
+	public String getCursor() {
+		return cursor;
+	}
+
+	// a client error, where it was thrown is of no interest
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "invalid page cursor[" + cursor + "]";
+	}
+}
@@ -0,0 +1,22 @@
+package com.trxmgr.hometask.entities;
+
+public class InvalidIdempotencyKeyException extends IllegalArgumentException {
+
+	private static final long serialVersionUID = 2871940392617408535L;
+
+	private int length;
+
+	public InvalidIdempotencyKeyException(int length) {
+		super();
+		this.length = length;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	@Override
+	public String toString() {
+		return "invalid Idempotency-Key header of length " + length;
+	}
+}
@@ -1,5 +1,10 @@
 package com.trxmgr.hometask.entities;
 
+/**
+ * Thrown for a transaction field that fails validation. Validation throws one
+ * shared instance per field without a stack trace, see {@link #of}, so
+ * rejecting a request allocates nothing; the value is not echoed back.
+ */
 public class InvalidTransationException extends IllegalArgumentException {
 
 	private static final long serialVersionUID = 5449543259582020780L;
@@ -8,6 +13,19 @@ public class InvalidTransationException extends IllegalArgumentException {
 		id, type, user, amount, status
 	}
 
+	private static final InvalidTransationException[] INSTANCES = new InvalidTransationException[InvalidField
+			.values().length];
+
+	static {
+		for (InvalidField field : InvalidField.values()) {
+			INSTANCES[field.ordinal()] = new Shared(field);
+		}
+	}
+
+	public static InvalidTransationException of(InvalidField field) {
+		return INSTANCES[field.ordinal()];
+	}
+
 	public InvalidTransationException(InvalidField field, String val) {
 		super();
 		this.field = field;
@@ -35,6 +53,33 @@ public class InvalidTransationException extends IllegalArgumentException {
 
 	@Override
 	public String toString() {
-		return "invalid transaction with field-" + field + "[" + invalidValue + "]";
+		return "invalid transaction with field-" + field + (invalidValue == null ? "" : "[" + invalidValue + "]");
+	}
+
+	// IllegalArgumentException has no constructor that turns the stack trace
+	// off, so the shared instances skip filling it; a stack trace would point
+	// at whoever threw first
+	private static final class Shared extends InvalidTransationException {
+
+		private static final long serialVersionUID = 1L;
+
+		Shared(InvalidField field) {
+			super(field, null);
+		}
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+
+		@Override
+		public void setField(InvalidField field) {
+			throw new UnsupportedOperationException("shared instance");
+		}
+
+		@Override
+		public void setInvalidValue(String invalidValue) {
+			throw new UnsupportedOperationException("shared instance");
+		}
 	}
-}
\ No newline at end of file
+}
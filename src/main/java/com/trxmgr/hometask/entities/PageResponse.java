@@ -5,12 +5,16 @@ import java.util.List;
 
 public class PageResponse implements Serializable {
 	private static final long serialVersionUID = -8415036293654601293L;
+
+	// totalPages and totalElements of cursor pages, which are not counted
+	public static final int UNCOUNTED = -1;
 	
 	private int page;
 	private int size;
 	private int totalPages;
 	private long totalElements;
 	private List<BankingTransaction> data;
+	private String nextCursor;
 
 	public PageResponse() {
 		super();
@@ -64,6 +68,14 @@ public class PageResponse implements Serializable {
 	public void setData(List<BankingTransaction> data) {
 		this.data = data;
 	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
 	
 	@Override
 	public String toString() {
@@ -81,7 +93,9 @@ public class PageResponse implements Serializable {
 				+ "totalElements:" + totalElements + ","
 				+ "data:["
 				+ dataBuilder.toString()
-				+ "]}";
+				+ "]"
+				+ (nextCursor == null ? "" : ",nextCursor:" + nextCursor)
+				+ "}";
 		
 	}
 	
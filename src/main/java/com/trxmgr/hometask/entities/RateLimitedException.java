@@ -0,0 +1,29 @@
+package com.trxmgr.hometask.entities;
+
+public class RateLimitedException extends RuntimeException {
+
+	private static final long serialVersionUID = -3391524850736817302L;
+
+	private long user;
+	private long retryAfterSeconds;
+
+	public RateLimitedException(long user, long retryAfterSeconds) {
+		// answered as 429, no stack trace
+		super(null, null, false, false);
+		this.user = user;
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	public long getUser() {
+		return user;
+	}
+
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+	@Override
+	public String toString() {
+		return "user[" + user + "] is over its rate limit";
+	}
+}
@@ -0,0 +1,46 @@
+package com.trxmgr.hometask.entities;
+
+import java.io.Serializable;
+
+public class StatusUpdate implements Serializable {
+
+	private static final long serialVersionUID = -4377463180651962311L;
+
+	private long id;
+	private int status;
+
+	public StatusUpdate() {
+		super();
+	}
+
+	public StatusUpdate(long id, int status) {
+		super();
+		this.id = id;
+		this.status = status;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public void setStatus(int status) {
+		this.status = status;
+	}
+
+	@Override
+	public String toString() {
+		return "{"
+				+ "id:" + id + ","
+				+ "status:" + status
+				+ "}";
+	}
+
+}
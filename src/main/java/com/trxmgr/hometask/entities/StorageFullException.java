@@ -0,0 +1,29 @@
+package com.trxmgr.hometask.entities;
+
+public class StorageFullException extends RuntimeException {
+
+	private static final long serialVersionUID = 7215838164037592231L;
+
+	private long size;
+	private long estimatedBytes;
+
+	public StorageFullException(long size, long estimatedBytes) {
+		// answered as 503, no stack trace
+		super(null, null, false, false);
+		this.size = size;
+		this.estimatedBytes = estimatedBytes;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getEstimatedBytes() {
+		return estimatedBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "storage is full at [" + size + "] transactions";
+	}
+}
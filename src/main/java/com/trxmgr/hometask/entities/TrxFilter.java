@@ -0,0 +1,83 @@
+package com.trxmgr.hometask.entities;
+
+import java.io.Serializable;
+
+public class TrxFilter implements Serializable {
+
+	private static final long serialVersionUID = 3950912472286435172L;
+
+	public static final TrxFilter NONE = new TrxFilter(null, null, null);
+
+	private final Long user;
+	private final Integer type;
+	private final Integer status;
+	// created in [createdFrom, createdTo), updated at or after updatedSince
+	private final Long createdFrom;
+	private final Long createdTo;
+	private final Long updatedSince;
+
+	public TrxFilter(Long user, Integer type, Integer status) {
+		this(user, type, status, null, null, null);
+	}
+
+	public TrxFilter(Long user, Integer type, Integer status, Long createdFrom, Long createdTo, Long updatedSince) {
+		super();
+		this.user = user;
+		this.type = type;
+		this.status = status;
+		this.createdFrom = createdFrom;
+		this.createdTo = createdTo;
+		this.updatedSince = updatedSince;
+	}
+
+	public Long getUser() {
+		return user;
+	}
+
+	public Integer getType() {
+		return type;
+	}
+
+	public Integer getStatus() {
+		return status;
+	}
+
+	public Long getCreatedFrom() {
+		return createdFrom;
+	}
+
+	public Long getCreatedTo() {
+		return createdTo;
+	}
+
+	public Long getUpdatedSince() {
+		return updatedSince;
+	}
+
+	public boolean isEmpty() {
+		return user == null && type == null && status == null && createdFrom == null && createdTo == null
+				&& updatedSince == null;
+	}
+
+	public boolean matches(BankingTransaction trx) {
+		return (user == null || trx.getUser() == user)
+				&& (type == null || trx.getType() == type)
+				&& (status == null || trx.getStatus() == status)
+				&& (createdFrom == null || trx.getCreated() >= createdFrom)
+				&& (createdTo == null || trx.getCreated() < createdTo)
+				&& (updatedSince == null || trx.getUpdated() >= updatedSince);
+	}
+
+	@Override
+	public String toString() {
+		return "{" 
+				+ "user:" + user + ","
+				+ "type:" + type + ","
+				+ "status:" + status + ","
+				+ "createdFrom:" + createdFrom + ","
+				+ "createdTo:" + createdTo + ","
+				+ "updatedSince:" + updatedSince
+				+ "}";
+	}
+
+}
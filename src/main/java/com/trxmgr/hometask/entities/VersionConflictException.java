@@ -0,0 +1,35 @@
+package com.trxmgr.hometask.entities;
+
+public class VersionConflictException extends RuntimeException {
+
+	private static final long serialVersionUID = 3804961775102476514L;
+
+	private long id;
+	private long expectedVersion;
+	private long currentVersion;
+
+	public VersionConflictException(long id, long expectedVersion, long currentVersion) {
+		// expected under contention, no stack trace
+		super(null, null, false, false);
+		this.id = id;
+		this.expectedVersion = expectedVersion;
+		this.currentVersion = currentVersion;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public long getExpectedVersion() {
+		return expectedVersion;
+	}
+
+	public long getCurrentVersion() {
+		return currentVersion;
+	}
+
+	@Override
+	public String toString() {
+		return "transaction " + id + " is at version[" + currentVersion + "]";
+	}
+}
@@ -0,0 +1,135 @@
+package com.trxmgr.hometask.services;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that adapts to the latency its callers report on release,
+ * additive increase and multiplicative decrease: a request slower than the
+ * target cuts the limit by a tenth, at most once per target latency so one
+ * slow burst does not collapse it, and each fast request completed while the
+ * limit was at least half used raises it by 1/limit, about one per limit's
+ * worth of requests.
+ *
+ * Requests over the limit wait in arrival order for at most the queue
+ * timeout, and are refused at once when too many wait already, so an
+ * overloaded endpoint answers quickly instead of queueing for seconds.
+ */
+public class AdaptiveLimiter {
+
+	private static final double BACKOFF = 0.9;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+	private final int minLimit;
+	private final int maxLimit;
+	private final long targetNanos;
+	private final long queueTimeoutNanos;
+	private final int maxQueued;
+	private double limit;
+	private int inFlight;
+	private int queued;
+	private long lastDecrease;
+
+	public AdaptiveLimiter(AdmissionProperties properties) {
+		super();
+		this.minLimit = Math.max(1, properties.getMinLimit());
+		this.maxLimit = Math.max(minLimit, properties.getMaxLimit());
+		this.limit = Math.min(maxLimit, Math.max(minLimit, properties.getInitialLimit()));
+		this.targetNanos = TimeUnit.MILLISECONDS.toNanos(properties.getTargetLatencyMillis());
+		this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.getQueueTimeoutMillis());
+		this.maxQueued = properties.getMaxQueued();
+		this.lastDecrease = System.nanoTime() - targetNanos;
+	}
+
+	/**
+	 * Takes a slot, waiting for one within the queue timeout.
+	 *
+	 * @return whether the request was admitted; an admitted request must be
+	 *         released
+	 */
+	public boolean acquire() throws InterruptedException {
+		lock.lock();
+		try {
+			// no overtaking of waiting requests
+			if (queued == 0 && inFlight < (int) limit) {
+				inFlight++;
+				return true;
+			}
+			if (queued >= maxQueued) {
+				return false;
+			}
+			queued++;
+			try {
+				long nanos = queueTimeoutNanos;
+				while (inFlight >= (int) limit) {
+					if (nanos <= 0) {
+						return false;
+					}
+					nanos = released.awaitNanos(nanos);
+				}
+			} finally {
+				queued--;
+			}
+			inFlight++;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Frees the slot of an admitted request and adapts the limit to how long
+	 * it took.
+	 */
+	public void release(long latencyNanos) {
+		lock.lock();
+		try {
+			boolean saturated = inFlight * 2 >= limit;
+			inFlight--;
+			long now = System.nanoTime();
+			if (latencyNanos > targetNanos) {
+				if (now - lastDecrease >= targetNanos) {
+					limit = Math.max(minLimit, limit * BACKOFF);
+					lastDecrease = now;
+				}
+			} else if (saturated) {
+				limit = Math.min(maxLimit, limit + 1 / limit);
+			}
+			for (int free = (int) limit - inFlight; free > 0 && lock.hasWaiters(released); free--) {
+				released.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int limit() {
+		lock.lock();
+		try {
+			return (int) limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int inFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int queued() {
+		lock.lock();
+		try {
+			return queued;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package com.trxmgr.hometask.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.ChangeEvent;
+
+/**
+ * Ring buffer of the latest mutations, numbered from 1 in the order they are
+ * applied to each id. A writer claims a sequence, stores its event in the
+ * sequence's slot and never waits for readers: a reader that falls more than
+ * the capacity behind finds its slots overwritten and has to skip ahead to
+ * {@link #oldest()}.
+ *
+ * Readers wait on a condition that writers only signal when someone is
+ * waiting and the lock is free, so a wakeup may be missed and waiting is
+ * always bounded by a timeout.
+ */
+public class ChangeLog implements StorageListener {
+
+	private final AtomicReferenceArray<ChangeEvent> slots;
+	private final int mask;
+	private final AtomicLong next = new AtomicLong(1);
+	private final AtomicInteger waiters = new AtomicInteger();
+	private final ReentrantLock waitLock = new ReentrantLock();
+	private final Condition published = waitLock.newCondition();
+
+	ChangeLog(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.slots = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+	}
+
+	@Override
+	public void added(BankingTransaction trx) {
+		publish(ChangeEvent.Operation.added, trx);
+	}
+
+	@Override
+	public void deleted(BankingTransaction trx) {
+		publish(ChangeEvent.Operation.deleted, trx);
+	}
+
+	@Override
+	public void statusUpdated(BankingTransaction trx, int oldStatus) {
+		publish(ChangeEvent.Operation.status, trx);
+	}
+
+	@Override
+	public void amountUpdated(BankingTransaction trx, long oldAmount) {
+		publish(ChangeEvent.Operation.amount, trx);
+	}
+
+	private void publish(ChangeEvent.Operation operation, BankingTransaction trx) {
+		long sequence = next.getAndIncrement();
+		slots.set(slot(sequence), new ChangeEvent(sequence, operation, trx));
+		if (waiters.get() > 0 && waitLock.tryLock()) {
+			try {
+				published.signalAll();
+			} finally {
+				waitLock.unlock();
+			}
+		}
+	}
+
+	private int slot(long sequence) {
+		return (int) (sequence & mask);
+	}
+
+	public int capacity() {
+		return mask + 1;
+	}
+
+	// the sequence the next change gets
+	public long head() {
+		return next.get();
+	}
+
+	// the first sequence still held
+	public long oldest() {
+		return Math.max(1, head() - capacity());
+	}
+
+	/**
+	 * Returns up to {@code limit} consecutive events from the given sequence
+	 * on, stopping early at a sequence that is claimed but not stored yet or
+	 * that has already been overwritten.
+	 */
+	public List<ChangeEvent> read(long from, int limit) {
+		List<ChangeEvent> events = new ArrayList<>(Math.max(0, Math.min(limit, 1024)));
+		for (long sequence = from; events.size() < limit; sequence++) {
+			ChangeEvent event = slots.get(slot(sequence));
+			if (event == null || event.getSequence() != sequence) {
+				break;
+			}
+			events.add(event);
+		}
+		return events;
+	}
+
+	/**
+	 * Waits until the event with the given sequence is stored or the timeout
+	 * passes.
+	 */
+	public void await(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+		waiters.incrementAndGet();
+		waitLock.lock();
+		try {
+			ChangeEvent event = slots.get(slot(sequence));
+			if (event == null || event.getSequence() < sequence) {
+				published.await(timeout, unit);
+			}
+		} finally {
+			waitLock.unlock();
+			waiters.decrementAndGet();
+		}
+	}
+
+}
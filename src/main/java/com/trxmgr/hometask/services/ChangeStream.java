@@ -0,0 +1,111 @@
+package com.trxmgr.hometask.services;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.trxmgr.hometask.entities.ChangeEvent;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Serves the {@link ChangeLog} as Server-Sent Events. Every subscriber has its
+ * own virtual thread and position in the log, and a send blocks only while
+ * that client's connection is full, so a slow client delays nobody else. A
+ * client that falls out of the log gets a {@code gap} event naming the
+ * skipped sequences and continues from the oldest held one.
+ *
+ * Event ids are sequences; a client resumes after the last one it received
+ * through {@code Last-Event-ID} or the {@code after} parameter.
+ */
+@Service
+public class ChangeStream {
+
+	static final int BATCH = 256;
+	static final long IDLE_MILLIS = 100;
+	static final long HEARTBEAT_MILLIS = 15_000;
+
+	private final ChangeLog log;
+	private final ExecutorService subscribers = Executors.newVirtualThreadPerTaskExecutor();
+
+	public ChangeStream(TransactionStorage trxStorage) {
+		super();
+		this.log = trxStorage.changes();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		subscribers.shutdownNow();
+	}
+
+	/**
+	 * Streams the changes after the given sequence, or from now on for a null
+	 * one.
+	 */
+	public SseEmitter subscribe(Long after) {
+		SseEmitter emitter = new SseEmitter();
+		AtomicBoolean closed = new AtomicBoolean();
+		emitter.onCompletion(() -> closed.set(true));
+		emitter.onTimeout(() -> {
+			closed.set(true);
+			emitter.complete();
+		});
+		emitter.onError(error -> closed.set(true));
+		long from = after == null ? log.head() : after + 1;
+		subscribers.execute(() -> {
+			try {
+				stream(emitter, from, closed);
+				emitter.complete();
+			} catch (IOException | IllegalStateException e) {
+				// client went away or the emitter completed during a send
+				emitter.completeWithError(e);
+			} catch (InterruptedException e) {
+				emitter.complete();
+			}
+		});
+		return emitter;
+	}
+
+	private void stream(SseEmitter emitter, long from, AtomicBoolean closed)
+			throws IOException, InterruptedException {
+		long next = from;
+		// an idle stream starts with a heartbeat, which also sends the headers
+		long lastSent = 0;
+		while (!closed.get()) {
+			long oldest = log.oldest();
+			long head = log.head();
+			// behind the log, or ahead of it after a restart
+			if (next < oldest || next > head) {
+				long resume = next < oldest ? oldest : head;
+				emitter.send(SseEmitter.event().name("gap").data(Map.of("from", next, "to", resume),
+						MediaType.APPLICATION_JSON));
+				next = resume;
+			}
+			List<ChangeEvent> events = log.read(next, BATCH);
+			for (ChangeEvent event : events) {
+				emitter.send(SseEmitter.event().id(String.valueOf(event.getSequence()))
+						.name(event.getOperation().name()).data(event, MediaType.APPLICATION_JSON));
+			}
+			if (!events.isEmpty()) {
+				next = events.get(events.size() - 1).getSequence() + 1;
+				lastSent = System.currentTimeMillis();
+				continue;
+			}
+			if (System.currentTimeMillis() - lastSent >= HEARTBEAT_MILLIS) {
+				// finds clients that disconnected while the log was quiet
+				emitter.send(SseEmitter.event().comment("heartbeat"));
+				lastSent = System.currentTimeMillis();
+			}
+			log.await(next, IDLE_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+}
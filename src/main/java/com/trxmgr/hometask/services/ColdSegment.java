@@ -0,0 +1,156 @@
+package com.trxmgr.hometask.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+
+/**
+ * One run of the cold tier: {@link TrxRecord} rows in (created, id) order in
+ * a file that is mapped read-only once written. Rows are read with absolute
+ * gets, so any number of threads may read a segment at once.
+ */
+final class ColdSegment {
+
+	static final String PREFIX = "cold-";
+	static final String SUFFIX = ".dat";
+
+	private static final int SIZE = TrxRecord.SIZE;
+
+	// position in the cold tier's slot table
+	final int slot;
+	final int rows;
+	final long maxUpdated;
+	// rows still indexed, guarded by the cold tier's lock
+	int live;
+	// appended rows may still be indexed, kept out of compactions; guarded by
+	// the cold tier's lock
+	boolean pending;
+
+	private final Path file;
+	private final MappedByteBuffer buf;
+
+	private ColdSegment(int slot, Path file, MappedByteBuffer buf, long maxUpdated) {
+		this.slot = slot;
+		this.file = file;
+		this.buf = buf;
+		this.rows = buf.capacity() / SIZE;
+		this.maxUpdated = maxUpdated;
+	}
+
+	long id(int row) {
+		return buf.getLong(row * SIZE);
+	}
+
+	long created(int row) {
+		return buf.getLong(row * SIZE + TrxRecord.CREATED_OFFSET);
+	}
+
+	long updated(int row) {
+		return buf.getLong(row * SIZE + TrxRecord.UPDATED_OFFSET);
+	}
+
+	BankingTransaction read(int row) {
+		return TrxRecord.read(buf.slice(row * SIZE, SIZE));
+	}
+
+	// first row after the key, or at or after the time for a null key
+	int search(TrxKey key, long time) {
+		int low = 0;
+		int high = rows;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			long created = created(mid);
+			boolean before = key == null ? created < time
+					: created < key.time || created == key.time && id(mid) <= key.id;
+			if (before) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	void delete() throws IOException {
+		// the mapping stays valid until collected, readers that still hold
+		// the segment keep working
+		Files.deleteIfExists(file);
+	}
+
+	/**
+	 * Appends rows to a new segment file, which callers must feed in
+	 * (created, id) order.
+	 */
+	static final class Writer implements AutoCloseable {
+
+		private final int slot;
+		private final Path file;
+		private final FileChannel out;
+		private final ByteBuffer pending = ByteBuffer.allocate(SIZE * 16384);
+		private long position;
+		private long maxUpdated = Long.MIN_VALUE;
+		private int rows;
+
+		Writer(Path dir, long number, int slot) throws IOException {
+			this.slot = slot;
+			this.file = DataFiles.path(dir, PREFIX, number, SUFFIX);
+			this.out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+
+		int rows() {
+			return rows;
+		}
+
+		void write(BankingTransaction trx) throws IOException {
+			if (pending.remaining() < SIZE) {
+				drain();
+			}
+			TrxRecord.write(pending, trx);
+			maxUpdated = Math.max(maxUpdated, trx.getUpdated());
+			rows++;
+		}
+
+		// copies a row of another segment without materializing it
+		void copy(ColdSegment from, int row) throws IOException {
+			if (pending.remaining() < SIZE) {
+				drain();
+			}
+			pending.put(from.buf.slice(row * SIZE, SIZE));
+			maxUpdated = Math.max(maxUpdated, from.updated(row));
+			rows++;
+		}
+
+		private void drain() throws IOException {
+			pending.flip();
+			while (pending.hasRemaining()) {
+				position += out.write(pending, position);
+			}
+			pending.clear();
+		}
+
+		// no fsync, the snapshot and log of the store cover every cold row
+		ColdSegment finish() throws IOException {
+			drain();
+			ColdSegment segment = new ColdSegment(slot, file, out.map(FileChannel.MapMode.READ_ONLY, 0, position),
+					maxUpdated);
+			out.close();
+			return segment;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (out.isOpen()) {
+				out.close();
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,623 @@
+package com.trxmgr.hometask.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.trxmgr.hometask.entities.AggregateResponse.GroupBy;
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.TrxFilter;
+
+/**
+ * Cold tier of a {@link TieredStorageEngine}: rows in memory-mapped
+ * {@link ColdSegment} runs, found through a primitive id index of about 20
+ * bytes per row, the only heap the tier keeps per row. It is a
+ * {@link StoragePart} with appends, lookups and deletes but no updates: the
+ * tiered engine moves a row back to its hot engine before updating it.
+ * Deleted rows stay in their segment until a compaction merges short or
+ * mostly dead runs into longer ones.
+ *
+ * A move appends its rows unindexed, see {@link #append(List)}, and indexes
+ * each one only once the tiered engine holds the id and has checked that the
+ * hot row is still the one written; the others stay dead in their run.
+ *
+ * Listings merge the runs in (created, id) order. Filters, (updated, id)
+ * listings and aggregates scan the runs, which only hold rows that have not
+ * changed for a long time.
+ *
+ * Segments are scratch space: the snapshot and log of the store still cover
+ * every row, so leftover segments are deleted on startup and recovery adds
+ * settled rows straight back here. The tier saves heap only while running:
+ * snapshots still hold every row and a restart reads all of them again, so
+ * snapshot size and recovery time keep growing with the total row count.
+ */
+class ColdStorageEngine implements StoragePart {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ColdStorageEngine.class);
+
+	// an index value is the segment slot above the row number
+	static final int ROW_BITS = 22;
+	static final int SEGMENT_ROWS = 1 << ROW_BITS;
+	static final int MAX_SEGMENTS = 1 << (31 - ROW_BITS);
+
+	// short runs merged at once, a run below half a segment counts as short
+	private static final int MERGE_FAN_IN = 16;
+	private static final int SCAN_BLOCK = 1024;
+
+	private final Path dir;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	// one appender or compaction at a time, readers are only blocked while
+	// new runs are published
+	private final ReentrantLock appendLock = new ReentrantLock();
+	private final LongIntHashIndex index = new LongIntHashIndex(SCAN_BLOCK);
+	private final ColdSegment[] slots = new ColdSegment[MAX_SEGMENTS];
+	private StorageListener listener = StorageListener.NONE;
+	private long nextFile;
+
+	ColdStorageEngine(Path dir) throws IOException {
+		this.dir = dir;
+		Files.createDirectories(dir);
+		DataFiles.deleteBefore(dir, ColdSegment.PREFIX, Long.MAX_VALUE, ColdSegment.SUFFIX);
+	}
+
+	@Override
+	public void listen(StorageListener listener) {
+		this.listener = this.listener.andThen(listener);
+	}
+
+	/**
+	 * Writes the rows as new runs and indexes them, ids already here are left
+	 * out. Short runs are merged once there are enough of them.
+	 */
+	boolean[] addAll(List<BankingTransaction> trxs) {
+		boolean[] added = new boolean[trxs.size()];
+		try (Appended appended = append(trxs)) {
+			lock.writeLock().lock();
+			try {
+				for (int i = 0; i < trxs.size(); i++) {
+					added[i] = appended.index(i);
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Writes the rows as new runs without indexing them, so they are not
+	 * found until {@link Appended#index(int)} publishes them one at a time.
+	 * The runs are kept out of compactions until the appended rows are
+	 * closed.
+	 */
+	Appended append(List<BankingTransaction> trxs) {
+		Integer[] order = new Integer[trxs.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparing(trxs::get, Comparator.comparingLong(BankingTransaction::getCreated)
+				.thenComparingLong(BankingTransaction::getId)));
+		int[] ordinals = new int[trxs.size()];
+		List<ColdSegment> written = new ArrayList<>();
+		appendLock.lock();
+		try {
+			ColdSegment.Writer writer = null;
+			int slot = 0;
+			try {
+				for (int position : order) {
+					if (writer == null) {
+						slot = freeSlot(written.size());
+						writer = new ColdSegment.Writer(dir, nextFile++, slot);
+					}
+					ordinals[position] = slot << ROW_BITS | writer.rows();
+					writer.write(trxs.get(position));
+					if (writer.rows() == SEGMENT_ROWS) {
+						written.add(writer.finish());
+						writer = null;
+					}
+				}
+				if (writer != null) {
+					written.add(writer.finish());
+				}
+			} catch (IOException e) {
+				if (writer != null) {
+					closeQuietly(writer);
+				}
+				throw new UncheckedIOException(e);
+			}
+			lock.writeLock().lock();
+			try {
+				for (ColdSegment segment : written) {
+					segment.pending = true;
+					slots[segment.slot] = segment;
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+		} finally {
+			appendLock.unlock();
+		}
+		return new Appended(trxs, written, ordinals);
+	}
+
+	// rows written by append, in its input order
+	final class Appended implements AutoCloseable {
+
+		private final List<BankingTransaction> trxs;
+		private final List<ColdSegment> segments;
+		private final int[] ordinals;
+
+		private Appended(List<BankingTransaction> trxs, List<ColdSegment> segments, int[] ordinals) {
+			this.trxs = trxs;
+			this.segments = segments;
+			this.ordinals = ordinals;
+		}
+
+		/**
+		 * Indexes the row at the input position unless its id is here already.
+		 *
+		 * @return whether the row was indexed
+		 */
+		boolean index(int position) {
+			BankingTransaction trx = trxs.get(position);
+			lock.writeLock().lock();
+			try {
+				if (index.get(trx.getId()) != LongIntHashIndex.MISSING) {
+					return false;
+				}
+				index.put(trx.getId(), ordinals[position]);
+				slots[ordinals[position] >>> ROW_BITS].live++;
+				listener.added(trx);
+				return true;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		// the rows not indexed by now stay dead, their runs may be compacted
+		@Override
+		public void close() {
+			appendLock.lock();
+			try {
+				lock.writeLock().lock();
+				try {
+					for (ColdSegment segment : segments) {
+						segment.pending = false;
+					}
+				} finally {
+					lock.writeLock().unlock();
+				}
+				compactIfNeeded();
+			} finally {
+				appendLock.unlock();
+			}
+		}
+	}
+
+	private int freeSlot(int skip) {
+		int free = 0;
+		for (int slot = 0; slot < slots.length; slot++) {
+			if (slots[slot] == null && free++ == skip) {
+				return slot;
+			}
+		}
+		throw new IllegalStateException("cold tier is full: " + MAX_SEGMENTS + " segments");
+	}
+
+	private static int ordinal(ColdSegment segment, int row) {
+		return segment.slot << ROW_BITS | row;
+	}
+
+	private static void closeQuietly(ColdSegment.Writer writer) {
+		try {
+			writer.close();
+		} catch (IOException e) {
+			// the segment was never published
+		}
+	}
+
+	BankingTransaction delete(long id) {
+		lock.writeLock().lock();
+		try {
+			int ordinal = index.remove(id);
+			if (ordinal == LongIntHashIndex.MISSING) {
+				return null;
+			}
+			ColdSegment segment = slots[ordinal >>> ROW_BITS];
+			segment.live--;
+			BankingTransaction trx = segment.read(ordinal & (SEGMENT_ROWS - 1));
+			listener.deleted(trx);
+			return trx;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	BankingTransaction get(long id) {
+		lock.readLock().lock();
+		try {
+			int ordinal = index.get(id);
+			return ordinal == LongIntHashIndex.MISSING ? null
+					: slots[ordinal >>> ROW_BITS].read(ordinal & (SEGMENT_ROWS - 1));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	boolean contains(long id) {
+		lock.readLock().lock();
+		try {
+			return index.get(id) != LongIntHashIndex.MISSING;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return index.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// the mapped rows are outside the heap
+	@Override
+	public long estimatedBytes() {
+		lock.readLock().lock();
+		try {
+			return index.memoryBytes();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	int segments() {
+		lock.readLock().lock();
+		try {
+			int count = 0;
+			for (ColdSegment segment : slots) {
+				if (segment != null) {
+					count++;
+				}
+			}
+			return count;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<BankingTransaction> after(TrxKey key, int limit, TrxFilter filter) {
+		List<BankingTransaction> rows = new ArrayList<>(Math.max(0, Math.min(limit, SCAN_BLOCK)));
+		if (limit > 0) {
+			merge(key, filter, trx -> {
+				rows.add(trx);
+				return rows.size() < limit;
+			});
+		}
+		return rows;
+	}
+
+	/**
+	 * Merges the runs from after the key, or from the filter's created range,
+	 * and passes the matching live rows to the visitor until it returns false.
+	 */
+	private void merge(TrxKey key, TrxFilter filter, Predicate<BankingTransaction> visitor) {
+		lock.readLock().lock();
+		try {
+			PriorityQueue<Run> runs = new PriorityQueue<>();
+			for (ColdSegment segment : slots) {
+				if (segment == null) {
+					continue;
+				}
+				int from = segment.search(null,
+						filter.getCreatedFrom() == null ? Long.MIN_VALUE : filter.getCreatedFrom());
+				if (key != null) {
+					from = Math.max(from, segment.search(key, 0));
+				}
+				int to = filter.getCreatedTo() == null ? segment.rows : segment.search(null, filter.getCreatedTo());
+				if (from < to) {
+					runs.add(new Run(segment, from, to));
+				}
+			}
+			while (!runs.isEmpty()) {
+				Run run = runs.poll();
+				ColdSegment segment = run.segment;
+				int row = run.row;
+				if (index.get(segment.id(row)) == ordinal(segment, row)) {
+					BankingTransaction trx = segment.read(row);
+					if (filter.matches(trx) && !visitor.test(trx)) {
+						return;
+					}
+				}
+				if (run.advance()) {
+					runs.add(run);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// scans the live rows of every run in no particular order
+	private void scan(Predicate<BankingTransaction> visitor) {
+		lock.readLock().lock();
+		try {
+			for (ColdSegment segment : slots) {
+				if (segment == null) {
+					continue;
+				}
+				for (int row = 0; row < segment.rows; row++) {
+					if (index.get(segment.id(row)) == ordinal(segment, row) && !visitor.test(segment.read(row))) {
+						return;
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// keeps the first rows in (updated, id) order in a bounded heap, skipping
+	// runs that were last changed before the range
+	@Override
+	public List<BankingTransaction> updatedAfter(TrxKey key, int limit, TrxFilter filter) {
+		List<BankingTransaction> rows = new ArrayList<>();
+		if (limit <= 0) {
+			return rows;
+		}
+		long since = filter.getUpdatedSince() == null ? Long.MIN_VALUE : filter.getUpdatedSince();
+		long from = key == null ? since : Math.max(since, key.time);
+		Comparator<BankingTransaction> order = Comparator.comparingLong(BankingTransaction::getUpdated)
+				.thenComparingLong(BankingTransaction::getId);
+		PriorityQueue<BankingTransaction> first = new PriorityQueue<>(order.reversed());
+		lock.readLock().lock();
+		try {
+			for (ColdSegment segment : slots) {
+				if (segment == null || segment.maxUpdated < from) {
+					continue;
+				}
+				for (int row = 0; row < segment.rows; row++) {
+					long updated = segment.updated(row);
+					if (updated < from || key != null && updated == key.time && segment.id(row) <= key.id
+							|| index.get(segment.id(row)) != ordinal(segment, row)) {
+						continue;
+					}
+					BankingTransaction trx = segment.read(row);
+					if (!filter.matches(trx)) {
+						continue;
+					}
+					if (first.size() < limit) {
+						first.add(trx);
+					} else if (order.compare(trx, first.peek()) < 0) {
+						first.poll();
+						first.add(trx);
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		rows.addAll(first);
+		rows.sort(order);
+		return rows;
+	}
+
+	@Override
+	public int count(TrxFilter filter) {
+		if (filter.isEmpty()) {
+			return size();
+		}
+		int[] matches = new int[1];
+		scan(trx -> {
+			if (filter.matches(trx)) {
+				matches[0]++;
+			}
+			return true;
+		});
+		return matches[0];
+	}
+
+	@Override
+	public Map<Long, GroupTotals> aggregate(GroupBy groupBy, TrxFilter filter) {
+		Map<Long, GroupTotals> groups = new HashMap<>();
+		scan(trx -> {
+			if (filter.matches(trx)) {
+				groups.computeIfAbsent(groupBy.keyOf(trx), key -> new GroupTotals()).add(trx.getAmount());
+			}
+			return true;
+		});
+		return groups;
+	}
+
+	@Override
+	public List<BankingTransaction> findAll(Predicate<BankingTransaction> predicate, int limit) {
+		List<BankingTransaction> found = new ArrayList<>();
+		if (limit > 0) {
+			scan(trx -> {
+				if (predicate.test(trx)) {
+					found.add(trx);
+				}
+				return found.size() < limit;
+			});
+		}
+		return found;
+	}
+
+	/**
+	 * Merges the short runs once there are {@link #MERGE_FAN_IN} of them, and
+	 * any long run that is more than half dead, into new runs of the live
+	 * rows. The merge only holds the read lock, rows deleted meanwhile are
+	 * left out when the new runs are published.
+	 */
+	private void compactIfNeeded() {
+		List<ColdSegment> merged = new ArrayList<>();
+		int shortRuns = 0;
+		boolean deadRuns = false;
+		lock.readLock().lock();
+		try {
+			for (ColdSegment segment : slots) {
+				if (segment == null) {
+					continue;
+				}
+				if (segment.pending) {
+					continue;
+				}
+				if (segment.rows < SEGMENT_ROWS / 2) {
+					merged.add(segment);
+					shortRuns++;
+				} else if (segment.live < segment.rows / 2) {
+					merged.add(segment);
+					deadRuns = true;
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		if (shortRuns < MERGE_FAN_IN && !deadRuns) {
+			return;
+		}
+		try {
+			compact(merged);
+		} catch (IOException | UncheckedIOException e) {
+			// the old runs stay in place, the next append tries again
+			LOG.warn("cold segment compaction failed", e);
+		}
+	}
+
+	private void compact(List<ColdSegment> merged) throws IOException {
+		List<ColdSegment> written = new ArrayList<>();
+		List<int[]> sources = new ArrayList<>();
+		ColdSegment.Writer writer = null;
+		int[] source = null;
+		lock.readLock().lock();
+		try {
+			PriorityQueue<Run> runs = new PriorityQueue<>();
+			int remaining = 0;
+			for (ColdSegment segment : merged) {
+				if (segment.live > 0) {
+					runs.add(new Run(segment, 0, segment.rows));
+					remaining += segment.live;
+				}
+			}
+			while (!runs.isEmpty()) {
+				Run run = runs.poll();
+				int ordinal = ordinal(run.segment, run.row);
+				if (index.get(run.segment.id(run.row)) == ordinal) {
+					if (writer == null) {
+						writer = new ColdSegment.Writer(dir, nextFile++, freeSlot(written.size()));
+						source = new int[Math.min(SEGMENT_ROWS, remaining)];
+					}
+					remaining--;
+					source[writer.rows()] = ordinal;
+					writer.copy(run.segment, run.row);
+					if (writer.rows() == SEGMENT_ROWS) {
+						written.add(writer.finish());
+						sources.add(source);
+						writer = null;
+					}
+				}
+				if (run.advance()) {
+					runs.add(run);
+				}
+			}
+			if (writer != null) {
+				written.add(writer.finish());
+				sources.add(source);
+			}
+		} catch (IOException e) {
+			if (writer != null) {
+				closeQuietly(writer);
+			}
+			for (ColdSegment segment : written) {
+				segment.delete();
+			}
+			throw e;
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		lock.writeLock().lock();
+		try {
+			for (int i = 0; i < written.size(); i++) {
+				ColdSegment segment = written.get(i);
+				slots[segment.slot] = segment;
+				for (int row = 0; row < segment.rows; row++) {
+					// rows deleted since the merge read them stay dead
+					if (index.get(segment.id(row)) == sources.get(i)[row]) {
+						index.put(segment.id(row), ordinal(segment, row));
+						segment.live++;
+					}
+				}
+			}
+			for (ColdSegment segment : merged) {
+				slots[segment.slot] = null;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		for (ColdSegment segment : merged) {
+			segment.delete();
+		}
+	}
+
+	@Override
+	public void close() {
+		lock.writeLock().lock();
+		try {
+			for (int slot = 0; slot < slots.length; slot++) {
+				if (slots[slot] != null) {
+					slots[slot].delete();
+					slots[slot] = null;
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// the remaining rows of one segment in a merge
+	private static final class Run implements Comparable<Run> {
+
+		final ColdSegment segment;
+		final int end;
+		int row;
+
+		Run(ColdSegment segment, int row, int end) {
+			this.segment = segment;
+			this.row = row;
+			this.end = end;
+		}
+
+		boolean advance() {
+			return ++row < end;
+		}
+
+		@Override
+		public int compareTo(Run other) {
+			int cmp = Long.compare(segment.created(row), other.segment.created(other.row));
+			return cmp != 0 ? cmp : Long.compare(segment.id(row), other.segment.id(other.row));
+		}
+	}
+
+}
@@ -0,0 +1,722 @@
+package com.trxmgr.hometask.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import com.trxmgr.hometask.entities.AggregateResponse.GroupBy;
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.PageResponse;
+import com.trxmgr.hometask.entities.TrxFilter;
+
+/**
+ * Keeps every field in its own chunked primitive column and finds rows through
+ * a primitive id index, so a row costs about 80 bytes and the collector only
+ * sees a few large arrays. Transactions are materialized on read.
+ *
+ * Rows are appended in created order, so created ranges are found by binary
+ * search, and an {@link UpdatedTimeIndex} serves updated ranges. Deleted rows
+ * are tombstoned and the columns are compacted once tombstones outnumber live
+ * rows. Other filters and predicates are answered by scanning the columns
+ * instead of keeping secondary indexes.
+ *
+ * Compaction and pruning of stale updated pairs run in steps of at most
+ * {@value #SCAN_BLOCK} rows or pairs on each write, so no write holds the
+ * lock for a pass over the whole store. A compaction moves live rows down
+ * in order, leaving the rows between its two positions tombstoned; their
+ * created times are read as the created time of the next row to move, which
+ * keeps the column sorted for the binary searches.
+ */
+class ColumnarStorageEngine implements StorageEngine {
+
+	static final int CHUNK_BITS = 16;
+	static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private static final long TOMBSTONE = -1L;
+	private static final int SCAN_BLOCK = 1024;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final StorageMetrics metrics;
+	private final LongIntHashIndex index = new LongIntHashIndex(CHUNK_SIZE);
+	private final UpdatedTimeIndex updatedIndex = new UpdatedTimeIndex();
+
+	private long[][] ids = new long[0][];
+	private int[][] types = new int[0][];
+	private long[][] users = new long[0][];
+	private long[][] amounts = new long[0][];
+	private int[][] statuses = new int[0][];
+	private long[][] created = new long[0][];
+	private long[][] updated = new long[0][];
+	private long[][] versions = new long[0][];
+	private int[] chunkLive = new int[0];
+
+	private StorageListener listener = StorageListener.NONE;
+	private int rows;
+	private volatile int live;
+	private long lastCreated;
+	// position of a running compaction: live rows below compactTo are packed,
+	// rows from compactFrom on are not checked yet
+	private boolean compacting;
+	private int compactTo;
+	private int compactFrom;
+
+	ColumnarStorageEngine(StorageMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void listen(StorageListener listener) {
+		this.listener = this.listener.andThen(listener);
+	}
+
+	@Override
+	public boolean add(BankingTransaction trx) {
+		long acquired = lockWrite();
+		try {
+			return addLocked(trx);
+		} finally {
+			unlockWrite(acquired);
+		}
+	}
+
+	@Override
+	public boolean[] addAll(List<BankingTransaction> trxs) {
+		boolean[] added = new boolean[trxs.size()];
+		long acquired = lockWrite();
+		try {
+			for (int i = 0; i < added.length; i++) {
+				added[i] = addLocked(trxs.get(i));
+			}
+		} finally {
+			unlockWrite(acquired);
+		}
+		return added;
+	}
+
+	@Override
+	public BankingTransaction delete(long id) {
+		long acquired = lockWrite();
+		try {
+			return deleteLocked(id);
+		} finally {
+			unlockWrite(acquired);
+		}
+	}
+
+	@Override
+	public BankingTransaction[] deleteAll(long[] ids) {
+		BankingTransaction[] deleted = new BankingTransaction[ids.length];
+		long acquired = lockWrite();
+		try {
+			for (int i = 0; i < ids.length; i++) {
+				deleted[i] = deleteLocked(ids[i]);
+			}
+		} finally {
+			unlockWrite(acquired);
+		}
+		return deleted;
+	}
+
+	@Override
+	public BankingTransaction[] updateStatusAll(long[] ids, int[] statuses, long updatedAt) {
+		BankingTransaction[] results = new BankingTransaction[ids.length];
+		long acquired = lockWrite();
+		try {
+			for (int i = 0; i < ids.length; i++) {
+				results[i] = updateStatusLocked(ids[i], statuses[i], updatedAt, ANY_VERSION);
+			}
+		} finally {
+			unlockWrite(acquired);
+		}
+		return results;
+	}
+
+	// returns when the lock was acquired, to be passed to unlockWrite
+	private long lockWrite() {
+		long requested = System.nanoTime();
+		lock.writeLock().lock();
+		long acquired = System.nanoTime();
+		metrics.lockWaited(acquired - requested);
+		return acquired;
+	}
+
+	private void unlockWrite(long acquired) {
+		lock.writeLock().unlock();
+		metrics.lockHeld(System.nanoTime() - acquired);
+	}
+
+	private boolean addLocked(BankingTransaction trx) {
+		if (index.get(trx.getId()) != LongIntHashIndex.MISSING) {
+			return false;
+		}
+		// keeps the created column sorted for cursor pages
+		lastCreated = Math.max(lastCreated, trx.getCreated());
+		trx.setCreated(lastCreated);
+		append(trx);
+		index.put(trx.getId(), rows - 1);
+		updatedIndex.add(trx.getUpdated(), trx.getId());
+		live++;
+		listener.added(trx);
+		maintain();
+		return true;
+	}
+
+	private BankingTransaction deleteLocked(long id) {
+		int row = index.remove(id);
+		if (row == LongIntHashIndex.MISSING) {
+			return null;
+		}
+		BankingTransaction trx = materialize(row);
+		ids[row >>> CHUNK_BITS][row & CHUNK_MASK] = TOMBSTONE;
+		chunkLive[row >>> CHUNK_BITS]--;
+		live--;
+		listener.deleted(trx);
+		maintain();
+		return trx;
+	}
+
+	private BankingTransaction updateStatusLocked(long id, int status, long updatedAt, long expectedVersion) {
+		int row = index.get(id);
+		if (row == LongIntHashIndex.MISSING) {
+			return null;
+		}
+		nextVersion(row, expectedVersion);
+		int oldStatus = statuses[row >>> CHUNK_BITS][row & CHUNK_MASK];
+		statuses[row >>> CHUNK_BITS][row & CHUNK_MASK] = status;
+		updated[row >>> CHUNK_BITS][row & CHUNK_MASK] = updatedAt;
+		updatedIndex.add(updatedAt, id);
+		maintain();
+		BankingTransaction trx = materialize(row);
+		listener.statusUpdated(trx, oldStatus);
+		return trx;
+	}
+
+	// starts a compaction once tombstones outnumber live rows and a prune of
+	// the updated index once most of its pairs are stale, and advances both
+	// by a step
+	private void maintain() {
+		if (!compacting && rows - live > Math.max(CHUNK_SIZE, live)) {
+			compacting = true;
+			compactTo = 0;
+			compactFrom = 0;
+		}
+		if (compacting) {
+			compactStep();
+		}
+		if (!updatedIndex.pruning() && updatedIndex.pairs() > Math.max(CHUNK_SIZE, 2L * live)) {
+			updatedIndex.startPrune();
+		}
+		if (updatedIndex.pruning()) {
+			updatedIndex.prune(SCAN_BLOCK, this::currentUpdate);
+		}
+	}
+
+	private boolean currentUpdate(long time, long id) {
+		int row = index.get(id);
+		return row != LongIntHashIndex.MISSING && updated[row >>> CHUNK_BITS][row & CHUNK_MASK] == time;
+	}
+
+	// checks the expected version and advances it
+	private void nextVersion(int row, long expectedVersion) {
+		long[] chunk = versions[row >>> CHUNK_BITS];
+		long version = chunk[row & CHUNK_MASK];
+		StorageEngine.checkVersion(ids[row >>> CHUNK_BITS][row & CHUNK_MASK], expectedVersion, version);
+		chunk[row & CHUNK_MASK] = version + 1;
+	}
+
+	@Override
+	public BankingTransaction updateStatus(long id, int status, long updatedAt, long expectedVersion) {
+		long acquired = lockWrite();
+		try {
+			return updateStatusLocked(id, status, updatedAt, expectedVersion);
+		} finally {
+			unlockWrite(acquired);
+		}
+	}
+
+	@Override
+	public BankingTransaction updateAmount(long id, long amount, long updatedAt, long expectedVersion) {
+		long acquired = lockWrite();
+		try {
+			int row = index.get(id);
+			if (row == LongIntHashIndex.MISSING) {
+				return null;
+			}
+			nextVersion(row, expectedVersion);
+			long oldAmount = amounts[row >>> CHUNK_BITS][row & CHUNK_MASK];
+			amounts[row >>> CHUNK_BITS][row & CHUNK_MASK] = amount;
+			updated[row >>> CHUNK_BITS][row & CHUNK_MASK] = updatedAt;
+			updatedIndex.add(updatedAt, id);
+			maintain();
+			BankingTransaction trx = materialize(row);
+			listener.amountUpdated(trx, oldAmount);
+			return trx;
+		} finally {
+			unlockWrite(acquired);
+		}
+	}
+
+	@Override
+	public void forEach(Consumer<BankingTransaction> action) {
+		// rows are materialized a block at a time under the read lock and
+		// visited after it is released
+		TrxKey key = null;
+		List<BankingTransaction> block;
+		do {
+			block = after(key, SCAN_BLOCK, TrxFilter.NONE);
+			block.forEach(action);
+			if (!block.isEmpty()) {
+				BankingTransaction last = block.get(block.size() - 1);
+				key = new TrxKey(last.getCreated(), last.getId());
+			}
+		} while (block.size() == SCAN_BLOCK);
+	}
+
+	@Override
+	public BankingTransaction get(long id) {
+		lock.readLock().lock();
+		try {
+			int row = index.get(id);
+			return row == LongIntHashIndex.MISSING ? null : materialize(row);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean contains(long id) {
+		lock.readLock().lock();
+		try {
+			return index.get(id) != LongIntHashIndex.MISSING;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		return live;
+	}
+
+	@Override
+	public long estimatedBytes() {
+		// eight columns of 4 or 8 bytes per allocated row plus the id and
+		// updated indexes
+		long allocated = (long) ids.length * CHUNK_SIZE;
+		return allocated * (6 * Long.BYTES + 2 * Integer.BYTES) + index.capacity() * (Long.BYTES + Integer.BYTES)
+				+ updatedIndex.pairs() * 2 * Long.BYTES;
+	}
+
+	@Override
+	public List<BankingTransaction> range(int start, int count) {
+		lock.readLock().lock();
+		try {
+			return rangeLocked(start, count);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public PageResponse page(int pageNo, int pageSize, TrxFilter filter) {
+		lock.readLock().lock();
+		try {
+			if (filter.isEmpty()) {
+				List<BankingTransaction> pagedTrxs = rangeLocked((pageNo - 1) * pageSize, pageSize);
+				return new PageResponse(pageNo, pageSize, StorageEngine.totalPages(live, pageSize), live, pagedTrxs);
+			}
+			int skip = Math.max(0, (pageNo - 1) * pageSize);
+			List<BankingTransaction> pagedTrxs = new ArrayList<>();
+			int matches = 0;
+			for (int row = firstRow(filter), end = endRow(filter); row < end; row++) {
+				if (!matches(row, filter)) {
+					continue;
+				}
+				if (matches >= skip && pagedTrxs.size() < pageSize) {
+					pagedTrxs.add(materialize(row));
+				}
+				matches++;
+			}
+			return new PageResponse(pageNo, pageSize, StorageEngine.totalPages(matches, pageSize), matches,
+					pagedTrxs);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public PageResponse pageAfter(String cursor, int limit, TrxFilter filter) {
+		return StorageEngine.pageAfter(this, cursor, limit, filter);
+	}
+
+	@Override
+	public List<BankingTransaction> after(TrxKey key, int limit, TrxFilter filter) {
+		lock.readLock().lock();
+		try {
+			List<BankingTransaction> found = new ArrayList<>(Math.max(0, Math.min(limit, 1024)));
+
+			// rows are sorted by created only, so order each block of equal
+			// created values by id before emitting it
+			int row = key == null ? firstRow(filter) : Math.max(firstRow(filter), firstCreatedAtLeast(key.time));
+			int last = endRow(filter);
+			while (row < last && found.size() < limit) {
+				long time = createdAt(row);
+				int end = row;
+				while (end < last && createdAt(end) == time) {
+					end++;
+				}
+				long[] blockIds = new long[end - row];
+				int blockSize = 0;
+				for (int r = row; r < end; r++) {
+					long id = ids[r >>> CHUNK_BITS][r & CHUNK_MASK];
+					if (id != TOMBSTONE && matches(r, filter) && (key == null || time > key.time || id > key.id)) {
+						blockIds[blockSize++] = id;
+					}
+				}
+				Arrays.sort(blockIds, 0, blockSize);
+				for (int i = 0; i < blockSize && found.size() < limit; i++) {
+					found.add(materialize(index.get(blockIds[i])));
+				}
+				row = end;
+			}
+			return found;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<BankingTransaction> updatedAfter(TrxKey key, int limit, TrxFilter filter) {
+		lock.readLock().lock();
+		try {
+			List<TrxKey> keys = updatedKeys(key, limit, filter);
+			List<BankingTransaction> found = new ArrayList<>(keys.size());
+			for (TrxKey k : keys) {
+				found.add(materialize(index.get(k.id)));
+			}
+			return found;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// (updated, id) keys of the live matching rows after the key, in order
+	private List<TrxKey> updatedKeys(TrxKey key, int limit, TrxFilter filter) {
+		long since = filter.getUpdatedSince() == null ? Long.MIN_VALUE : filter.getUpdatedSince();
+		List<TrxKey> keys = new ArrayList<>(Math.max(0, Math.min(limit, 1024)));
+		List<TrxKey> block = new ArrayList<>();
+		for (UpdatedTimeIndex.Bucket bucket : updatedIndex.from(key == null ? since : Math.max(since, key.time))) {
+			block.clear();
+			for (int i = 0; i < bucket.size; i++) {
+				long time = bucket.times[i];
+				long id = bucket.ids[i];
+				if (time < since || key != null && (time < key.time || time == key.time && id <= key.id)) {
+					continue;
+				}
+				// pairs of deleted rows or of earlier updates are stale
+				int row = index.get(id);
+				if (row != LongIntHashIndex.MISSING && updated[row >>> CHUNK_BITS][row & CHUNK_MASK] == time
+						&& matches(row, filter)) {
+					block.add(new TrxKey(time, id));
+				}
+			}
+			block.sort(null);
+			for (TrxKey k : block) {
+				if (keys.size() >= limit) {
+					return keys;
+				}
+				// an id updated twice within the same millisecond has two pairs
+				if (keys.isEmpty() || !k.equals(keys.get(keys.size() - 1))) {
+					keys.add(k);
+				}
+			}
+		}
+		return keys;
+	}
+
+	// the live matching rows of the updated range, without building their
+	// keys; the valid pairs of an id all hold its current time and share a
+	// bucket, so ids are counted once per bucket
+	private int countUpdated(TrxFilter filter) {
+		long since = filter.getUpdatedSince();
+		long[] ids = new long[16];
+		int count = 0;
+		for (UpdatedTimeIndex.Bucket bucket : updatedIndex.from(since)) {
+			int found = 0;
+			for (int i = 0; i < bucket.size; i++) {
+				long time = bucket.times[i];
+				int row = time < since ? LongIntHashIndex.MISSING : index.get(bucket.ids[i]);
+				if (row != LongIntHashIndex.MISSING && updated[row >>> CHUNK_BITS][row & CHUNK_MASK] == time
+						&& matches(row, filter)) {
+					if (found == ids.length) {
+						ids = Arrays.copyOf(ids, found * 2);
+					}
+					ids[found++] = bucket.ids[i];
+				}
+			}
+			Arrays.sort(ids, 0, found);
+			for (int i = 0; i < found; i++) {
+				if (i == 0 || ids[i] != ids[i - 1]) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public int count(TrxFilter filter) {
+		if (filter.isEmpty()) {
+			return live;
+		}
+		lock.readLock().lock();
+		try {
+			if (StorageEngine.byUpdated(filter)) {
+				return countUpdated(filter);
+			}
+			return countLocked(filter);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Map<Long, GroupTotals> aggregate(GroupBy groupBy, TrxFilter filter) {
+		lock.readLock().lock();
+		try {
+			int first = firstRow(filter);
+			int end = endRow(filter);
+			if (first >= end) {
+				return new HashMap<>();
+			}
+			// the chunks are scanned on the common pool while this thread
+			// holds the read lock, so no writer runs until all of them finish
+			return IntStream.rangeClosed(first >>> CHUNK_BITS, (end - 1) >>> CHUNK_BITS).parallel()
+					.mapToObj(c -> aggregateRows(Math.max(first, c << CHUNK_BITS),
+							Math.min(end, (c + 1) << CHUNK_BITS), groupBy, filter))
+					.reduce((groups, other) -> {
+						StorageEngine.merge(groups, other);
+						return groups;
+					}).orElseGet(HashMap::new);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private Map<Long, GroupTotals> aggregateRows(int from, int to, GroupBy groupBy, TrxFilter filter) {
+		Map<Long, GroupTotals> groups = new HashMap<>();
+		for (int row = from; row < to; row++) {
+			if (!matches(row, filter)) {
+				continue;
+			}
+			int c = row >>> CHUNK_BITS;
+			int o = row & CHUNK_MASK;
+			long key = switch (groupBy) {
+			case user -> users[c][o];
+			case type -> types[c][o];
+			case status -> statuses[c][o];
+			};
+			groups.computeIfAbsent(key, k -> new GroupTotals()).add(amounts[c][o]);
+		}
+		return groups;
+	}
+
+	@Override
+	public List<BankingTransaction> findAll(Predicate<BankingTransaction> predicate, int limit) {
+		lock.readLock().lock();
+		try {
+			List<BankingTransaction> found = new ArrayList<>();
+			for (int row = 0; row < rows && found.size() < limit; row++) {
+				if (ids[row >>> CHUNK_BITS][row & CHUNK_MASK] == TOMBSTONE) {
+					continue;
+				}
+				BankingTransaction trx = materialize(row);
+				if (predicate.test(trx)) {
+					found.add(trx);
+				}
+			}
+			return found;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void close() {
+	}
+
+	private List<BankingTransaction> rangeLocked(int start, int count) {
+		if (start < 0 || count <= 0 || start >= live) {
+			return new ArrayList<>();
+		}
+		List<BankingTransaction> result = new ArrayList<>(Math.min(count, live - start));
+		int chunk = 0;
+		while (chunk < chunkLive.length && start >= chunkLive[chunk]) {
+			start -= chunkLive[chunk];
+			chunk++;
+		}
+		for (int row = chunk << CHUNK_BITS; row < rows && result.size() < count; row++) {
+			if (ids[row >>> CHUNK_BITS][row & CHUNK_MASK] == TOMBSTONE) {
+				continue;
+			}
+			if (start > 0) {
+				start--;
+				continue;
+			}
+			result.add(materialize(row));
+		}
+		return result;
+	}
+
+	private boolean matches(int row, TrxFilter filter) {
+		int c = row >>> CHUNK_BITS;
+		int o = row & CHUNK_MASK;
+		return ids[c][o] != TOMBSTONE
+				&& (filter.getUser() == null || users[c][o] == filter.getUser())
+				&& (filter.getType() == null || types[c][o] == filter.getType())
+				&& (filter.getStatus() == null || statuses[c][o] == filter.getStatus())
+				&& (filter.getCreatedFrom() == null || created[c][o] >= filter.getCreatedFrom())
+				&& (filter.getCreatedTo() == null || created[c][o] < filter.getCreatedTo())
+				&& (filter.getUpdatedSince() == null || updated[c][o] >= filter.getUpdatedSince());
+	}
+
+	// the rows holding the filter's created range
+	private int firstRow(TrxFilter filter) {
+		return filter.getCreatedFrom() == null ? 0 : firstCreatedAtLeast(filter.getCreatedFrom());
+	}
+
+	private int endRow(TrxFilter filter) {
+		return filter.getCreatedTo() == null ? rows : firstCreatedAtLeast(filter.getCreatedTo());
+	}
+
+	private int countLocked(TrxFilter filter) {
+		int matches = 0;
+		for (int row = firstRow(filter), end = endRow(filter); row < end; row++) {
+			if (matches(row, filter)) {
+				matches++;
+			}
+		}
+		return matches;
+	}
+
+	private long createdAt(int row) {
+		if (compacting && row >= compactTo && row < compactFrom) {
+			row = compactFrom;
+		}
+		return created[row >>> CHUNK_BITS][row & CHUNK_MASK];
+	}
+
+	private int firstCreatedAtLeast(long time) {
+		int low = 0;
+		int high = rows;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (createdAt(mid) < time) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private BankingTransaction materialize(int row) {
+		int c = row >>> CHUNK_BITS;
+		int o = row & CHUNK_MASK;
+		return new BankingTransaction(ids[c][o], types[c][o], users[c][o], amounts[c][o], statuses[c][o],
+				created[c][o], updated[c][o], versions[c][o]);
+	}
+
+	private void append(BankingTransaction trx) {
+		int c = rows >>> CHUNK_BITS;
+		int o = rows & CHUNK_MASK;
+		if (c == ids.length) {
+			growChunks();
+		}
+		ids[c][o] = trx.getId();
+		types[c][o] = trx.getType();
+		users[c][o] = trx.getUser();
+		amounts[c][o] = trx.getAmount();
+		statuses[c][o] = trx.getStatus();
+		created[c][o] = trx.getCreated();
+		updated[c][o] = trx.getUpdated();
+		versions[c][o] = trx.getVersion();
+		chunkLive[c]++;
+		rows++;
+	}
+
+	private void growChunks() {
+		int c = ids.length;
+		ids = Arrays.copyOf(ids, c + 1);
+		types = Arrays.copyOf(types, c + 1);
+		users = Arrays.copyOf(users, c + 1);
+		amounts = Arrays.copyOf(amounts, c + 1);
+		statuses = Arrays.copyOf(statuses, c + 1);
+		created = Arrays.copyOf(created, c + 1);
+		updated = Arrays.copyOf(updated, c + 1);
+		versions = Arrays.copyOf(versions, c + 1);
+		chunkLive = Arrays.copyOf(chunkLive, c + 1);
+		ids[c] = new long[CHUNK_SIZE];
+		types[c] = new int[CHUNK_SIZE];
+		users[c] = new long[CHUNK_SIZE];
+		amounts[c] = new long[CHUNK_SIZE];
+		statuses[c] = new int[CHUNK_SIZE];
+		created[c] = new long[CHUNK_SIZE];
+		updated[c] = new long[CHUNK_SIZE];
+		versions[c] = new long[CHUNK_SIZE];
+	}
+
+	// moves the live rows of the next block down to the packed ones, keeping
+	// their order, and trims the chunks once all rows are checked
+	private void compactStep() {
+		for (int end = Math.min(rows, compactFrom + SCAN_BLOCK); compactFrom < end; compactFrom++) {
+			int fc = compactFrom >>> CHUNK_BITS;
+			int fo = compactFrom & CHUNK_MASK;
+			long id = ids[fc][fo];
+			if (id == TOMBSTONE) {
+				continue;
+			}
+			if (compactTo != compactFrom) {
+				int tc = compactTo >>> CHUNK_BITS;
+				int to = compactTo & CHUNK_MASK;
+				ids[tc][to] = id;
+				types[tc][to] = types[fc][fo];
+				users[tc][to] = users[fc][fo];
+				amounts[tc][to] = amounts[fc][fo];
+				statuses[tc][to] = statuses[fc][fo];
+				created[tc][to] = created[fc][fo];
+				updated[tc][to] = updated[fc][fo];
+				versions[tc][to] = versions[fc][fo];
+				index.put(id, compactTo);
+				ids[fc][fo] = TOMBSTONE;
+				chunkLive[fc]--;
+				chunkLive[tc]++;
+			}
+			compactTo++;
+		}
+		if (compactFrom < rows) {
+			return;
+		}
+		compacting = false;
+		rows = compactTo;
+		int usedChunks = (rows + CHUNK_MASK) >>> CHUNK_BITS;
+		ids = Arrays.copyOf(ids, usedChunks);
+		types = Arrays.copyOf(types, usedChunks);
+		users = Arrays.copyOf(users, usedChunks);
+		amounts = Arrays.copyOf(amounts, usedChunks);
+		statuses = Arrays.copyOf(statuses, usedChunks);
+		created = Arrays.copyOf(created, usedChunks);
+		updated = Arrays.copyOf(updated, usedChunks);
+		versions = Arrays.copyOf(versions, usedChunks);
+		chunkLive = Arrays.copyOf(chunkLive, usedChunks);
+	}
+
+}
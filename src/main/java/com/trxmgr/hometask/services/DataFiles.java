@@ -0,0 +1,51 @@
+package com.trxmgr.hometask.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Naming of the numbered files in the data directory, such as log segments
+ * and snapshots.
+ */
+final class DataFiles {
+
+	private DataFiles() {
+	}
+
+	static Path path(Path dir, String prefix, long number, String suffix) {
+		return dir.resolve(prefix + String.format("%019d", number) + suffix);
+	}
+
+	// numbers of the matching files in ascending order
+	static List<Long> list(Path dir, String prefix, String suffix) throws IOException {
+		List<Long> numbers = new ArrayList<>();
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				String name = file.getFileName().toString();
+				if (name.startsWith(prefix) && name.endsWith(suffix)) {
+					try {
+						numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+					} catch (NumberFormatException e) {
+						// not one of ours
+					}
+				}
+			}
+		}
+		Collections.sort(numbers);
+		return numbers;
+	}
+
+	static void deleteBefore(Path dir, String prefix, long number, String suffix) throws IOException {
+		for (long older : list(dir, prefix, suffix)) {
+			if (older < number) {
+				Files.deleteIfExists(path(dir, prefix, older, suffix));
+			}
+		}
+	}
+
+}
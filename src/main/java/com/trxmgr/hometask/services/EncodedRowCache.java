@@ -0,0 +1,151 @@
+package com.trxmgr.hometask.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+
+/**
+ * Least recently read encodings of stored transactions, split into
+ * lock-striped segments, dropped as soon as their row is updated or deleted.
+ *
+ * A reader takes the stamp of the id's stripe before reading the row and only
+ * stores its encoding if no invalidation of the stripe happened in between,
+ * so an encoding of a row that has since changed is never kept.
+ */
+class EncodedRowCache implements StorageListener {
+
+	static final int SEGMENTS = 16;
+	static final int STAMPS = 1024;
+
+	private final Segment[] segments;
+	private final AtomicLongArray stamps = new AtomicLongArray(STAMPS);
+
+	EncodedRowCache(int capacity) {
+		this.segments = new Segment[capacity > 0 ? SEGMENTS : 0];
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment(Math.max(1, capacity / SEGMENTS));
+		}
+	}
+
+	private static int hash(long id) {
+		return Long.hashCode(id * 0x9E3779B97F4A7C15L);
+	}
+
+	private Segment segment(long id) {
+		return segments[hash(id) & (SEGMENTS - 1)];
+	}
+
+	private static int stripe(long id) {
+		return (hash(id) >>> 4) & (STAMPS - 1);
+	}
+
+	boolean enabled() {
+		return segments.length > 0;
+	}
+
+	EncodedTransaction get(long id) {
+		return enabled() ? segment(id).get(id) : null;
+	}
+
+	// to be taken before the row is read
+	long stamp(long id) {
+		return stamps.get(stripe(id));
+	}
+
+	void put(long id, EncodedTransaction encoded, long stamp) {
+		if (enabled()) {
+			segment(id).put(id, encoded, stamps, stripe(id), stamp);
+		}
+	}
+
+	private void invalidate(long id) {
+		if (enabled()) {
+			stamps.incrementAndGet(stripe(id));
+			segment(id).remove(id);
+		}
+	}
+
+	@Override
+	public void deleted(BankingTransaction trx) {
+		invalidate(trx.getId());
+	}
+
+	@Override
+	public void statusUpdated(BankingTransaction trx, int oldStatus) {
+		invalidate(trx.getId());
+	}
+
+	@Override
+	public void amountUpdated(BankingTransaction trx, long oldAmount) {
+		invalidate(trx.getId());
+	}
+
+	int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	private static final class Segment {
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Map<Long, EncodedTransaction> entries;
+
+		Segment(int capacity) {
+			this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, EncodedTransaction> eldest) {
+					return size() > capacity;
+				}
+			};
+		}
+
+		EncodedTransaction get(long id) {
+			lock.lock();
+			try {
+				return entries.get(id);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void put(long id, EncodedTransaction encoded, AtomicLongArray stamps, int stripe, long stamp) {
+			lock.lock();
+			try {
+				// an invalidation removes under this lock after bumping the stamp
+				if (stamps.get(stripe) == stamp) {
+					entries.put(id, encoded);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void remove(long id) {
+			lock.lock();
+			try {
+				entries.remove(id);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		int size() {
+			lock.lock();
+			try {
+				return entries.size();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+}
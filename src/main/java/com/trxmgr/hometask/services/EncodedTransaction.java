@@ -0,0 +1,25 @@
+package com.trxmgr.hometask.services;
+
+/**
+ * A stored transaction already encoded for a response, with the version it
+ * was encoded at for the ETag. The bytes are shared and must not be modified.
+ */
+public final class EncodedTransaction {
+
+	private final long version;
+	private final byte[] bytes;
+
+	EncodedTransaction(long version, byte[] bytes) {
+		this.version = version;
+		this.bytes = bytes;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+}
@@ -0,0 +1,37 @@
+package com.trxmgr.hometask.services;
+
+/**
+ * Count, sum, min and max of the amounts of one group. Mutable and not thread
+ * safe, each scanning task fills its own and the results are merged.
+ */
+final class GroupTotals {
+
+	long count;
+	long sum;
+	long min = Long.MAX_VALUE;
+	long max = Long.MIN_VALUE;
+
+	GroupTotals() {
+	}
+
+	// running totals carry no min and max
+	GroupTotals(long count, long sum) {
+		this.count = count;
+		this.sum = sum;
+	}
+
+	void add(long amount) {
+		count++;
+		sum += amount;
+		min = Math.min(min, amount);
+		max = Math.max(max, amount);
+	}
+
+	void merge(GroupTotals other) {
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+}
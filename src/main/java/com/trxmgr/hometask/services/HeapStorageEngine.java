@@ -0,0 +1,459 @@
+package com.trxmgr.hometask.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import com.trxmgr.hometask.entities.AggregateResponse.GroupBy;
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.PageResponse;
+import com.trxmgr.hometask.entities.TrxFilter;
+
+/**
+ * Keeps transactions as heap objects with a slot list for offset pages,
+ * created and updated time indexes for cursor pages and time ranges, and
+ * secondary indexes on user, type and status.
+ *
+ * Every mutation of an id holds the id's stripe lock, which keeps the list
+ * and all indexes in step with the map. The stripes are locks rather than the
+ * map's bin monitors, so a virtual thread waiting for one, for the list lock
+ * or in a listener unmounts instead of pinning its carrier. Reads take no
+ * lock.
+ */
+class HeapStorageEngine implements StorageEngine {
+
+	// retained heap per row with all indexes, measured by StorageMemoryBenchmark
+	static final long BYTES_PER_ROW = 340;
+	private static final int STRIPES = 256;
+
+	Map<Long, TrxSlotList.Entry> trxMap;
+	TrxSlotList trxList;
+	// a lock rather than a monitor, a virtual thread waiting for it unmounts
+	final ReentrantLock listLock = new ReentrantLock();
+	private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+	NavigableMap<TrxKey, BankingTransaction> createdIndex;
+	NavigableMap<TrxKey, BankingTransaction> updatedIndex;
+	SecondaryIndex<Long> userIndex;
+	SecondaryIndex<Integer> typeIndex;
+	SecondaryIndex<Integer> statusIndex;
+	ParallelSearchEngine searchEngine;
+	StorageListener listener = StorageListener.NONE;
+	StorageMetrics metrics;
+
+	HeapStorageEngine(StorageMetrics metrics, ParallelSearchEngine searchEngine) {
+		this.trxMap = new ConcurrentHashMap<>();
+		this.trxList = new TrxSlotList();
+		this.createdIndex = new ConcurrentSkipListMap<>();
+		this.updatedIndex = new ConcurrentSkipListMap<>();
+		this.userIndex = new SecondaryIndex<>();
+		this.typeIndex = new SecondaryIndex<>();
+		this.statusIndex = new SecondaryIndex<>();
+		this.searchEngine = searchEngine;
+		this.metrics = metrics;
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+	}
+
+	@Override
+	public void listen(StorageListener listener) {
+		this.listener = this.listener.andThen(listener);
+	}
+
+	@Override
+	public void close() {
+		searchEngine.shutdown();
+	}
+
+	private ReentrantLock stripe(long id) {
+		return stripes[Math.floorMod(Long.hashCode(id * 0x9E3779B97F4A7C15L), STRIPES)];
+	}
+
+	@Override
+	public boolean add(BankingTransaction trx) {
+		ReentrantLock stripe = stripe(trx.getId());
+		stripe.lock();
+		try {
+			if (trxMap.containsKey(trx.getId())) {
+				return false;
+			}
+			TrxSlotList.Entry entry = onList(() -> trxList.add(trx));
+			index(trx);
+			listener.added(trx);
+			trxMap.put(trx.getId(), entry);
+			return true;
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	@Override
+	public boolean[] addAll(List<BankingTransaction> trxs) {
+		boolean[] added = new boolean[trxs.size()];
+		List<TrxSlotList.Entry> entries = new ArrayList<>(trxs.size());
+		for (int i = 0; i < trxs.size(); i++) {
+			BankingTransaction trx = trxs.get(i);
+			ReentrantLock stripe = stripe(trx.getId());
+			stripe.lock();
+			try {
+				if (!trxMap.containsKey(trx.getId())) {
+					TrxSlotList.Entry entry = new TrxSlotList.Entry(trx);
+					index(trx);
+					listener.added(trx);
+					trxMap.put(trx.getId(), entry);
+					entries.add(entry);
+					added[i] = true;
+				}
+			} finally {
+				stripe.unlock();
+			}
+		}
+		// one list lock for the whole batch, entries deleted in the meantime are
+		// no longer mapped and are skipped; a delete still waiting for the list
+		// lock finds its entry in the list afterwards
+		onList(() -> {
+			entries.removeIf(entry -> trxMap.get(entry.trx.getId()) != entry);
+			trxList.addAll(entries);
+			return null;
+		});
+		return added;
+	}
+
+	@Override
+	public BankingTransaction delete(long id) {
+		ReentrantLock stripe = stripe(id);
+		stripe.lock();
+		try {
+			TrxSlotList.Entry entry = trxMap.get(id);
+			if (entry == null) {
+				return null;
+			}
+			onList(() -> trxList.remove(entry));
+			unindex(entry.trx);
+			listener.deleted(entry.trx);
+			trxMap.remove(id);
+			return entry.trx;
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	@Override
+	public BankingTransaction[] deleteAll(long[] ids) {
+		BankingTransaction[] deleted = new BankingTransaction[ids.length];
+		List<TrxSlotList.Entry> entries = new ArrayList<>(ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			ReentrantLock stripe = stripe(ids[i]);
+			stripe.lock();
+			try {
+				TrxSlotList.Entry entry = trxMap.get(ids[i]);
+				if (entry != null) {
+					unindex(entry.trx);
+					listener.deleted(entry.trx);
+					trxMap.remove(ids[i]);
+					entries.add(entry);
+					deleted[i] = entry.trx;
+				}
+			} finally {
+				stripe.unlock();
+			}
+		}
+		onList(() -> {
+			trxList.removeAll(entries);
+			return null;
+		});
+		return deleted;
+	}
+
+	@Override
+	public BankingTransaction[] updateStatusAll(long[] ids, int[] statuses, long updated) {
+		BankingTransaction[] results = new BankingTransaction[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			results[i] = updateStatus(ids[i], statuses[i], updated, ANY_VERSION);
+		}
+		return results;
+	}
+
+	// runs the action under the list lock and records wait and hold times
+	private <T> T onList(Supplier<T> action) {
+		long requested = System.nanoTime();
+		listLock.lock();
+		long acquired = System.nanoTime();
+		try {
+			return action.get();
+		} finally {
+			listLock.unlock();
+			metrics.lockWaited(acquired - requested);
+			metrics.lockHeld(System.nanoTime() - acquired);
+		}
+	}
+
+	private void index(BankingTransaction trx) {
+		TrxKey key = new TrxKey(trx.getCreated(), trx.getId());
+		createdIndex.put(key, trx);
+		updatedIndex.put(new TrxKey(trx.getUpdated(), trx.getId()), trx);
+		userIndex.add(trx.getUser(), key, trx);
+		typeIndex.add(trx.getType(), key, trx);
+		statusIndex.add(trx.getStatus(), key, trx);
+	}
+
+	private void unindex(BankingTransaction trx) {
+		TrxKey key = new TrxKey(trx.getCreated(), trx.getId());
+		createdIndex.remove(key);
+		updatedIndex.remove(new TrxKey(trx.getUpdated(), trx.getId()));
+		userIndex.remove(trx.getUser(), key);
+		typeIndex.remove(trx.getType(), key);
+		statusIndex.remove(trx.getStatus(), key);
+	}
+
+	// the copy replaces the row in the entry and in every index under the
+	// stripe lock, readers see either the old or the new row
+	@Override
+	public BankingTransaction updateStatus(long id, int status, long updated, long expectedVersion) {
+		ReentrantLock stripe = stripe(id);
+		stripe.lock();
+		try {
+			TrxSlotList.Entry current = trxMap.get(id);
+			if (current == null) {
+				return null;
+			}
+			BankingTransaction old = current.trx;
+			StorageEngine.checkVersion(id, expectedVersion, old.getVersion());
+			BankingTransaction trx = old.withStatus(status, updated);
+			TrxKey key = new TrxKey(trx.getCreated(), id);
+			statusIndex.remove(old.getStatus(), key);
+			statusIndex.add(status, key, trx);
+			reindex(key, old, trx);
+			current.trx = trx;
+			listener.statusUpdated(trx, old.getStatus());
+			return trx;
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	@Override
+	public BankingTransaction updateAmount(long id, long amount, long updated, long expectedVersion) {
+		ReentrantLock stripe = stripe(id);
+		stripe.lock();
+		try {
+			TrxSlotList.Entry current = trxMap.get(id);
+			if (current == null) {
+				return null;
+			}
+			BankingTransaction old = current.trx;
+			StorageEngine.checkVersion(id, expectedVersion, old.getVersion());
+			BankingTransaction trx = old.withAmount(amount, updated);
+			TrxKey key = new TrxKey(trx.getCreated(), id);
+			statusIndex.replace(trx.getStatus(), key, trx);
+			reindex(key, old, trx);
+			current.trx = trx;
+			listener.amountUpdated(trx, old.getAmount());
+			return trx;
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	// all indexes but status, whose bucket depends on the update
+	private void reindex(TrxKey key, BankingTransaction old, BankingTransaction trx) {
+		createdIndex.replace(key, trx);
+		userIndex.replace(trx.getUser(), key, trx);
+		typeIndex.replace(trx.getType(), key, trx);
+		// the new position is added before the old one is removed, so a
+		// concurrent scan of the updated index cannot miss the row, and skips
+		// the old position once the entry holds the copy
+		updatedIndex.put(new TrxKey(trx.getUpdated(), trx.getId()), trx);
+		if (old.getUpdated() != trx.getUpdated()) {
+			updatedIndex.remove(new TrxKey(old.getUpdated(), old.getId()));
+		}
+	}
+
+	@Override
+	public BankingTransaction get(long id) {
+		TrxSlotList.Entry entry = trxMap.get(id);
+		return entry == null ? null : entry.trx;
+	}
+
+	@Override
+	public boolean contains(long id) {
+		return trxMap.containsKey(id);
+	}
+
+	@Override
+	public int size() {
+		return trxMap.size();
+	}
+
+	@Override
+	public long estimatedBytes() {
+		return size() * BYTES_PER_ROW;
+	}
+
+	@Override
+	public List<BankingTransaction> range(int start, int count) {
+		return trxList.snapshot().range(start, count);
+	}
+
+	@Override
+	public PageResponse page(int pageNo, int pageSize, TrxFilter filter) {
+		if (filter.isEmpty()) {
+			// page data and totals taken from one snapshot, so they always agree
+			TrxSlotList.Snapshot snapshot = trxList.snapshot();
+			List<BankingTransaction> pagedTrxs = snapshot.range((pageNo - 1) * pageSize, pageSize);
+			return new PageResponse(pageNo, pageSize, StorageEngine.totalPages(snapshot.size(), pageSize),
+					snapshot.size(), pagedTrxs);
+		}
+		int skip = Math.max(0, (pageNo - 1) * pageSize);
+		List<BankingTransaction> pagedTrxs = new ArrayList<>();
+		int matches = 0;
+		for (BankingTransaction trx : createdRange(candidates(filter), null, filter).values()) {
+			if (!filter.matches(trx)) {
+				continue;
+			}
+			if (matches >= skip && pagedTrxs.size() < pageSize) {
+				pagedTrxs.add(trx);
+			}
+			matches++;
+		}
+		return new PageResponse(pageNo, pageSize, StorageEngine.totalPages(matches, pageSize), matches, pagedTrxs);
+	}
+
+	@Override
+	public PageResponse pageAfter(String cursor, int limit, TrxFilter filter) {
+		return StorageEngine.pageAfter(this, cursor, limit, filter);
+	}
+
+	@Override
+	public List<BankingTransaction> after(TrxKey key, int limit, TrxFilter filter) {
+		return scan(createdRange(candidates(filter), key, filter), limit, filter::matches);
+	}
+
+	@Override
+	public List<BankingTransaction> updatedAfter(TrxKey key, int limit, TrxFilter filter) {
+		return scan(updatedRange(key, filter), limit, trx -> filter.matches(trx) && isCurrent(trx));
+	}
+
+	private static List<BankingTransaction> scan(NavigableMap<TrxKey, BankingTransaction> range, int limit,
+			Predicate<BankingTransaction> accept) {
+		List<BankingTransaction> rows = new ArrayList<>(Math.max(0, Math.min(limit, 1024)));
+		for (BankingTransaction trx : range.values()) {
+			if (rows.size() >= limit) {
+				break;
+			}
+			if (accept.test(trx)) {
+				rows.add(trx);
+			}
+		}
+		return rows;
+	}
+
+	// whether an updated index position is still the row's, an update removes
+	// the old one only after adding the new one
+	private boolean isCurrent(BankingTransaction trx) {
+		TrxSlotList.Entry entry = trxMap.get(trx.getId());
+		return entry != null && entry.trx.getUpdated() == trx.getUpdated();
+	}
+
+	@Override
+	public int count(TrxFilter filter) {
+		if (filter.isEmpty()) {
+			return size();
+		}
+		// an updated range alone is narrower than the whole created index
+		boolean byUpdated = StorageEngine.byUpdated(filter) && candidates(filter) == createdIndex;
+		NavigableMap<TrxKey, BankingTransaction> range = byUpdated ? updatedRange(null, filter)
+				: createdRange(candidates(filter), null, filter);
+		int matches = 0;
+		for (BankingTransaction trx : range.values()) {
+			if (filter.matches(trx) && (!byUpdated || isCurrent(trx))) {
+				matches++;
+			}
+		}
+		return matches;
+	}
+
+	// the most selective index bucket for the filter, remaining fields are
+	// checked per row
+	private NavigableMap<TrxKey, BankingTransaction> candidates(TrxFilter filter) {
+		if (filter.getUser() != null) {
+			return userIndex.get(filter.getUser());
+		}
+		if (filter.getType() != null) {
+			return typeIndex.get(filter.getType());
+		}
+		if (filter.getStatus() != null) {
+			return statusIndex.get(filter.getStatus());
+		}
+		return createdIndex;
+	}
+
+	private static NavigableMap<TrxKey, BankingTransaction> createdRange(NavigableMap<TrxKey, BankingTransaction> index,
+			TrxKey after, TrxFilter filter) {
+		return range(index, after, filter.getCreatedFrom(), filter.getCreatedTo());
+	}
+
+	private NavigableMap<TrxKey, BankingTransaction> updatedRange(TrxKey after, TrxFilter filter) {
+		return range(updatedIndex, after, filter.getUpdatedSince(), null);
+	}
+
+	// the entries of a time ordered index from the lower time bound, or after
+	// the key when that is further, up to the exclusive upper time bound
+	private static NavigableMap<TrxKey, BankingTransaction> range(NavigableMap<TrxKey, BankingTransaction> index,
+			TrxKey after, Long from, Long to) {
+		TrxKey lower = from == null ? null : new TrxKey(from, Long.MIN_VALUE);
+		boolean inclusive = true;
+		if (after != null && (lower == null || after.compareTo(lower) >= 0)) {
+			lower = after;
+			inclusive = false;
+		}
+		TrxKey upper = to == null ? null : new TrxKey(to, Long.MIN_VALUE);
+		if (lower != null && upper != null) {
+			return lower.compareTo(upper) >= 0 ? Collections.emptyNavigableMap()
+					: index.subMap(lower, inclusive, upper, false);
+		}
+		if (lower != null) {
+			return index.tailMap(lower, inclusive);
+		}
+		return upper == null ? index : index.headMap(upper, false);
+	}
+
+	@Override
+	public List<BankingTransaction> findAll(Predicate<BankingTransaction> predicate, int limit) {
+		TrxSlotList.Snapshot snapshot = trxList.snapshot();
+		List<TrxSlotList.Entry> found = searchEngine.findAll(snapshot.slots(), snapshot.usedCounts(),
+				snapshot.chunkCount(), entry -> predicate.test(entry.trx), limit);
+		List<BankingTransaction> result = new ArrayList<>(found.size());
+		for (TrxSlotList.Entry entry : found) {
+			result.add(entry.trx);
+		}
+		return result;
+	}
+
+	@Override
+	public Map<Long, GroupTotals> aggregate(GroupBy groupBy, TrxFilter filter) {
+		TrxSlotList.Snapshot snapshot = trxList.snapshot();
+		return searchEngine.reduce(snapshot.slots(), snapshot.usedCounts(), snapshot.chunkCount(),
+				() -> new HashMap<Long, GroupTotals>(), (groups, entry) -> {
+					BankingTransaction trx = entry.trx;
+					if (filter.matches(trx)) {
+						groups.computeIfAbsent(groupBy.keyOf(trx), key -> new GroupTotals()).add(trx.getAmount());
+					}
+				}, StorageEngine::merge);
+	}
+
+	@Override
+	public void forEach(Consumer<BankingTransaction> action) {
+		createdIndex.values().forEach(action);
+	}
+
+}
@@ -0,0 +1,188 @@
+package com.trxmgr.hometask.services;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import com.trxmgr.hometask.entities.IdempotencyConflictException;
+import com.trxmgr.hometask.entities.InvalidIdempotencyKeyException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+/**
+ * Remembers the successful responses of recent requests by their
+ * Idempotency-Key, so a retried request gets the original response without
+ * running again. Keys are spread over lock-striped insertion-ordered
+ * segments: since every entry lives equally long, expired entries are always
+ * at the head of a segment and are dropped there on insert, as is the oldest
+ * entry once the segment is full. Memory is bounded by the entry limit
+ * whatever the request rate.
+ *
+ * A key is claimed before its request runs. A second request with the key
+ * fails while the first is in flight or when its request differs, and a
+ * failed first request releases the key so it can be retried.
+ */
+@Service
+public class IdempotencyCache {
+
+	public static final String HEADER = "Idempotency-Key";
+	public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+	static final int SEGMENTS = 16;
+	static final int MAX_KEY_LENGTH = 255;
+
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private final long ttlNanos;
+	private final Counter replays;
+
+	public IdempotencyCache(IdempotencyProperties properties) {
+		this(properties, new CompositeMeterRegistry());
+	}
+
+	@Autowired
+	public IdempotencyCache(IdempotencyProperties properties, MeterRegistry registry) {
+		super();
+		int perSegment = Math.max(1, properties.getMaxEntries() / SEGMENTS);
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(perSegment);
+		}
+		this.ttlNanos = TimeUnit.SECONDS.toNanos(properties.getTtlSeconds());
+		this.replays = Counter.builder("trxmgr.idempotency.replays")
+				.description("requests answered from the idempotency cache").register(registry);
+		Gauge.builder("trxmgr.idempotency.entries", this, IdempotencyCache::size)
+				.description("idempotency keys remembered").register(registry);
+	}
+
+	/**
+	 * Runs the action once per key and request. The request must implement
+	 * equals; only 2xx responses are kept.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> ResponseEntity<T> execute(String key, Object request, Supplier<ResponseEntity<T>> action) {
+		if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+			throw new InvalidIdempotencyKeyException(key.length());
+		}
+		Segment segment = segments[key.hashCode() & (SEGMENTS - 1)];
+		Entry claim = new Entry(request, System.nanoTime() + ttlNanos);
+		Entry existing = segment.claim(key, claim);
+		if (existing != null) {
+			if (!existing.request.equals(request)) {
+				throw new IdempotencyConflictException(key, false);
+			}
+			ResponseEntity<?> response = existing.response;
+			if (response == null) {
+				throw new IdempotencyConflictException(key, true);
+			}
+			replays.increment();
+			return (ResponseEntity<T>) ResponseEntity.status(response.getStatusCode())
+					.headers(response.getHeaders()).header(REPLAYED_HEADER, "true").body(response.getBody());
+		}
+
+		ResponseEntity<T> response;
+		try {
+			response = action.get();
+		} catch (RuntimeException e) {
+			segment.release(key, claim);
+			throw e;
+		}
+		if (response.getStatusCode().is2xxSuccessful()) {
+			claim.response = response;
+		} else {
+			segment.release(key, claim);
+		}
+		return response;
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	private static final class Entry {
+
+		final Object request;
+		final long expires;
+		// null while the first request runs
+		volatile ResponseEntity<?> response;
+
+		Entry(Object request, long expires) {
+			this.request = request;
+			this.expires = expires;
+		}
+
+		boolean expired(long now) {
+			return now - expires >= 0;
+		}
+	}
+
+	private static final class Segment {
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Map<String, Entry> entries;
+
+		Segment(int capacity) {
+			this.entries = new LinkedHashMap<>(16, 0.75f, false) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+					return size() > capacity;
+				}
+			};
+		}
+
+		// stores the claim unless a live entry holds the key, returns that entry
+		Entry claim(String key, Entry claim) {
+			long now = System.nanoTime();
+			lock.lock();
+			try {
+				Iterator<Entry> oldest = entries.values().iterator();
+				while (oldest.hasNext() && oldest.next().expired(now)) {
+					oldest.remove();
+				}
+				Entry existing = entries.get(key);
+				if (existing != null && !existing.expired(now)) {
+					return existing;
+				}
+				// a re-inserted key moves to the tail
+				entries.remove(key);
+				entries.put(key, claim);
+				return null;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void release(String key, Entry claim) {
+			lock.lock();
+			try {
+				entries.remove(key, claim);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		int size() {
+			lock.lock();
+			try {
+				return entries.size();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+}
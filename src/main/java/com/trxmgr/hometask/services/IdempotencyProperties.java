@@ -0,0 +1,28 @@
+package com.trxmgr.hometask.services;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "trxmgr.idempotency")
+public class IdempotencyProperties {
+
+	// oldest responses are dropped beyond this many keys
+	private int maxEntries = 100_000;
+	private long ttlSeconds = 3600;
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	public long getTtlSeconds() {
+		return ttlSeconds;
+	}
+
+	public void setTtlSeconds(long ttlSeconds) {
+		this.ttlSeconds = ttlSeconds;
+	}
+
+}
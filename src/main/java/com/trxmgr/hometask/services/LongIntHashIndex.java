@@ -0,0 +1,136 @@
+package com.trxmgr.hometask.services;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from non-negative long keys to int values with
+ * linear probing and backward-shift deletion, so no boxing and no tombstones.
+ * Not thread-safe.
+ */
+class LongIntHashIndex {
+
+	static final int MISSING = -1;
+
+	private static final long FREE = -1L;
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private long[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+	private int resizeAt;
+
+	LongIntHashIndex(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(16, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+		allocate(capacity);
+	}
+
+	int get(long key) {
+		int slot = slot(key);
+		long current;
+		while ((current = keys[slot]) != FREE) {
+			if (current == key) {
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return MISSING;
+	}
+
+	// returns the previous value or MISSING
+	int put(long key, int value) {
+		int slot = slot(key);
+		long current;
+		while ((current = keys[slot]) != FREE) {
+			if (current == key) {
+				int previous = values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size >= resizeAt) {
+			rehash(keys.length << 1);
+		}
+		return MISSING;
+	}
+
+	int remove(long key) {
+		int slot = slot(key);
+		long current;
+		while ((current = keys[slot]) != FREE) {
+			if (current == key) {
+				int previous = values[slot];
+				shiftBack(slot);
+				size--;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return MISSING;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int capacity() {
+		return keys.length;
+	}
+
+	long memoryBytes() {
+		return (long) keys.length * (Long.BYTES + Integer.BYTES);
+	}
+
+	private void shiftBack(int gap) {
+		int slot = gap;
+		while (true) {
+			slot = (slot + 1) & mask;
+			long key = keys[slot];
+			if (key == FREE) {
+				break;
+			}
+			int home = slot(key);
+			// move the entry into the gap unless its home lies cyclically in (gap, slot]
+			if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+				keys[gap] = key;
+				values[gap] = values[slot];
+				gap = slot;
+			}
+		}
+		keys[gap] = FREE;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, FREE);
+		mask = capacity - 1;
+		resizeAt = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			long key = oldKeys[i];
+			if (key != FREE) {
+				int slot = slot(key);
+				while (keys[slot] != FREE) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,227 @@
+package com.trxmgr.hometask.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.trxmgr.hometask.entities.AggregateResponse.GroupBy;
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.PageResponse;
+import com.trxmgr.hometask.entities.TrxFilter;
+
+/**
+ * Engine over part engines whose listings are merged in cursor order,
+ * (created, id) or (updated, id), the former also being the order of offset
+ * pages here. Subclasses decide which part holds an id.
+ *
+ * An offset page walks the merge from the oldest row, so its cost grows with
+ * the page number; cursor pages only read one page from each part.
+ */
+abstract class MergedStorageEngine<P extends StoragePart> implements StorageEngine {
+
+	private static final int MERGE_BLOCK = 256;
+	private static final Comparator<BankingTransaction> CREATED_ORDER = Comparator
+			.comparingLong(BankingTransaction::getCreated).thenComparingLong(BankingTransaction::getId);
+	private static final Comparator<BankingTransaction> UPDATED_ORDER = Comparator
+			.comparingLong(BankingTransaction::getUpdated).thenComparingLong(BankingTransaction::getId);
+
+	// merges read the parts in this order
+	final P[] parts;
+
+	MergedStorageEngine(P[] parts) {
+		this.parts = parts;
+	}
+
+	@Override
+	public void listen(StorageListener listener) {
+		for (StoragePart part : parts) {
+			part.listen(listener);
+		}
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (StoragePart part : parts) {
+			size += part.size();
+		}
+		return size;
+	}
+
+	@Override
+	public long estimatedBytes() {
+		long bytes = 0;
+		for (StoragePart part : parts) {
+			bytes += part.estimatedBytes();
+		}
+		return bytes;
+	}
+
+	@Override
+	public List<BankingTransaction> range(int start, int count) {
+		return merged(start, count, TrxFilter.NONE);
+	}
+
+	@Override
+	public PageResponse page(int pageNo, int pageSize, TrxFilter filter) {
+		List<BankingTransaction> pagedTrxs = merged((pageNo - 1) * pageSize, pageSize, filter);
+		int total = count(filter);
+		return new PageResponse(pageNo, pageSize, StorageEngine.totalPages(total, pageSize), total, pagedTrxs);
+	}
+
+	// offset pages are always in created order
+	private List<BankingTransaction> merged(int start, int count, TrxFilter filter) {
+		List<BankingTransaction> rows = new ArrayList<>();
+		if (start < 0 || count <= 0) {
+			return rows;
+		}
+		Merge merge = new Merge(null, MERGE_BLOCK, filter, false);
+		for (int skipped = 0; skipped < start && merge.hasNext(); skipped++) {
+			merge.next();
+		}
+		while (rows.size() < count && merge.hasNext()) {
+			rows.add(merge.next());
+		}
+		return rows;
+	}
+
+	@Override
+	public PageResponse pageAfter(String cursor, int limit, TrxFilter filter) {
+		return StorageEngine.pageAfter(this, cursor, limit, filter);
+	}
+
+	@Override
+	public List<BankingTransaction> after(TrxKey key, int limit, TrxFilter filter) {
+		return merged(key, limit, filter, false);
+	}
+
+	@Override
+	public List<BankingTransaction> updatedAfter(TrxKey key, int limit, TrxFilter filter) {
+		return merged(key, limit, filter, true);
+	}
+
+	// the order is the caller's, a part may be a merge itself
+	private List<BankingTransaction> merged(TrxKey key, int limit, TrxFilter filter, boolean byUpdated) {
+		// each part contributes at most limit rows
+		Merge merge = new Merge(key, Math.max(1, Math.min(limit, 1024)), filter, byUpdated);
+		List<BankingTransaction> rows = new ArrayList<>(Math.max(0, Math.min(limit, 1024)));
+		while (rows.size() < limit && merge.hasNext()) {
+			rows.add(merge.next());
+		}
+		return rows;
+	}
+
+	@Override
+	public int count(TrxFilter filter) {
+		int total = 0;
+		for (StoragePart part : parts) {
+			total += part.count(filter);
+		}
+		return total;
+	}
+
+	@Override
+	public Map<Long, GroupTotals> aggregate(GroupBy groupBy, TrxFilter filter) {
+		Map<Long, GroupTotals> groups = new HashMap<>();
+		for (StoragePart part : parts) {
+			StorageEngine.merge(groups, part.aggregate(groupBy, filter));
+		}
+		return groups;
+	}
+
+	@Override
+	public List<BankingTransaction> findAll(Predicate<BankingTransaction> predicate, int limit) {
+		List<BankingTransaction> found = new ArrayList<>();
+		for (StoragePart part : parts) {
+			if (found.size() >= limit) {
+				break;
+			}
+			found.addAll(part.findAll(predicate, limit - found.size()));
+		}
+		return found;
+	}
+
+	@Override
+	public void forEach(Consumer<BankingTransaction> action) {
+		Merge merge = new Merge(null, MERGE_BLOCK, TrxFilter.NONE, false);
+		while (merge.hasNext()) {
+			action.accept(merge.next());
+		}
+	}
+
+	@Override
+	public void close() {
+		for (StoragePart part : parts) {
+			part.close();
+		}
+	}
+
+	/**
+	 * K-way merge of the parts in (created, id) or (updated, id) order. Each
+	 * part is read a block at a time, so no lock is held between calls to
+	 * {@link #next()}.
+	 */
+	private final class Merge {
+
+		private final PriorityQueue<Source> heads;
+		private final int block;
+		private final TrxFilter filter;
+		private final boolean byUpdated;
+
+		Merge(TrxKey after, int block, TrxFilter filter, boolean byUpdated) {
+			this.block = block;
+			this.filter = filter;
+			this.byUpdated = byUpdated;
+			this.heads = new PriorityQueue<>(
+					Comparator.comparing(source -> source.head(), byUpdated ? UPDATED_ORDER : CREATED_ORDER));
+			for (StoragePart part : parts) {
+				Source source = new Source(part);
+				if (source.fill(after)) {
+					heads.add(source);
+				}
+			}
+		}
+
+		boolean hasNext() {
+			return !heads.isEmpty();
+		}
+
+		BankingTransaction next() {
+			Source source = heads.poll();
+			BankingTransaction trx = source.rows.get(source.position++);
+			if (source.position < source.rows.size()
+					|| source.rows.size() == block && source.fill(
+							new TrxKey(byUpdated ? trx.getUpdated() : trx.getCreated(), trx.getId()))) {
+				heads.add(source);
+			}
+			return trx;
+		}
+
+		private final class Source {
+
+			final StoragePart part;
+			List<BankingTransaction> rows;
+			int position;
+
+			Source(StoragePart part) {
+				this.part = part;
+			}
+
+			boolean fill(TrxKey after) {
+				rows = byUpdated ? part.updatedAfter(after, block, filter) : part.after(after, block, filter);
+				position = 0;
+				return !rows.isEmpty();
+			}
+
+			BankingTransaction head() {
+				return rows.get(position);
+			}
+		}
+	}
+
+}
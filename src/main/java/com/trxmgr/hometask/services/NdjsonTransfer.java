@@ -0,0 +1,97 @@
+package com.trxmgr.hometask.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.BatchItemResult;
+import com.trxmgr.hometask.entities.BatchResponse;
+
+/**
+ * Streams transactions as newline delimited JSON. Export writes rows straight
+ * from storage to the response, import reads one row at a time and stores them
+ * in batches, so neither side holds more than a batch in memory.
+ */
+@Service
+public class NdjsonTransfer {
+
+	static final int IMPORT_BATCH = 1000;
+	static final int MAX_REPORTED_FAILURES = 100;
+
+	private final TransactionStorage trxStorage;
+	private final ObjectReader reader;
+	private final ObjectWriter writer;
+	private final ObjectMapper mapper;
+
+	public NdjsonTransfer(TransactionStorage trxStorage, ObjectMapper mapper) {
+		super();
+		this.trxStorage = trxStorage;
+		this.mapper = mapper;
+		this.reader = mapper.readerFor(BankingTransaction.class);
+		this.writer = mapper.writerFor(BankingTransaction.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+	}
+
+	public void export(OutputStream out) throws IOException {
+		try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+			generator.setRootValueSeparator(null);
+			trxStorage.forEach(trx -> {
+				try {
+					writer.writeValue(generator, trx);
+					generator.writeRaw('\n');
+				} catch (IOException e) {
+					// client went away, stop walking the storage
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Stores every row of the stream. Batches before a malformed row are kept,
+	 * the parse error is thrown. Only the first failures are reported in
+	 * detail, the counts cover the whole stream.
+	 */
+	public BatchResponse importAll(InputStream in) throws IOException {
+		int succeeded = 0;
+		int failed = 0;
+		List<BatchItemResult> failures = new ArrayList<>();
+		List<BankingTransaction> batch = new ArrayList<>(IMPORT_BATCH);
+		try (JsonParser parser = mapper.getFactory().createParser(in);
+				MappingIterator<BankingTransaction> rows = reader.readValues(parser)) {
+			while (rows.hasNextValue()) {
+				batch.add(rows.nextValue());
+				if (batch.size() < IMPORT_BATCH && rows.hasNextValue()) {
+					continue;
+				}
+				for (BatchItemResult result : trxStorage.addAll(batch)) {
+					if (result.succeeded()) {
+						succeeded++;
+						continue;
+					}
+					failed++;
+					if (failures.size() < MAX_REPORTED_FAILURES) {
+						failures.add(result);
+					}
+				}
+				batch.clear();
+			}
+		}
+		return new BatchResponse(succeeded, failed, failures);
+	}
+
+}
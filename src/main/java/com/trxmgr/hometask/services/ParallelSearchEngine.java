@@ -0,0 +1,202 @@
+package com.trxmgr.hometask.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Fork-join search over chunked arrays. All state of a search lives in its own
+ * {@link Search} instance, so concurrent searches never interfere. Once enough
+ * matches are found, outstanding subtasks are cancelled and running ones stop
+ * at the next chunk boundary. Reductions split the chunks the same way, each
+ * leaf filling its own accumulator.
+ */
+public class ParallelSearchEngine {
+
+	static final int SEQUENTIAL_CHUNKS = 8;
+
+	private final ForkJoinPool pool;
+
+	public ParallelSearchEngine() {
+		this(new ForkJoinPool());
+	}
+
+	public ParallelSearchEngine(ForkJoinPool pool) {
+		super();
+		this.pool = pool;
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	public <T> T findAny(T[][] chunks, int[] used, int chunkCount, Predicate<? super T> predicate) {
+		List<T> found = findAll(chunks, used, chunkCount, predicate, 1);
+		return found.isEmpty() ? null : found.get(0);
+	}
+
+	/**
+	 * Returns up to {@code limit} non-null elements matching the predicate, in no
+	 * particular order. Only the first {@code used[i]} slots of
+	 * {@code chunks[i]} are scanned.
+	 */
+	public <T> List<T> findAll(T[][] chunks, int[] used, int chunkCount, Predicate<? super T> predicate,
+			int limit) {
+		if (limit <= 0 || chunkCount == 0) {
+			return new ArrayList<>();
+		}
+		Search<T> search = new Search<>(chunks, used, predicate, limit);
+		pool.invoke(new SearchTask<>(search, 0, chunkCount));
+		return new ArrayList<>(search.found);
+	}
+
+	/**
+	 * Folds every non-null element of the chunks into accumulators created per
+	 * leaf task, which are then combined pairwise into the result.
+	 */
+	public <T, A> A reduce(T[][] chunks, int[] used, int chunkCount, Supplier<A> create,
+			BiConsumer<A, ? super T> accumulate, BiConsumer<A, A> combine) {
+		if (chunkCount == 0) {
+			return create.get();
+		}
+		return pool.invoke(new ReduceTask<>(chunks, used, 0, chunkCount, create, accumulate, combine));
+	}
+
+	private static final class Search<T> {
+		final T[][] chunks;
+		final int[] used;
+		final Predicate<? super T> predicate;
+		final int limit;
+		final Queue<T> found = new ConcurrentLinkedQueue<>();
+		final AtomicInteger matches = new AtomicInteger();
+		volatile boolean done;
+
+		Search(T[][] chunks, int[] used, Predicate<? super T> predicate, int limit) {
+			this.chunks = chunks;
+			this.used = used;
+			this.predicate = predicate;
+			this.limit = limit;
+		}
+
+		void offer(T match) {
+			int seen = matches.incrementAndGet();
+			if (seen <= limit) {
+				found.add(match);
+			}
+			if (seen >= limit) {
+				done = true;
+			}
+		}
+	}
+
+	private static final class SearchTask<T> extends RecursiveAction {
+
+		private static final long serialVersionUID = 2690307429744211593L;
+
+		private final Search<T> search;
+		private final int from;
+		private final int to;
+
+		SearchTask(Search<T> search, int from, int to) {
+			this.search = search;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (search.done) {
+				return;
+			}
+			if (to - from <= SEQUENTIAL_CHUNKS) {
+				computeDirectly();
+				return;
+			}
+
+			int split = from + (to - from) / 2;
+			SearchTask<T> left = new SearchTask<>(search, from, split);
+			left.fork();
+			new SearchTask<>(search, split, to).compute();
+
+			if (search.done) {
+				left.cancel(false);
+			} else {
+				left.join();
+			}
+		}
+
+		private void computeDirectly() {
+			for (int c = from; c < to && !search.done; c++) {
+				T[] slots = search.chunks[c];
+				int used = search.used[c];
+				for (int i = 0; i < used; i++) {
+					T candidate = slots[i];
+					if (candidate != null && search.predicate.test(candidate)) {
+						search.offer(candidate);
+						if (search.done) {
+							return;
+						}
+					}
+				}
+			}
+		}
+
+	}
+
+	private static final class ReduceTask<T, A> extends RecursiveTask<A> {
+
+		private static final long serialVersionUID = -3417205837130486241L;
+
+		private final T[][] chunks;
+		private final int[] used;
+		private final int from;
+		private final int to;
+		private final Supplier<A> create;
+		private final BiConsumer<A, ? super T> accumulate;
+		private final BiConsumer<A, A> combine;
+
+		ReduceTask(T[][] chunks, int[] used, int from, int to, Supplier<A> create,
+				BiConsumer<A, ? super T> accumulate, BiConsumer<A, A> combine) {
+			this.chunks = chunks;
+			this.used = used;
+			this.from = from;
+			this.to = to;
+			this.create = create;
+			this.accumulate = accumulate;
+			this.combine = combine;
+		}
+
+		@Override
+		protected A compute() {
+			if (to - from <= SEQUENTIAL_CHUNKS) {
+				A result = create.get();
+				for (int c = from; c < to; c++) {
+					T[] slots = chunks[c];
+					for (int i = 0; i < used[c]; i++) {
+						if (slots[i] != null) {
+							accumulate.accept(result, slots[i]);
+						}
+					}
+				}
+				return result;
+			}
+
+			int split = from + (to - from) / 2;
+			ReduceTask<T, A> left = new ReduceTask<>(chunks, used, from, split, create, accumulate, combine);
+			left.fork();
+			A result = new ReduceTask<>(chunks, used, split, to, create, accumulate, combine).compute();
+			combine.accept(result, left.join());
+			return result;
+		}
+
+	}
+
+}
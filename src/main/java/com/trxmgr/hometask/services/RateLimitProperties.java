@@ -0,0 +1,87 @@
+package com.trxmgr.hometask.services;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "trxmgr.rate-limit")
+public class RateLimitProperties {
+
+	public static class Limit {
+
+		// sustained rate per user, 0 or less for no limit
+		private double requestsPerSecond = 100;
+		// requests a user may send at once after being idle
+		private int burst = 200;
+
+		public Limit() {
+			super();
+		}
+
+		public Limit(double requestsPerSecond, int burst) {
+			super();
+			this.requestsPerSecond = requestsPerSecond;
+			this.burst = burst;
+		}
+
+		public double getRequestsPerSecond() {
+			return requestsPerSecond;
+		}
+
+		public void setRequestsPerSecond(double requestsPerSecond) {
+			this.requestsPerSecond = requestsPerSecond;
+		}
+
+		public int getBurst() {
+			return burst;
+		}
+
+		public void setBurst(int burst) {
+			this.burst = burst;
+		}
+
+	}
+
+	// users are not limited unless enabled
+	private boolean enabled = false;
+	// limit of the types without their own
+	private Limit defaults = new Limit();
+	// limits by transaction type, each type with a limit has its own bucket per user
+	private Map<Integer, Limit> types = new HashMap<>();
+	// how often buckets of idle users are dropped, 0 or less to only drop them when a stripe grows
+	private long evictIntervalSeconds = 60;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public Limit getDefaults() {
+		return defaults;
+	}
+
+	public void setDefaults(Limit defaults) {
+		this.defaults = defaults;
+	}
+
+	public Map<Integer, Limit> getTypes() {
+		return types;
+	}
+
+	public void setTypes(Map<Integer, Limit> types) {
+		this.types = types;
+	}
+
+	public long getEvictIntervalSeconds() {
+		return evictIntervalSeconds;
+	}
+
+	public void setEvictIntervalSeconds(long evictIntervalSeconds) {
+		this.evictIntervalSeconds = evictIntervalSeconds;
+	}
+
+}
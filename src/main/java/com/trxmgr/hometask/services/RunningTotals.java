@@ -0,0 +1,87 @@
+package com.trxmgr.hometask.services;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.trxmgr.hometask.entities.AggregateResponse.GroupBy;
+import com.trxmgr.hometask.entities.BankingTransaction;
+
+/**
+ * Count and amount sum per user, type and status, kept up to date by every
+ * mutation so unfiltered count, sum and avg aggregates cost one pass over
+ * the groups instead of over the rows. Min and max cannot be taken back on
+ * delete and are always scanned.
+ *
+ * Each group holds an immutable pair swapped atomically, so concurrent
+ * writers of different ids never lose an update and a reader never sees a
+ * count without its sum. Empty groups are dropped.
+ */
+class RunningTotals implements StorageListener {
+
+	private final Map<Long, Pair> byUser = new ConcurrentHashMap<>();
+	private final Map<Long, Pair> byType = new ConcurrentHashMap<>();
+	private final Map<Long, Pair> byStatus = new ConcurrentHashMap<>();
+
+	@Override
+	public void added(BankingTransaction trx) {
+		apply(trx, 1, trx.getAmount());
+	}
+
+	@Override
+	public void deleted(BankingTransaction trx) {
+		apply(trx, -1, -trx.getAmount());
+	}
+
+	@Override
+	public void statusUpdated(BankingTransaction trx, int oldStatus) {
+		if (oldStatus != trx.getStatus()) {
+			add(byStatus, oldStatus, -1, -trx.getAmount());
+			add(byStatus, trx.getStatus(), 1, trx.getAmount());
+		}
+	}
+
+	@Override
+	public void amountUpdated(BankingTransaction trx, long oldAmount) {
+		apply(trx, 0, trx.getAmount() - oldAmount);
+	}
+
+	private void apply(BankingTransaction trx, long count, long sum) {
+		add(byUser, trx.getUser(), count, sum);
+		add(byType, trx.getType(), count, sum);
+		add(byStatus, trx.getStatus(), count, sum);
+	}
+
+	private static void add(Map<Long, Pair> totals, long key, long count, long sum) {
+		totals.merge(key, new Pair(count, sum), Pair::plus);
+	}
+
+	Map<Long, GroupTotals> snapshot(GroupBy groupBy) {
+		Map<Long, Pair> totals = switch (groupBy) {
+		case user -> byUser;
+		case type -> byType;
+		case status -> byStatus;
+		};
+		Map<Long, GroupTotals> groups = new HashMap<>();
+		totals.forEach((key, pair) -> groups.put(key, new GroupTotals(pair.count, pair.sum)));
+		return groups;
+	}
+
+	private static final class Pair {
+
+		final long count;
+		final long sum;
+
+		Pair(long count, long sum) {
+			this.count = count;
+			this.sum = sum;
+		}
+
+		// null drops the group from its map
+		Pair plus(Pair other) {
+			long total = count + other.count;
+			return total == 0 ? null : new Pair(total, sum + other.sum);
+		}
+	}
+
+}
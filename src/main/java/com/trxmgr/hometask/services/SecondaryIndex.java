@@ -0,0 +1,54 @@
+package com.trxmgr.hometask.services;
+
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+
+/**
+ * Maps an attribute value to the transactions holding it, each bucket ordered
+ * by (created, id) like the created index so both share one cursor format.
+ * Buckets are created and dropped atomically with their first and last row.
+ */
+class SecondaryIndex<K> {
+
+	private final ConcurrentHashMap<K, NavigableMap<TrxKey, BankingTransaction>> buckets = new ConcurrentHashMap<>();
+
+	void add(K value, TrxKey key, BankingTransaction trx) {
+		buckets.compute(value, (v, bucket) -> {
+			if (bucket == null) {
+				bucket = new ConcurrentSkipListMap<>();
+			}
+			bucket.put(key, trx);
+			return bucket;
+		});
+	}
+
+	// points an indexed key at a new copy of its row, the bucket cannot be
+	// dropped meanwhile because it still holds the key
+	void replace(K value, TrxKey key, BankingTransaction trx) {
+		NavigableMap<TrxKey, BankingTransaction> bucket = buckets.get(value);
+		if (bucket != null) {
+			bucket.replace(key, trx);
+		}
+	}
+
+	void remove(K value, TrxKey key) {
+		buckets.computeIfPresent(value, (v, bucket) -> {
+			bucket.remove(key);
+			return bucket.isEmpty() ? null : bucket;
+		});
+	}
+
+	NavigableMap<TrxKey, BankingTransaction> get(K value) {
+		NavigableMap<TrxKey, BankingTransaction> bucket = buckets.get(value);
+		return bucket == null ? Collections.emptyNavigableMap() : bucket;
+	}
+
+	int valueCount() {
+		return buckets.size();
+	}
+
+}
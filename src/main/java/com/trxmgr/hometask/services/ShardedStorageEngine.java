@@ -0,0 +1,152 @@
+package com.trxmgr.hometask.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+
+/**
+ * Spreads rows over independently locked engines by id hash, so writers of
+ * different shards never contend. Single-id operations go to one shard,
+ * batches are split per shard and listings merge the shards' rows in cursor
+ * order.
+ */
+class ShardedStorageEngine extends MergedStorageEngine<StorageEngine> {
+
+	ShardedStorageEngine(int count, IntFunction<StorageEngine> factory) {
+		super(new StorageEngine[count]);
+		for (int i = 0; i < count; i++) {
+			parts[i] = factory.apply(i);
+		}
+	}
+
+	private int shardOf(long id) {
+		// spreads sequential ids evenly
+		return Math.floorMod(Long.hashCode(id * 0x9E3779B97F4A7C15L), parts.length);
+	}
+
+	private StorageEngine shard(long id) {
+		return parts[shardOf(id)];
+	}
+
+	@Override
+	public boolean add(BankingTransaction trx) {
+		return shard(trx.getId()).add(trx);
+	}
+
+	@Override
+	public BankingTransaction delete(long id) {
+		return shard(id).delete(id);
+	}
+
+	@Override
+	public boolean[] addAll(List<BankingTransaction> trxs) {
+		List<List<BankingTransaction>> split = new ArrayList<>(parts.length);
+		List<List<Integer>> positions = new ArrayList<>(parts.length);
+		for (int s = 0; s < parts.length; s++) {
+			split.add(new ArrayList<>());
+			positions.add(new ArrayList<>());
+		}
+		for (int i = 0; i < trxs.size(); i++) {
+			int s = shardOf(trxs.get(i).getId());
+			split.get(s).add(trxs.get(i));
+			positions.get(s).add(i);
+		}
+		boolean[] added = new boolean[trxs.size()];
+		for (int s = 0; s < parts.length; s++) {
+			if (split.get(s).isEmpty()) {
+				continue;
+			}
+			boolean[] part = parts[s].addAll(split.get(s));
+			for (int i = 0; i < part.length; i++) {
+				added[positions.get(s).get(i)] = part[i];
+			}
+		}
+		return added;
+	}
+
+	@Override
+	public BankingTransaction[] deleteAll(long[] ids) {
+		BankingTransaction[] deleted = new BankingTransaction[ids.length];
+		int[][] positions = partition(ids);
+		for (int s = 0; s < parts.length; s++) {
+			if (positions[s].length == 0) {
+				continue;
+			}
+			BankingTransaction[] part = parts[s].deleteAll(select(ids, positions[s]));
+			for (int i = 0; i < part.length; i++) {
+				deleted[positions[s][i]] = part[i];
+			}
+		}
+		return deleted;
+	}
+
+	@Override
+	public BankingTransaction[] updateStatusAll(long[] ids, int[] statuses, long updated) {
+		BankingTransaction[] results = new BankingTransaction[ids.length];
+		int[][] positions = partition(ids);
+		for (int s = 0; s < parts.length; s++) {
+			if (positions[s].length == 0) {
+				continue;
+			}
+			int[] partStatuses = new int[positions[s].length];
+			for (int i = 0; i < partStatuses.length; i++) {
+				partStatuses[i] = statuses[positions[s][i]];
+			}
+			BankingTransaction[] part = parts[s].updateStatusAll(select(ids, positions[s]), partStatuses, updated);
+			for (int i = 0; i < part.length; i++) {
+				results[positions[s][i]] = part[i];
+			}
+		}
+		return results;
+	}
+
+	// input positions of the ids per shard
+	private int[][] partition(long[] ids) {
+		int[] counts = new int[parts.length];
+		int[] owners = new int[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			owners[i] = shardOf(ids[i]);
+			counts[owners[i]]++;
+		}
+		int[][] positions = new int[parts.length][];
+		for (int s = 0; s < parts.length; s++) {
+			positions[s] = new int[counts[s]];
+			counts[s] = 0;
+		}
+		for (int i = 0; i < ids.length; i++) {
+			positions[owners[i]][counts[owners[i]]++] = i;
+		}
+		return positions;
+	}
+
+	private static long[] select(long[] ids, int[] positions) {
+		long[] selected = new long[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			selected[i] = ids[positions[i]];
+		}
+		return selected;
+	}
+
+	@Override
+	public BankingTransaction updateStatus(long id, int status, long updated, long expectedVersion) {
+		return shard(id).updateStatus(id, status, updated, expectedVersion);
+	}
+
+	@Override
+	public BankingTransaction updateAmount(long id, long amount, long updated, long expectedVersion) {
+		return shard(id).updateAmount(id, amount, updated, expectedVersion);
+	}
+
+	@Override
+	public BankingTransaction get(long id) {
+		return shard(id).get(id);
+	}
+
+	@Override
+	public boolean contains(long id) {
+		return shard(id).contains(id);
+	}
+
+}
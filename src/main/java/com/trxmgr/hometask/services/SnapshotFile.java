@@ -0,0 +1,176 @@
+package com.trxmgr.hometask.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+
+/**
+ * Full copy of the rows in a fixed-width binary layout: a 32-byte header with
+ * the log segment the snapshot starts, the row count and a CRC32C of the rows,
+ * followed by {@link TrxRecord} rows in (created, id) order.
+ *
+ * A snapshot is written while writers keep going, so a row may already
+ * reflect mutations logged in the segment it starts. Replaying that segment
+ * on top is still correct because every record sets absolute values, updates
+ * the row already has by version are skipped and an add of a present id is a
+ * no-op.
+ */
+final class SnapshotFile {
+
+	static final String PREFIX = "snapshot-";
+	static final String SUFFIX = ".dat";
+
+	static final int MAGIC = 0x54525853;
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 32;
+	static final int ROW_SIZE = TrxRecord.SIZE;
+
+	private static final int LOAD_BATCH = 1 << 16;
+	// rows per mapped region, keeps each region below 2GB
+	private static final long REGION_ROWS = 1 << 24;
+
+	private final Path file;
+	private final long segment;
+
+	private SnapshotFile(Path file, long segment) {
+		this.file = file;
+		this.segment = segment;
+	}
+
+	long segment() {
+		return segment;
+	}
+
+	// the newest complete snapshot, or null
+	static SnapshotFile latest(Path dir) throws IOException {
+		Files.createDirectories(dir);
+		List<Long> snapshots = DataFiles.list(dir, PREFIX, SUFFIX);
+		if (snapshots.isEmpty()) {
+			return null;
+		}
+		long segment = snapshots.get(snapshots.size() - 1);
+		return new SnapshotFile(DataFiles.path(dir, PREFIX, segment, SUFFIX), segment);
+	}
+
+	/**
+	 * Writes every row of the engine as the snapshot starting the given log
+	 * segment. The file only appears under its final name once complete.
+	 *
+	 * @return the number of rows written
+	 */
+	static long write(Path dir, long segment, StorageEngine engine) throws IOException {
+		Path target = DataFiles.path(dir, PREFIX, segment, SUFFIX);
+		Path tmp = dir.resolve(target.getFileName() + ".tmp");
+		long rows;
+		try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			RowWriter writer = new RowWriter(out);
+			try {
+				engine.forEach(writer::write);
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			writer.drain();
+			rows = writer.rows;
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(segment)
+					.putLong(rows).putInt((int) writer.crc.getValue()).putInt(0).flip();
+			while (header.hasRemaining()) {
+				out.write(header, header.position());
+			}
+			out.force(true);
+		}
+		Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		return rows;
+	}
+
+	/**
+	 * Maps the snapshot and adds its rows to the engine in batches.
+	 *
+	 * @return the number of rows loaded
+	 */
+	long load(StorageEngine engine) throws IOException {
+		try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = in.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getLong() != segment) {
+				throw new IllegalStateException("not a transaction snapshot: " + file);
+			}
+			long rows = header.getLong();
+			int expectedCrc = header.getInt();
+			if (in.size() != HEADER_SIZE + rows * ROW_SIZE) {
+				throw new IllegalStateException("truncated transaction snapshot: " + file);
+			}
+
+			CRC32C crc = new CRC32C();
+			List<BankingTransaction> batch = new ArrayList<>(LOAD_BATCH);
+			for (long first = 0; first < rows; first += REGION_ROWS) {
+				long count = Math.min(REGION_ROWS, rows - first);
+				MappedByteBuffer region = in.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * ROW_SIZE,
+						count * ROW_SIZE);
+				crc.update(region.duplicate());
+				while (region.hasRemaining()) {
+					batch.add(TrxRecord.read(region));
+					if (batch.size() == LOAD_BATCH) {
+						engine.addAll(batch);
+						batch.clear();
+					}
+				}
+			}
+			engine.addAll(batch);
+			if ((int) crc.getValue() != expectedCrc) {
+				throw new IllegalStateException("corrupt transaction snapshot: " + file);
+			}
+			return rows;
+		}
+	}
+
+	static void deleteBefore(Path dir, long segment) throws IOException {
+		DataFiles.deleteBefore(dir, PREFIX, segment, SUFFIX);
+	}
+
+	private static final class RowWriter {
+
+		final FileChannel out;
+		final ByteBuffer buf = ByteBuffer.allocate(ROW_SIZE * 16384);
+		final CRC32C crc = new CRC32C();
+		long position = HEADER_SIZE;
+		long rows;
+
+		RowWriter(FileChannel out) {
+			this.out = out;
+		}
+
+		void write(BankingTransaction trx) {
+			if (buf.remaining() < ROW_SIZE) {
+				try {
+					drain();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			TrxRecord.write(buf, trx);
+			rows++;
+		}
+
+		void drain() throws IOException {
+			buf.flip();
+			crc.update(buf.duplicate());
+			while (buf.hasRemaining()) {
+				position += out.write(buf, position);
+			}
+			buf.clear();
+		}
+	}
+
+}
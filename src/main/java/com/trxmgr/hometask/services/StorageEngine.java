@@ -0,0 +1,105 @@
+package com.trxmgr.hometask.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.PageResponse;
+import com.trxmgr.hometask.entities.TrxFilter;
+import com.trxmgr.hometask.entities.VersionConflictException;
+
+/**
+ * Row storage behind {@link TransactionStorage}. Implementations receive
+ * already validated transactions and must keep every operation on one id
+ * atomic. Page orders are insertion order for offset pages and (created, id)
+ * for cursor pages, or (updated, id) for cursor pages of an updatedSince
+ * filter.
+ *
+ * Returned transactions are never modified afterwards. Updates check the
+ * expected version and store a copy with the next version, or throw
+ * {@link VersionConflictException} and leave the row unchanged.
+ */
+interface StorageEngine extends StoragePart {
+
+	// expected version that matches any stored version
+	long ANY_VERSION = 0;
+
+	boolean add(BankingTransaction trx);
+
+	BankingTransaction delete(long id);
+
+	// the batch variants return one result per input position
+	boolean[] addAll(List<BankingTransaction> trxs);
+
+	BankingTransaction[] deleteAll(long[] ids);
+
+	BankingTransaction[] updateStatusAll(long[] ids, int[] statuses, long updated);
+
+	BankingTransaction updateStatus(long id, int status, long updated, long expectedVersion);
+
+	BankingTransaction updateAmount(long id, long amount, long updated, long expectedVersion);
+
+	BankingTransaction get(long id);
+
+	boolean contains(long id);
+
+	List<BankingTransaction> range(int start, int count);
+
+	PageResponse page(int pageNo, int pageSize, TrxFilter filter);
+
+	PageResponse pageAfter(String cursor, int limit, TrxFilter filter);
+
+	// visits every row in (created, id) order, no lock is held while the
+	// action runs so it may block on I/O
+	void forEach(Consumer<BankingTransaction> action);
+
+	static void checkVersion(long id, long expectedVersion, long currentVersion) {
+		if (expectedVersion != ANY_VERSION && expectedVersion != currentVersion) {
+			throw new VersionConflictException(id, expectedVersion, currentVersion);
+		}
+	}
+
+	// a cursor page from one more row than asked for, the extra row tells
+	// whether there is a next page; the matches are not counted, which would
+	// read the whole filtered range on every page, so the totals are UNCOUNTED
+	static PageResponse pageAfter(StorageEngine engine, String cursor, int limit, TrxFilter filter) {
+		TrxKey key = cursor == null || cursor.isEmpty() ? null : TrxKey.parse(cursor);
+		int fetch = (int) Math.min(limit + 1L, Integer.MAX_VALUE);
+		List<BankingTransaction> rows = limit <= 0 ? new ArrayList<>()
+				: byUpdated(filter) ? engine.updatedAfter(key, fetch, filter) : engine.after(key, fetch, filter);
+		boolean more = rows.size() > limit;
+		if (more) {
+			rows.remove(limit);
+		}
+		PageResponse page = new PageResponse(0, limit, PageResponse.UNCOUNTED, PageResponse.UNCOUNTED, rows);
+		if (more) {
+			page.setNextCursor(keyOf(rows.get(rows.size() - 1), filter).toCursor());
+		}
+		return page;
+	}
+
+	static void merge(Map<Long, GroupTotals> into, Map<Long, GroupTotals> from) {
+		from.forEach((key, totals) -> {
+			GroupTotals existing = into.putIfAbsent(key, totals);
+			if (existing != null) {
+				existing.merge(totals);
+			}
+		});
+	}
+
+	static boolean byUpdated(TrxFilter filter) {
+		return filter.getUpdatedSince() != null;
+	}
+
+	// position of the row in the cursor order of the filter
+	static TrxKey keyOf(BankingTransaction trx, TrxFilter filter) {
+		return new TrxKey(byUpdated(filter) ? trx.getUpdated() : trx.getCreated(), trx.getId());
+	}
+
+	static int totalPages(int size, int pageSize) {
+		return (size / pageSize) + (size % pageSize == 0 ? 0 : 1);
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.trxmgr.hometask.services;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+
+/**
+ * Observes engine mutations. Callbacks run inside the engine's per-id critical
+ * section, in the order the mutations are applied, so they must be short and
+ * must not call back into the engine.
+ */
+interface StorageListener {
+
+	StorageListener NONE = new StorageListener() {
+	};
+
+	default void added(BankingTransaction trx) {
+	}
+
+	default void deleted(BankingTransaction trx) {
+	}
+
+	default void statusUpdated(BankingTransaction trx, int oldStatus) {
+	}
+
+	default void amountUpdated(BankingTransaction trx, long oldAmount) {
+	}
+
+	// calls this listener, then the next one
+	default StorageListener andThen(StorageListener next) {
+		if (this == NONE) {
+			return next;
+		}
+		StorageListener first = this;
+		return new StorageListener() {
+
+			@Override
+			public void added(BankingTransaction trx) {
+				first.added(trx);
+				next.added(trx);
+			}
+
+			@Override
+			public void deleted(BankingTransaction trx) {
+				first.deleted(trx);
+				next.deleted(trx);
+			}
+
+			@Override
+			public void statusUpdated(BankingTransaction trx, int oldStatus) {
+				first.statusUpdated(trx, oldStatus);
+				next.statusUpdated(trx, oldStatus);
+			}
+
+			@Override
+			public void amountUpdated(BankingTransaction trx, long oldAmount) {
+				first.amountUpdated(trx, oldAmount);
+				next.amountUpdated(trx, oldAmount);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.trxmgr.hometask.services;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Timers of the storage operations and of the engine's write lock. Each
+ * recording is two clock reads and a striped counter update, cheap enough to
+ * stay on under load; histograms are enabled per meter through the
+ * {@code management.metrics.distribution} properties. Operations also add
+ * their time to the calling thread's {@link StorageTime}.
+ */
+class StorageMetrics {
+
+	static final String OPERATION = "trxmgr.storage.operation";
+	static final String LOCK_WAIT = "trxmgr.storage.lock.wait";
+	static final String LOCK_HOLD = "trxmgr.storage.lock.hold";
+
+	final Operation add;
+	final Operation addAll;
+	final Operation delete;
+	final Operation deleteAll;
+	final Operation updateStatus;
+	final Operation updateStatusAll;
+	final Operation updateAmount;
+	final Operation get;
+	final Operation page;
+	final Operation pageAfter;
+	final Operation findAll;
+	final Operation aggregate;
+
+	private final Timer lockWait;
+	private final Timer lockHold;
+
+	StorageMetrics(MeterRegistry registry, String lock) {
+		this.add = operation(registry, "add");
+		this.addAll = operation(registry, "addAll");
+		this.delete = operation(registry, "delete");
+		this.deleteAll = operation(registry, "deleteAll");
+		this.updateStatus = operation(registry, "updateStatus");
+		this.updateStatusAll = operation(registry, "updateStatusAll");
+		this.updateAmount = operation(registry, "updateAmount");
+		this.get = operation(registry, "get");
+		this.page = operation(registry, "page");
+		this.pageAfter = operation(registry, "pageAfter");
+		this.findAll = operation(registry, "findAll");
+		this.aggregate = operation(registry, "aggregate");
+		this.lockWait = Timer.builder(LOCK_WAIT).description("time spent waiting for the engine write lock")
+				.tag("lock", lock).register(registry);
+		this.lockHold = Timer.builder(LOCK_HOLD).description("time the engine write lock is held")
+				.tag("lock", lock).register(registry);
+	}
+
+	private static Operation operation(MeterRegistry registry, String name) {
+		return new Operation(Timer.builder(OPERATION).description("latency of storage operations").tag("op", name)
+				.register(registry));
+	}
+
+	void lockWaited(long nanos) {
+		lockWait.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	void lockHeld(long nanos) {
+		lockHold.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	static final class Operation {
+
+		private final Timer timer;
+
+		Operation(Timer timer) {
+			this.timer = timer;
+		}
+
+		<T> T record(Supplier<T> operation) {
+			long start = System.nanoTime();
+			try {
+				return operation.get();
+			} finally {
+				long nanos = System.nanoTime() - start;
+				timer.record(nanos, TimeUnit.NANOSECONDS);
+				StorageTime.add(nanos);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.trxmgr.hometask.services;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.trxmgr.hometask.entities.AggregateResponse.GroupBy;
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.TrxFilter;
+
+/**
+ * What a {@link MergedStorageEngine} reads from each of its parts: ordered
+ * blocks for its merges, and counts, aggregates and searches that add up over
+ * the parts. Every {@link StorageEngine} is one; the cold tier is only this,
+ * plus appends and deletes of its own.
+ */
+interface StoragePart {
+
+	// called after the listeners added before it, must be added before the
+	// engine is shared
+	void listen(StorageListener listener);
+
+	int size();
+
+	// rough retained heap of the rows and their indexes
+	long estimatedBytes();
+
+	// up to limit matching rows after the key in (created, id) order, from the
+	// oldest for a null key
+	List<BankingTransaction> after(TrxKey key, int limit, TrxFilter filter);
+
+	// the same in (updated, id) order, from the filter's updatedSince on
+	List<BankingTransaction> updatedAfter(TrxKey key, int limit, TrxFilter filter);
+
+	int count(TrxFilter filter);
+
+	// amount totals of the matching rows per group key
+	Map<Long, GroupTotals> aggregate(GroupBy groupBy, TrxFilter filter);
+
+	List<BankingTransaction> findAll(Predicate<BankingTransaction> predicate, int limit);
+
+	void close();
+
+}
@@ -0,0 +1,95 @@
+package com.trxmgr.hometask.services;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps an engine recoverable from its data directory: recovery loads the
+ * latest snapshot and replays the log segments written after it, and
+ * periodic snapshots let older segments be deleted.
+ */
+class StoragePersistence {
+
+	private static final Logger LOG = LoggerFactory.getLogger(StoragePersistence.class);
+
+	private final Path dir;
+	private final StorageEngine engine;
+	private final WriteAheadLog wal;
+	private final ScheduledExecutorService snapshotter;
+	private final ReentrantLock snapshotLock = new ReentrantLock();
+
+	StoragePersistence(StorageProperties.Wal config, StorageEngine engine) throws IOException {
+		this.dir = Path.of(config.getDir());
+		this.engine = engine;
+
+		long start = System.nanoTime();
+		SnapshotFile snapshot = SnapshotFile.latest(dir);
+		long rows = snapshot == null ? 0 : snapshot.load(engine);
+		long loaded = System.nanoTime();
+		this.wal = new WriteAheadLog(dir, config.getDurability(), config.getFlushIntervalMillis());
+		long records = wal.replay(engine, snapshot == null ? 1 : snapshot.segment());
+		long replayed = System.nanoTime();
+		LOG.info("recovered {} rows from snapshot in {} ms and {} log records in {} ms, {} rows in total", rows,
+				(loaded - start) / 1_000_000, records, (replayed - loaded) / 1_000_000, engine.size());
+		engine.listen(wal);
+
+		if (config.getSnapshotIntervalSeconds() > 0) {
+			this.snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "storage-snapshot");
+				thread.setDaemon(true);
+				return thread;
+			});
+			snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, config.getSnapshotIntervalSeconds(),
+					config.getSnapshotIntervalSeconds(), TimeUnit.SECONDS);
+		} else {
+			this.snapshotter = null;
+		}
+	}
+
+	void sync() {
+		wal.sync();
+	}
+
+	/**
+	 * Starts a new log segment, writes a snapshot of the engine while writers
+	 * continue and then deletes the snapshots and segments it replaces.
+	 */
+	void snapshot() throws IOException {
+		snapshotLock.lock();
+		try {
+			long start = System.nanoTime();
+			long segment = wal.rotate();
+			long rows = SnapshotFile.write(dir, segment, engine);
+			SnapshotFile.deleteBefore(dir, segment);
+			wal.deleteSegmentsBefore(segment);
+			LOG.info("snapshot of {} rows before log segment {} written in {} ms", rows, segment,
+					(System.nanoTime() - start) / 1_000_000);
+		} finally {
+			snapshotLock.unlock();
+		}
+	}
+
+	private void snapshotQuietly() {
+		try {
+			snapshot();
+		} catch (IOException | RuntimeException e) {
+			// the log still has everything, the next run tries again
+			LOG.warn("snapshot failed", e);
+		}
+	}
+
+	void close() throws IOException {
+		if (snapshotter != null) {
+			snapshotter.shutdown();
+		}
+		wal.close();
+	}
+
+}
@@ -0,0 +1,164 @@
+package com.trxmgr.hometask.services;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "trxmgr.storage")
+public class StorageProperties {
+
+	public static enum Engine {
+		heap, columnar
+	}
+
+	public static enum Durability {
+		// fsync every write, fsync shared by concurrent writers, fsync in the background
+		fsync, group, async
+	}
+
+	public static class Wal {
+
+		// no write-ahead log when unset
+		private String dir;
+		private Durability durability = Durability.group;
+		private long flushIntervalMillis = 10;
+		// log segments before the latest snapshot are deleted, 0 disables snapshots
+		private long snapshotIntervalSeconds = 600;
+
+		public String getDir() {
+			return dir;
+		}
+
+		public void setDir(String dir) {
+			this.dir = dir;
+		}
+
+		public Durability getDurability() {
+			return durability;
+		}
+
+		public void setDurability(Durability durability) {
+			this.durability = durability;
+		}
+
+		public long getFlushIntervalMillis() {
+			return flushIntervalMillis;
+		}
+
+		public void setFlushIntervalMillis(long flushIntervalMillis) {
+			this.flushIntervalMillis = flushIntervalMillis;
+		}
+
+		public long getSnapshotIntervalSeconds() {
+			return snapshotIntervalSeconds;
+		}
+
+		public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+			this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+		}
+
+	}
+
+	public static class Tier {
+
+		// no cold tier when unset
+		private String dir;
+		// settled rows not updated for this long are moved to the cold tier
+		private long coldAfterSeconds = 86400;
+		// period of the moves, 0 only moves on request
+		private long intervalSeconds = 60;
+
+		public String getDir() {
+			return dir;
+		}
+
+		public void setDir(String dir) {
+			this.dir = dir;
+		}
+
+		public long getColdAfterSeconds() {
+			return coldAfterSeconds;
+		}
+
+		public void setColdAfterSeconds(long coldAfterSeconds) {
+			this.coldAfterSeconds = coldAfterSeconds;
+		}
+
+		public long getIntervalSeconds() {
+			return intervalSeconds;
+		}
+
+		public void setIntervalSeconds(long intervalSeconds) {
+			this.intervalSeconds = intervalSeconds;
+		}
+
+	}
+
+	private Engine engine = Engine.heap;
+	// independently locked engines, rows are assigned by id hash
+	private int shards = 1;
+	// latest mutations kept for change stream consumers, rounded up to a power of two
+	private int changeLogCapacity = 1 << 16;
+	// encoded responses of recently read transactions, 0 disables the cache
+	private int readCacheSize = 10_000;
+	// adds are refused beyond this many rows or estimated bytes, 0 for no cap
+	private long maxRows = 0;
+	private long maxBytes = 0;
+	private final Wal wal = new Wal();
+	private final Tier tier = new Tier();
+
+	public Engine getEngine() {
+		return engine;
+	}
+
+	public void setEngine(Engine engine) {
+		this.engine = engine;
+	}
+
+	public int getShards() {
+		return shards;
+	}
+
+	public void setShards(int shards) {
+		this.shards = shards;
+	}
+
+	public int getChangeLogCapacity() {
+		return changeLogCapacity;
+	}
+
+	public void setChangeLogCapacity(int changeLogCapacity) {
+		this.changeLogCapacity = changeLogCapacity;
+	}
+
+	public int getReadCacheSize() {
+		return readCacheSize;
+	}
+
+	public void setReadCacheSize(int readCacheSize) {
+		this.readCacheSize = readCacheSize;
+	}
+
+	public long getMaxRows() {
+		return maxRows;
+	}
+
+	public void setMaxRows(long maxRows) {
+		this.maxRows = maxRows;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public Wal getWal() {
+		return wal;
+	}
+
+	public Tier getTier() {
+		return tier;
+	}
+
+}
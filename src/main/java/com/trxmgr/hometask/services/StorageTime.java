@@ -0,0 +1,32 @@
+package com.trxmgr.hometask.services;
+
+/**
+ * Time the current thread has spent in {@link TransactionStorage} calls,
+ * including their log syncs, so admission control can follow the storage
+ * latency of a request rather than the time spent reading its body or
+ * writing its response.
+ */
+public final class StorageTime {
+
+	private static final ThreadLocal<long[]> SPENT = ThreadLocal.withInitial(() -> new long[1]);
+
+	private StorageTime() {
+		super();
+	}
+
+	static void add(long nanos) {
+		SPENT.get()[0] += nanos;
+	}
+
+	/**
+	 * @return the nanos spent in storage calls by the current thread since the
+	 *         previous call, which starts over from 0
+	 */
+	public static long take() {
+		long[] spent = SPENT.get();
+		long nanos = spent[0];
+		spent[0] = 0;
+		return nanos;
+	}
+
+}
@@ -0,0 +1,453 @@
+package com.trxmgr.hometask.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.TrxFilter;
+
+/**
+ * Keeps pending and recently changed rows in a hot engine and moves settled
+ * rows that have not changed for a while to a {@link ColdStorageEngine}.
+ * Lookups try the hot engine first and then the cold one, listings merge
+ * both, so offset pages follow (created, id) order.
+ *
+ * A cold row that is updated is put back with its created time into the
+ * promoted engine: the hot engine itself, unless that one only appends in
+ * created order, as the columnar engine does. Moves read both.
+ *
+ * Moves are not mutations, listeners never see them. A row is indexed in the
+ * cold tier before it leaves the hot engine, and put back into the promoted
+ * engine before it leaves the cold tier to be updated; a lookup that misses
+ * every tier looks again under the id's stripe lock, so it always finds the
+ * row. Every add, update and delete holds the id's stripe lock, batches all
+ * of their stripes in ascending order, and a move holds it while it checks
+ * that the hot row is still the one it wrote to the cold tier, indexes it
+ * there and removes it from the hot engine; so an id never has a row in two
+ * tiers once its lock is released.
+ */
+class TieredStorageEngine extends MergedStorageEngine<StoragePart> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TieredStorageEngine.class);
+
+	private static final int STRIPES = 64;
+	private static final int SCAN_BLOCK = 4096;
+	// rows per cold run written by a move
+	private static final int MOVE_BATCH = 1 << 18;
+	private static final TrxFilter BY_UPDATED = new TrxFilter(null, null, null, null, null, Long.MIN_VALUE);
+
+	private final StorageEngine hot;
+	private final StorageEngine promoted;
+	// the engines whose settled rows are moved, hot and promoted
+	private final StorageEngine[] warm;
+	private final ColdStorageEngine cold;
+	private final long coldAfterMillis;
+	private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+	// set while this thread moves rows, their hot and cold mutations are not published
+	private final ThreadLocal<Boolean> moving = ThreadLocal.withInitial(() -> false);
+	private final ReentrantLock moveLock = new ReentrantLock();
+	private final ScheduledExecutorService mover;
+	private StorageListener listener = StorageListener.NONE;
+
+	TieredStorageEngine(StorageEngine hot, StorageEngine promoted, ColdStorageEngine cold,
+			StorageProperties.Tier config) {
+		// hot first, a listing reads it before the tier its rows move to
+		super(promoted == hot ? new StoragePart[] { hot, cold } : new StoragePart[] { hot, promoted, cold });
+		this.hot = hot;
+		this.promoted = promoted;
+		this.warm = promoted == hot ? new StorageEngine[] { hot } : new StorageEngine[] { hot, promoted };
+		this.cold = cold;
+		this.coldAfterMillis = config.getColdAfterSeconds() * 1000;
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+		StorageListener published = new StorageListener() {
+
+			@Override
+			public void added(BankingTransaction trx) {
+				if (!moving.get()) {
+					listener.added(trx);
+				}
+			}
+
+			@Override
+			public void deleted(BankingTransaction trx) {
+				if (!moving.get()) {
+					listener.deleted(trx);
+				}
+			}
+
+			@Override
+			public void statusUpdated(BankingTransaction trx, int oldStatus) {
+				listener.statusUpdated(trx, oldStatus);
+			}
+
+			@Override
+			public void amountUpdated(BankingTransaction trx, long oldAmount) {
+				listener.amountUpdated(trx, oldAmount);
+			}
+		};
+		for (StorageEngine engine : warm) {
+			engine.listen(published);
+		}
+		cold.listen(published);
+
+		if (config.getIntervalSeconds() > 0) {
+			this.mover = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "storage-tier-mover");
+				thread.setDaemon(true);
+				return thread;
+			});
+			mover.scheduleWithFixedDelay(this::moveQuietly, config.getIntervalSeconds(), config.getIntervalSeconds(),
+					TimeUnit.SECONDS);
+		} else {
+			this.mover = null;
+		}
+	}
+
+	@Override
+	public void listen(StorageListener listener) {
+		this.listener = this.listener.andThen(listener);
+	}
+
+	int coldSize() {
+		return cold.size();
+	}
+
+	private static int stripeOf(long id) {
+		return Math.floorMod(Long.hashCode(id * 0x9E3779B97F4A7C15L), STRIPES);
+	}
+
+	private ReentrantLock stripe(long id) {
+		return stripes[stripeOf(id)];
+	}
+
+	// locks the stripes of the ids in ascending order, so batches cannot
+	// deadlock with each other or with single ids
+	private <T> T onStripes(long[] ids, Supplier<T> action) {
+		boolean[] needed = new boolean[STRIPES];
+		for (long id : ids) {
+			needed[stripeOf(id)] = true;
+		}
+		int locked = 0;
+		try {
+			for (; locked < STRIPES; locked++) {
+				if (needed[locked]) {
+					stripes[locked].lock();
+				}
+			}
+			return action.get();
+		} finally {
+			for (int i = 0; i < locked; i++) {
+				if (needed[i]) {
+					stripes[i].unlock();
+				}
+			}
+		}
+	}
+
+	private <T> T quietly(Supplier<T> action) {
+		moving.set(true);
+		try {
+			return action.get();
+		} finally {
+			moving.set(false);
+		}
+	}
+
+	private boolean isCold(BankingTransaction trx, long cutoff) {
+		return (trx.getStatus() == BankingTransaction.COMPLETE_STATUS
+				|| trx.getStatus() == BankingTransaction.FAILED_STATUS) && trx.getUpdated() <= cutoff;
+	}
+
+	/**
+	 * Moves the settled rows not updated for the configured age to the cold
+	 * tier, oldest update first. Pending rows that old are read again by every
+	 * pass.
+	 *
+	 * @return the number of rows moved
+	 */
+	int move() {
+		moveLock.lock();
+		try {
+			long cutoff = System.currentTimeMillis() - coldAfterMillis;
+			int moved = 0;
+			for (StorageEngine engine : warm) {
+				moved += move(engine, cutoff);
+			}
+			return moved;
+		} finally {
+			moveLock.unlock();
+		}
+	}
+
+	private int move(StorageEngine engine, long cutoff) {
+		int moved = 0;
+		List<BankingTransaction> batch = new ArrayList<>();
+		TrxKey key = null;
+		boolean done = false;
+		while (!done) {
+			List<BankingTransaction> rows = engine.updatedAfter(key, SCAN_BLOCK, BY_UPDATED);
+			done = rows.size() < SCAN_BLOCK;
+			for (BankingTransaction trx : rows) {
+				if (trx.getUpdated() > cutoff) {
+					done = true;
+					break;
+				}
+				if (isCold(trx, cutoff)) {
+					batch.add(trx);
+				}
+				key = new TrxKey(trx.getUpdated(), trx.getId());
+			}
+			if (batch.size() >= MOVE_BATCH || done && !batch.isEmpty()) {
+				moved += moveAll(engine, batch);
+				batch = new ArrayList<>();
+			}
+		}
+		return moved;
+	}
+
+	private int moveAll(StorageEngine engine, List<BankingTransaction> batch) {
+		int moved = 0;
+		try (ColdStorageEngine.Appended appended = cold.append(batch)) {
+			for (int i = 0; i < batch.size(); i++) {
+				BankingTransaction trx = batch.get(i);
+				int position = i;
+				ReentrantLock stripe = stripe(trx.getId());
+				stripe.lock();
+				try {
+					// rows updated, deleted or added again since the scan stay
+					// hot, their appended copies dead
+					if (unchanged(trx, engine.get(trx.getId())) && quietly(() -> appended.index(position))) {
+						quietly(() -> engine.delete(trx.getId()));
+						moved++;
+					}
+				} finally {
+					stripe.unlock();
+				}
+			}
+		}
+		return moved;
+	}
+
+	private static boolean unchanged(BankingTransaction scanned, BankingTransaction current) {
+		return current != null && current.getVersion() == scanned.getVersion()
+				&& current.getCreated() == scanned.getCreated() && current.getUpdated() == scanned.getUpdated()
+				&& current.getStatus() == scanned.getStatus() && current.getAmount() == scanned.getAmount()
+				&& current.getType() == scanned.getType() && current.getUser() == scanned.getUser();
+	}
+
+	private void moveQuietly() {
+		try {
+			int moved = move();
+			if (moved > 0) {
+				LOG.info("moved {} settled rows to the cold tier, {} cold rows in total", moved, cold.size());
+			}
+		} catch (RuntimeException e) {
+			// moved rows stay cold, the rest is tried again by the next pass
+			LOG.warn("moving rows to the cold tier failed", e);
+		}
+	}
+
+	/**
+	 * Puts a cold row back into the promoted engine, the caller holds the id's
+	 * stripe lock.
+	 *
+	 * @return whether the promoted engine now has the id
+	 */
+	private boolean promote(long id) {
+		BankingTransaction trx = cold.get(id);
+		if (trx == null) {
+			return promoted.contains(id);
+		}
+		quietly(() -> promoted.add(trx));
+		quietly(() -> cold.delete(id));
+		return true;
+	}
+
+	// the engine other than hot that has the id, or null
+	private StorageEngine warmer(long id) {
+		if (promoted != hot && promoted.contains(id)) {
+			return promoted;
+		}
+		return promote(id) ? promoted : null;
+	}
+
+	@Override
+	public boolean add(BankingTransaction trx) {
+		ReentrantLock stripe = stripe(trx.getId());
+		stripe.lock();
+		try {
+			return !cold.contains(trx.getId()) && (promoted == hot || !promoted.contains(trx.getId()))
+					&& hot.add(trx);
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	// rows that are already cold, as when recovering, go straight to the cold tier
+	@Override
+	public boolean[] addAll(List<BankingTransaction> trxs) {
+		long[] ids = new long[trxs.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = trxs.get(i).getId();
+		}
+		return onStripes(ids, () -> {
+			long cutoff = System.currentTimeMillis() - coldAfterMillis;
+			List<BankingTransaction> hotRows = new ArrayList<>(trxs.size());
+			List<BankingTransaction> coldRows = new ArrayList<>();
+			List<Integer> hotPositions = new ArrayList<>(trxs.size());
+			List<Integer> coldPositions = new ArrayList<>();
+			for (int i = 0; i < trxs.size(); i++) {
+				BankingTransaction trx = trxs.get(i);
+				if (cold.contains(trx.getId()) || promoted != hot && promoted.contains(trx.getId())) {
+					continue;
+				}
+				if (isCold(trx, cutoff) && !hot.contains(trx.getId())) {
+					coldRows.add(trx);
+					coldPositions.add(i);
+				} else {
+					hotRows.add(trx);
+					hotPositions.add(i);
+				}
+			}
+			boolean[] added = new boolean[trxs.size()];
+			boolean[] part = cold.addAll(coldRows);
+			for (int i = 0; i < part.length; i++) {
+				added[coldPositions.get(i)] = part[i];
+			}
+			part = hot.addAll(hotRows);
+			for (int i = 0; i < part.length; i++) {
+				added[hotPositions.get(i)] = part[i];
+			}
+			return added;
+		});
+	}
+
+	@Override
+	public BankingTransaction delete(long id) {
+		ReentrantLock stripe = stripe(id);
+		stripe.lock();
+		try {
+			BankingTransaction deleted = hot.delete(id);
+			if (deleted == null && promoted != hot) {
+				deleted = promoted.delete(id);
+			}
+			return deleted != null ? deleted : cold.delete(id);
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	@Override
+	public BankingTransaction[] deleteAll(long[] ids) {
+		return onStripes(ids, () -> {
+			BankingTransaction[] deleted = hot.deleteAll(ids);
+			for (int i = 0; i < ids.length; i++) {
+				if (deleted[i] == null && promoted != hot) {
+					deleted[i] = promoted.delete(ids[i]);
+				}
+				if (deleted[i] == null) {
+					deleted[i] = cold.delete(ids[i]);
+				}
+			}
+			return deleted;
+		});
+	}
+
+	@Override
+	public BankingTransaction[] updateStatusAll(long[] ids, int[] statuses, long updated) {
+		return onStripes(ids, () -> {
+			BankingTransaction[] results = hot.updateStatusAll(ids, statuses, updated);
+			for (int i = 0; i < ids.length; i++) {
+				StorageEngine engine = results[i] == null ? warmer(ids[i]) : null;
+				if (engine != null) {
+					results[i] = engine.updateStatus(ids[i], statuses[i], updated, ANY_VERSION);
+				}
+			}
+			return results;
+		});
+	}
+
+	@Override
+	public BankingTransaction updateStatus(long id, int status, long updated, long expectedVersion) {
+		ReentrantLock stripe = stripe(id);
+		stripe.lock();
+		try {
+			BankingTransaction trx = hot.updateStatus(id, status, updated, expectedVersion);
+			StorageEngine engine = trx == null ? warmer(id) : null;
+			return engine == null ? trx : engine.updateStatus(id, status, updated, expectedVersion);
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	@Override
+	public BankingTransaction updateAmount(long id, long amount, long updated, long expectedVersion) {
+		ReentrantLock stripe = stripe(id);
+		stripe.lock();
+		try {
+			BankingTransaction trx = hot.updateAmount(id, amount, updated, expectedVersion);
+			StorageEngine engine = trx == null ? warmer(id) : null;
+			return engine == null ? trx : engine.updateAmount(id, amount, updated, expectedVersion);
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	@Override
+	public BankingTransaction get(long id) {
+		BankingTransaction trx = find(id);
+		if (trx != null) {
+			return trx;
+		}
+		// a promotion may have taken the row from the cold tier after the
+		// warm engines were read
+		ReentrantLock stripe = stripe(id);
+		stripe.lock();
+		try {
+			return find(id);
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	private BankingTransaction find(long id) {
+		for (StorageEngine engine : warm) {
+			BankingTransaction trx = engine.get(id);
+			if (trx != null) {
+				return trx;
+			}
+		}
+		return cold.get(id);
+	}
+
+	// unlike get it may miss a row being promoted, add checks again under
+	// the lock
+	@Override
+	public boolean contains(long id) {
+		for (StorageEngine engine : warm) {
+			if (engine.contains(id)) {
+				return true;
+			}
+		}
+		return cold.contains(id);
+	}
+
+	@Override
+	public void close() {
+		if (mover != null) {
+			mover.shutdownNow();
+		}
+		super.close();
+	}
+
+}
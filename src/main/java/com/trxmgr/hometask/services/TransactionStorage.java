@@ -1,19 +1,39 @@
 package com.trxmgr.hometask.services;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.RecursiveTask;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.trxmgr.hometask.entities.AggregateGroup;
+import com.trxmgr.hometask.entities.AggregateResponse;
+import com.trxmgr.hometask.entities.AggregateResponse.GroupBy;
+import com.trxmgr.hometask.entities.AggregateResponse.Metric;
 import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.BatchItemResult;
 import com.trxmgr.hometask.entities.InvalidTransationException;
-
+import com.trxmgr.hometask.entities.InvalidTransationException.InvalidField;
+import com.trxmgr.hometask.entities.PageResponse;
+import com.trxmgr.hometask.entities.StatusUpdate;
+import com.trxmgr.hometask.entities.StorageFullException;
+import com.trxmgr.hometask.entities.TrxFilter;
+import com.trxmgr.hometask.entities.VersionConflictException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
 import jakarta.annotation.PreDestroy;
 
 @Service
@@ -21,195 +41,444 @@ public class TransactionStorage implements Serializable {
 
 	private static final long serialVersionUID = -1801684368463403223L;
 
-	Map<Long, BankingTransaction> trxMap;
-	List<BankingTransaction> trxList;
-	ForkJoinPool searchPool;
+	public static final long ANY_VERSION = StorageEngine.ANY_VERSION;
+
+	StorageEngine engine;
+	StoragePersistence persistence;
+	StorageMetrics metrics;
+	RunningTotals totals;
+	ChangeLog changes;
+	EncodedRowCache readCache;
+	TieredStorageEngine tiers;
+	private final long maxRows;
+	private final long maxBytes;
 
 	public TransactionStorage() {
+		this(new StorageProperties());
+	}
+
+	public TransactionStorage(StorageProperties properties) {
+		this(properties, new CompositeMeterRegistry());
+	}
+
+	@Autowired
+	public TransactionStorage(StorageProperties properties, MeterRegistry registry) {
 		super();
-		this.trxMap = new ConcurrentHashMap<>();
-		this.trxList = new ArrayList<>();
-		this.searchPool = new ForkJoinPool();
+		this.maxRows = properties.getMaxRows();
+		this.maxBytes = properties.getMaxBytes();
+		this.metrics = switch (properties.getEngine()) {
+		case columnar -> new StorageMetrics(registry, "columns");
+		case heap -> new StorageMetrics(registry, "trxList");
+		};
+		// heap shards share one search pool
+		ParallelSearchEngine searchEngine = properties.getEngine() == StorageProperties.Engine.heap
+				? new ParallelSearchEngine()
+				: null;
+		if (properties.getShards() > 1) {
+			this.engine = new ShardedStorageEngine(properties.getShards(),
+					shard -> createEngine(properties, metrics, searchEngine));
+		} else {
+			this.engine = createEngine(properties, metrics, searchEngine);
+		}
+		if (properties.getTier().getDir() != null) {
+			try {
+				// the columnar engine appends in created order, rows put back from
+				// the cold tier keep their created time in a heap engine instead
+				StorageEngine promoted = properties.getEngine() == StorageProperties.Engine.columnar
+						? new HeapStorageEngine(new StorageMetrics(registry, "promoted"), new ParallelSearchEngine())
+						: engine;
+				this.tiers = new TieredStorageEngine(engine, promoted,
+						new ColdStorageEngine(Path.of(properties.getTier().getDir())), properties.getTier());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			this.engine = tiers;
+			Gauge.builder("trxmgr.storage.cold.size", tiers, TieredStorageEngine::coldSize)
+					.description("transactions in the cold tier").register(registry);
+		}
+		Gauge.builder("trxmgr.storage.size", engine, StorageEngine::size).description("stored transactions")
+				.register(registry);
+		Gauge.builder("trxmgr.storage.heap.estimate", engine, StorageEngine::estimatedBytes)
+				.description("estimated heap retained by the stored transactions").baseUnit(BaseUnits.BYTES)
+				.register(registry);
+		// ahead of the log, so recovered rows are counted too
+		this.totals = new RunningTotals();
+		engine.listen(totals);
+		this.readCache = new EncodedRowCache(properties.getReadCacheSize());
+		engine.listen(readCache);
+		Gauge.builder("trxmgr.storage.read.cache.size", readCache, EncodedRowCache::size)
+				.description("encoded transactions cached for reads").register(registry);
+		if (properties.getWal().getDir() != null) {
+			try {
+				persistence = new StoragePersistence(properties.getWal(), engine);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		// after recovery, so only live changes are published
+		this.changes = new ChangeLog(properties.getChangeLogCapacity());
+		engine.listen(changes);
+	}
+
+	private static StorageEngine createEngine(StorageProperties properties, StorageMetrics metrics,
+			ParallelSearchEngine searchEngine) {
+		return switch (properties.getEngine()) {
+		case columnar -> new ColumnarStorageEngine(metrics);
+		case heap -> new HeapStorageEngine(metrics, searchEngine);
+		};
 	}
 
 	@PreDestroy
 	public void cleanup() {
-		searchPool.shutdown();
+		engine.close();
+		if (persistence != null) {
+			try {
+				persistence.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
 	}
 
-	public boolean add(BankingTransaction trx) {
-		if (trxMap.containsKey(trx.getId())) {
-			return false;
+	// mutations are logged inside the engine, this waits until they are durable
+	private void sync() {
+		if (persistence != null) {
+			persistence.sync();
 		}
-		if (trx.getId() < 0) {
-			throw new InvalidTransationException(InvalidTransationException.InvalidField.id,
-					String.valueOf(trx.getId()));
+	}
+
+	// writes a snapshot now instead of waiting for the next scheduled one
+	public void snapshot() throws IOException {
+		if (persistence != null) {
+			persistence.snapshot();
 		}
-		if (trx.getType() < 0 || trx.getType() > BankingTransaction.MAX_TYPE) {
-			throw new InvalidTransationException(InvalidTransationException.InvalidField.type,
-					String.valueOf(trx.getType()));
+	}
+
+	/**
+	 * Moves the settled transactions due for the cold tier now instead of
+	 * waiting for the next pass.
+	 *
+	 * @return the number of transactions moved
+	 */
+	public int moveToColdTier() {
+		return tiers == null ? 0 : tiers.move();
+	}
+
+	/**
+	 * Stores a new transaction unless its id is taken.
+	 *
+	 * @throws StorageFullException if the row or memory cap is reached
+	 */
+	public boolean add(BankingTransaction trx) {
+		if (engine.contains(trx.getId())) {
+			return false;
 		}
-		if (trx.getUser() < 0) {
-			throw new InvalidTransationException(InvalidTransationException.InvalidField.user,
-					String.valueOf(trx.getUser()));
+		InvalidField invalid = validate(trx);
+		if (invalid != null) {
+			throw InvalidTransationException.of(invalid);
 		}
-		if (trx.getAmount() < 0) {
-			throw new InvalidTransationException(InvalidTransationException.InvalidField.amount,
-					String.valueOf(trx.getAmount()));
+		if (room() <= 0) {
+			throw new StorageFullException(engine.size(), engine.estimatedBytes());
 		}
 
 		trx.setStatus(0);
 		trx.setCreated(System.currentTimeMillis());
 		trx.setUpdated(System.currentTimeMillis());
+		trx.setVersion(1);
 
-		trxMap.put(trx.getId(), trx);
-
-		synchronized (trxList) {
-			return trxList.add(trx);
-		}
+		return metrics.add.record(() -> {
+			boolean added = engine.add(trx);
+			sync();
+			return added;
+		});
 	}
 
-	public BankingTransaction delete(long id) {
-		BankingTransaction trx = trxMap.remove(id);
+	/**
+	 * Validates the whole batch up front and stores the valid transactions
+	 * in a single engine call. Results are in input order, valid transactions
+	 * beyond the storage caps are refused as unavailable.
+	 */
+	public List<BatchItemResult> addAll(List<BankingTransaction> trxs) {
+		BatchItemResult[] results = new BatchItemResult[trxs.size()];
+		List<BankingTransaction> valid = new ArrayList<>(trxs.size());
+		int[] positions = new int[trxs.size()];
+		long now = System.currentTimeMillis();
+		long room = room();
+		for (int i = 0; i < results.length; i++) {
+			BankingTransaction trx = trxs.get(i);
+			InvalidField invalid = validate(trx);
+			if (invalid != null) {
+				results[i] = BatchItemResult.badRequest(trx.getId(), InvalidTransationException.of(invalid).toString());
+				continue;
+			}
+			if (valid.size() >= room) {
+				results[i] = BatchItemResult.unavailable(trx.getId());
+				continue;
+			}
+			trx.setStatus(0);
+			trx.setCreated(now);
+			trx.setUpdated(now);
+			trx.setVersion(1);
+			positions[valid.size()] = i;
+			valid.add(trx);
+		}
 
-		if (trx == null) {
-			return trx;
+		boolean[] added = metrics.addAll.record(() -> {
+			boolean[] stored = engine.addAll(valid);
+			sync();
+			return stored;
+		});
+		for (int i = 0; i < added.length; i++) {
+			BankingTransaction trx = valid.get(i);
+			results[positions[i]] = added[i] ? BatchItemResult.ok(trx)
+					: BatchItemResult.badRequest(trx.getId(), BatchItemResult.DUPLICATE);
 		}
+		return Arrays.asList(results);
+	}
 
-		synchronized (trxList) {
-			int targetIdx = search(id);
-			if (targetIdx >= 0) {
-				trxList.remove(targetIdx);
-			}
+	// rows that may still be added; checked ahead of the engine's locks, so
+	// concurrent adds may overshoot the caps slightly
+	private long room() {
+		if (maxBytes > 0 && engine.estimatedBytes() >= maxBytes) {
+			return 0;
 		}
-		return trx;
+		return maxRows > 0 ? maxRows - engine.size() : Long.MAX_VALUE;
 	}
 
-	public BankingTransaction updateStatus(long id, int status) {
-		BankingTransaction trx = trxMap.get(id);
-		if (trx == null) {
-			return trx;
+	// the first invalid field, or null; allocates nothing
+	public static InvalidField validate(BankingTransaction trx) {
+		if (trx.getId() < 0) {
+			return InvalidField.id;
+		}
+		if (trx.getType() < 0 || trx.getType() > BankingTransaction.MAX_TYPE) {
+			return InvalidField.type;
+		}
+		if (trx.getUser() < 0) {
+			return InvalidField.user;
 		}
-		if (status != BankingTransaction.COMPLETE_STATUS && status != BankingTransaction.FAILED_STATUS) {
-			throw new InvalidTransationException(InvalidTransationException.InvalidField.status,
-					String.valueOf(trx.getStatus()));
+		if (!isValidAmount(trx.getAmount())) {
+			return InvalidField.amount;
 		}
+		return null;
+	}
 
-		trx.setStatus(status);
-		trx.setUpdated(System.currentTimeMillis());
+	public static boolean isValidAmount(long amount) {
+		return amount >= 0;
+	}
 
-		return trx;
+	public BankingTransaction delete(long id) {
+		return metrics.delete.record(() -> {
+			BankingTransaction deleted = engine.delete(id);
+			sync();
+			return deleted;
+		});
 	}
 
-	public BankingTransaction updateAmount(long id, long amount) {
-		BankingTransaction trx = trxMap.get(id);
+	public List<BatchItemResult> deleteAll(List<Long> ids) {
+		long[] targets = new long[ids.size()];
+		for (int i = 0; i < targets.length; i++) {
+			targets[i] = ids.get(i);
+		}
+		BankingTransaction[] deleted = metrics.deleteAll.record(() -> {
+			BankingTransaction[] removed = engine.deleteAll(targets);
+			sync();
+			return removed;
+		});
+		List<BatchItemResult> results = new ArrayList<>(targets.length);
+		for (int i = 0; i < targets.length; i++) {
+			results.add(deleted[i] == null ? BatchItemResult.notFound(targets[i]) : BatchItemResult.ok(deleted[i]));
+		}
+		return results;
+	}
+
+	public BankingTransaction updateStatus(long id, int status) {
+		return updateStatus(id, status, ANY_VERSION);
+	}
+
+	/**
+	 * Updates the status if the transaction is still at the expected version.
+	 *
+	 * @throws VersionConflictException if it is at another version
+	 */
+	public BankingTransaction updateStatus(long id, int status, long expectedVersion) {
+		BankingTransaction trx = get(id);
 		if (trx == null) {
 			return trx;
 		}
-		if (trx.getAmount() < 0) {
-			throw new InvalidTransationException(InvalidTransationException.InvalidField.amount,
-					String.valueOf(trx.getAmount()));
+		if (!isFinalStatus(status)) {
+			throw InvalidTransationException.of(InvalidField.status);
 		}
 
-		trx.setAmount(amount);
-		trx.setUpdated(System.currentTimeMillis());
-
-		return trx;
+		return metrics.updateStatus.record(() -> {
+			BankingTransaction updated = engine.updateStatus(id, status, System.currentTimeMillis(), expectedVersion);
+			sync();
+			return updated;
+		});
 	}
 
-	public List<BankingTransaction> getPage(int pageNo, int pageSize) {
-		int start = (pageNo - 1) * pageSize;
-		int totalSize = size();
-
-		List<BankingTransaction> pagedTrxs = Collections.emptyList();
-		if (start >= totalSize) {
-			return pagedTrxs;
+	public List<BatchItemResult> updateStatusAll(List<StatusUpdate> updates) {
+		BatchItemResult[] results = new BatchItemResult[updates.size()];
+		long[] ids = new long[updates.size()];
+		int[] statuses = new int[updates.size()];
+		int[] positions = new int[updates.size()];
+		int count = 0;
+		for (int i = 0; i < results.length; i++) {
+			StatusUpdate update = updates.get(i);
+			if (!isFinalStatus(update.getStatus())) {
+				results[i] = BatchItemResult.badRequest(update.getId(),
+						InvalidTransationException.of(InvalidField.status).toString());
+				continue;
+			}
+			ids[count] = update.getId();
+			statuses[count] = update.getStatus();
+			positions[count++] = i;
 		}
 
-		int end = Math.min(start + pageSize, totalSize);
-		synchronized (trxList) {
-			pagedTrxs = trxList.subList(start, end);
+		long[] targets = Arrays.copyOf(ids, count);
+		int[] targetStatuses = Arrays.copyOf(statuses, count);
+		BankingTransaction[] updated = metrics.updateStatusAll.record(() -> {
+			BankingTransaction[] stored = engine.updateStatusAll(targets, targetStatuses, System.currentTimeMillis());
+			sync();
+			return stored;
+		});
+		for (int i = 0; i < count; i++) {
+			results[positions[i]] = updated[i] == null ? BatchItemResult.notFound(ids[i])
+					: BatchItemResult.ok(updated[i]);
 		}
-		return pagedTrxs;
+		return Arrays.asList(results);
 	}
 
-	public int size() {
-		return trxMap.size();
+	private static boolean isFinalStatus(int status) {
+		return status == BankingTransaction.COMPLETE_STATUS || status == BankingTransaction.FAILED_STATUS;
 	}
 
-	public BankingTransaction get(long id) {
-		return trxMap.get(id);
+	public BankingTransaction updateAmount(long id, long amount) {
+		return updateAmount(id, amount, ANY_VERSION);
 	}
 
-	private int search(long id) {
-		int targetIdx = searchPool.invoke(new TrxSearcher(trxList, id));
-//		System.out.println("storage index for given target[" + id + "] is " + targetIdx);
-		TrxSearcher.reset();
-		return targetIdx;
+	public BankingTransaction updateAmount(long id, long amount, long expectedVersion) {
+		// the new amount, the stored one was validated when it was set
+		if (!isValidAmount(amount)) {
+			throw InvalidTransationException.of(InvalidField.amount);
+		}
+		BankingTransaction trx = get(id);
+		if (trx == null) {
+			return trx;
+		}
+
+		return metrics.updateAmount.record(() -> {
+			BankingTransaction updated = engine.updateAmount(id, amount, System.currentTimeMillis(), expectedVersion);
+			sync();
+			return updated;
+		});
 	}
 
-	public int getTotalPages(int pageSize) {
-		int size = trxMap.size();
-		return (size / pageSize) + (size % pageSize == 0 ? 0 : 1);
+	public List<BankingTransaction> getPage(int pageNo, int pageSize) {
+		return engine.range((pageNo - 1) * pageSize, pageSize);
 	}
 
-	private static class TrxSearcher extends RecursiveTask<Integer> {
+	public PageResponse page(int pageNo, int pageSize) {
+		return page(pageNo, pageSize, TrxFilter.NONE);
+	}
 
-		private static final long serialVersionUID = -3415402803986145706L;
+	public PageResponse page(int pageNo, int pageSize, TrxFilter filter) {
+		return metrics.page.record(() -> engine.page(pageNo, pageSize, filter));
+	}
 
-		private static final int SEQUENTIAL_THRESHOLD = 10000;
+	// keyset page ordered by (created, id), a null cursor starts from the oldest
+	public PageResponse pageAfter(String cursor, int limit) {
+		return pageAfter(cursor, limit, TrxFilter.NONE);
+	}
 
-		private List<BankingTransaction> all;
-		private int start;
-		private int end;
-		private long target;
-		private static volatile int foundIdx = -1;
+	public PageResponse pageAfter(String cursor, int limit, TrxFilter filter) {
+		return metrics.pageAfter.record(() -> engine.pageAfter(cursor, limit, filter));
+	}
 
-		TrxSearcher(List<BankingTransaction> data, int start, int end, long target) {
-			this.all = data;
-			this.start = start;
-			this.end = end;
-			this.target = target;
-		}
+	/**
+	 * Aggregates the amounts of the matching transactions per group. Unfiltered
+	 * count, sum and avg come from the running totals, everything else is a
+	 * parallel scan of the engine.
+	 */
+	public AggregateResponse aggregate(GroupBy groupBy, Metric metric, TrxFilter filter) {
+		return metrics.aggregate.record(() -> {
+			Map<Long, GroupTotals> groups = filter.isEmpty() && metric != Metric.min && metric != Metric.max
+					? totals.snapshot(groupBy)
+					: engine.aggregate(groupBy, filter);
+			List<AggregateGroup> result = new ArrayList<>(groups.size());
+			new TreeMap<>(groups).forEach((key, group) -> result.add(new AggregateGroup(key, group.count,
+					switch (metric) {
+					case sum -> group.sum;
+					case count -> group.count;
+					case avg -> (double) group.sum / group.count;
+					case min -> group.min;
+					case max -> group.max;
+					})));
+			return new AggregateResponse(groupBy, metric, result);
+		});
+	}
 
-		TrxSearcher(List<BankingTransaction> data, long target) {
-			this(data, 0, data.size(), target);
-		}
+	// mutations in the order they were applied, for change stream consumers
+	public ChangeLog changes() {
+		return changes;
+	}
 
-		static void reset() {
-			foundIdx = -1;
-		}
+	public int size() {
+		return engine.size();
+	}
 
-		@Override
-		protected Integer compute() {
-			final int length = end - start;
+	public BankingTransaction get(long id) {
+		return metrics.get.record(() -> engine.get(id));
+	}
 
-			if (length <= SEQUENTIAL_THRESHOLD) {
-				return computeDirectly();
+	/**
+	 * The transaction as encoded by the encoder, served from the read cache
+	 * until the row is updated or deleted. All callers must pass the same
+	 * encoding.
+	 */
+	public EncodedTransaction getEncoded(long id, Function<BankingTransaction, byte[]> encoder) {
+		return metrics.get.record(() -> {
+			EncodedTransaction cached = readCache.get(id);
+			if (cached != null) {
+				return cached;
 			}
+			long stamp = readCache.stamp(id);
+			BankingTransaction trx = engine.get(id);
+			if (trx == null) {
+				return null;
+			}
+			EncodedTransaction encoded = new EncodedTransaction(trx.getVersion(), encoder.apply(trx));
+			readCache.put(id, encoded, stamp);
+			return encoded;
+		});
+	}
 
-			final int split = length / 2;
+	public BankingTransaction findAny(Predicate<BankingTransaction> predicate) {
+		List<BankingTransaction> found = findAll(predicate, 1);
+		return found.isEmpty() ? null : found.get(0);
+	}
 
-			final TrxSearcher left = new TrxSearcher(all, start, start + split, target);
-			left.fork();
+	public List<BankingTransaction> findAll(Predicate<BankingTransaction> predicate, int limit) {
+		return metrics.findAll.record(() -> engine.findAll(predicate, limit));
+	}
 
-			final TrxSearcher right = new TrxSearcher(all, start + split, end, target);
-			return Math.max(right.compute(), left.join());
-		}
+	public List<BankingTransaction> findByUser(long user, int limit) {
+		return findAll(trx -> trx.getUser() == user, limit);
+	}
 
-		private Integer computeDirectly() {
-//			System.out.println(Thread.currentThread() + " computing from index " + start + " to " + end);
+	public List<BankingTransaction> findByType(int type, int limit) {
+		return findAll(trx -> trx.getType() == type, limit);
+	}
 
-			for (int i = start; i < end; i++) {
-				if (foundIdx < 0 && all.get(i).getId() == target) {
-					foundIdx = i;
-					return i;
-				}
-			}
+	public List<BankingTransaction> findByAmountRange(long minAmount, long maxAmount, int limit) {
+		return findAll(trx -> trx.getAmount() >= minAmount && trx.getAmount() <= maxAmount, limit);
+	}
 
-			return -1;
-		}
+	public void forEach(Consumer<BankingTransaction> action) {
+		engine.forEach(action);
+	}
 
+	public int getTotalPages(int pageSize) {
+		return StorageEngine.totalPages(engine.size(), pageSize);
 	}
 
-}
\ No newline at end of file
+}
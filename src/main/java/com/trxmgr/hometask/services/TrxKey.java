@@ -0,0 +1,51 @@
+package com.trxmgr.hometask.services;
+
+import com.trxmgr.hometask.entities.InvalidCursorException;
+
+/**
+ * Ordering key (timestamp, id) of the ordered indexes. Its cursor form is
+ * {@code <timestamp>-<id>}.
+ */
+final class TrxKey implements Comparable<TrxKey> {
+
+	final long time;
+	final long id;
+
+	TrxKey(long time, long id) {
+		this.time = time;
+		this.id = id;
+	}
+
+	static TrxKey parse(String cursor) {
+		int sep = cursor == null ? -1 : cursor.indexOf('-');
+		if (sep <= 0) {
+			throw new InvalidCursorException(cursor);
+		}
+		try {
+			return new TrxKey(Long.parseLong(cursor.substring(0, sep)), Long.parseLong(cursor.substring(sep + 1)));
+		} catch (NumberFormatException e) {
+			throw new InvalidCursorException(cursor);
+		}
+	}
+
+	String toCursor() {
+		return time + "-" + id;
+	}
+
+	@Override
+	public int compareTo(TrxKey other) {
+		int cmp = Long.compare(time, other.time);
+		return cmp != 0 ? cmp : Long.compare(id, other.id);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof TrxKey other && time == other.time && id == other.id;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(time) * 31 + Long.hashCode(id);
+	}
+
+}
@@ -0,0 +1,109 @@
+package com.trxmgr.hometask.services;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.PageResponse;
+
+/**
+ * Fixed-width big-endian layout of a transaction: id, type, user, amount,
+ * status, created, updated and version in 56 bytes. Snapshots store their
+ * rows this way and the {@link #MEDIA_TYPE_VALUE} wire format sends them as
+ * is: one row for a transaction, back to back rows for a list, and for a page
+ * a header of page, size, total pages, total elements, row count and a
+ * length-prefixed ASCII cursor (length -1 for none) before the rows.
+ */
+public final class TrxRecord {
+
+	public static final String MEDIA_TYPE_VALUE = "application/vnd.trxmgr.record";
+	public static final int SIZE = 56;
+	static final int PAGE_HEADER_SIZE = 4 + 4 + 4 + 8 + 4 + 2;
+	// offsets of the fields read in place from mapped rows
+	static final int CREATED_OFFSET = 32;
+	static final int UPDATED_OFFSET = 40;
+
+	private TrxRecord() {
+	}
+
+	public static void write(ByteBuffer buf, BankingTransaction trx) {
+		buf.putLong(trx.getId()).putInt(trx.getType()).putLong(trx.getUser()).putLong(trx.getAmount())
+				.putInt(trx.getStatus()).putLong(trx.getCreated()).putLong(trx.getUpdated())
+				.putLong(trx.getVersion());
+	}
+
+	public static BankingTransaction read(ByteBuffer buf) {
+		return new BankingTransaction(buf.getLong(), buf.getInt(), buf.getLong(), buf.getLong(), buf.getInt(),
+				buf.getLong(), buf.getLong(), buf.getLong());
+	}
+
+	public static byte[] encode(BankingTransaction trx) {
+		ByteBuffer buf = ByteBuffer.allocate(SIZE);
+		write(buf, trx);
+		return buf.array();
+	}
+
+	public static byte[] encodeList(List<BankingTransaction> trxs) {
+		ByteBuffer buf = ByteBuffer.allocate(trxs.size() * SIZE);
+		for (BankingTransaction trx : trxs) {
+			write(buf, trx);
+		}
+		return buf.array();
+	}
+
+	public static List<BankingTransaction> decodeList(ByteBuffer buf) {
+		if (buf.remaining() % SIZE != 0) {
+			throw new IllegalArgumentException("not a whole number of transaction records: " + buf.remaining());
+		}
+		List<BankingTransaction> trxs = new ArrayList<>(buf.remaining() / SIZE);
+		while (buf.hasRemaining()) {
+			trxs.add(read(buf));
+		}
+		return trxs;
+	}
+
+	public static byte[] encodePage(PageResponse page) {
+		List<BankingTransaction> data = page.getData() == null ? List.of() : page.getData();
+		byte[] cursor = page.getNextCursor() == null ? null : page.getNextCursor().getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer buf = ByteBuffer
+				.allocate(PAGE_HEADER_SIZE + (cursor == null ? 0 : cursor.length) + data.size() * SIZE);
+		buf.putInt(page.getPage()).putInt(page.getSize()).putInt(page.getTotalPages())
+				.putLong(page.getTotalElements()).putInt(data.size()).putShort((short) (cursor == null ? -1 : cursor.length));
+		if (cursor != null) {
+			buf.put(cursor);
+		}
+		for (BankingTransaction trx : data) {
+			write(buf, trx);
+		}
+		return buf.array();
+	}
+
+	public static PageResponse decodePage(ByteBuffer buf) {
+		try {
+			int pageNo = buf.getInt();
+			int size = buf.getInt();
+			int totalPages = buf.getInt();
+			long totalElements = buf.getLong();
+			int rows = buf.getInt();
+			short cursorLength = buf.getShort();
+			String cursor = null;
+			if (cursorLength >= 0) {
+				byte[] cursorBytes = new byte[cursorLength];
+				buf.get(cursorBytes);
+				cursor = new String(cursorBytes, StandardCharsets.US_ASCII);
+			}
+			if (buf.remaining() != rows * SIZE) {
+				throw new IllegalArgumentException("page of " + rows + " records has " + buf.remaining() + " bytes");
+			}
+			PageResponse page = new PageResponse(pageNo, size, totalPages, totalElements, decodeList(buf));
+			page.setNextCursor(cursor);
+			return page;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("truncated page record", e);
+		}
+	}
+
+}
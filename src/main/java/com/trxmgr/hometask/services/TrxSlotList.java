@@ -0,0 +1,347 @@
+package com.trxmgr.hometask.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+
+/**
+ * Insertion-ordered list of transactions split into fixed-size chunks.
+ *
+ * Removal only tombstones the slot of the given entry, so it never searches or
+ * shifts the whole list. Sparse chunks are compacted locally and merged with
+ * their neighbours, empty chunks are unlinked. Mutating methods must be guarded
+ * by the same lock.
+ *
+ * Every mutation publishes an immutable {@link Snapshot} which readers use
+ * without any locking. Chunk arrays and the chunk directory are copied on
+ * write only when a published snapshot still references them, and appends
+ * write past the bounds of every published snapshot so they copy nothing.
+ */
+class TrxSlotList {
+
+	static final int CHUNK_SIZE = 1024;
+
+	private final List<Chunk> chunks = new ArrayList<>();
+	private Entry[][] dirSlots = new Entry[16][];
+	private int[] dirUsed = new int[16];
+	private int[] dirLive = new int[16];
+	private int size;
+
+	// bumped on every publish, anything stamped with an older epoch is shared
+	private long epoch;
+	private long dirEpoch;
+	private volatile Snapshot snapshot = new Snapshot(dirSlots, dirUsed, dirLive, 0, 0, 0, 0, 0);
+
+	static final class Entry {
+		// swapped for a new copy by updates
+		volatile BankingTransaction trx;
+		Chunk chunk;
+		int offset;
+
+		Entry(BankingTransaction trx) {
+			this.trx = trx;
+		}
+	}
+
+	static final class Chunk {
+		Entry[] slots = new Entry[CHUNK_SIZE];
+		long slotsEpoch;
+		int used;
+		int live;
+		int index;
+	}
+
+	/**
+	 * Immutable view of the list. The counters of the last chunk are held in
+	 * the snapshot itself, the directory arrays are only valid below it.
+	 */
+	static final class Snapshot {
+		private final Entry[][] slots;
+		private final int[] used;
+		private final int[] live;
+		private final int chunkCount;
+		private final int tailUsed;
+		private final int tailLive;
+		private final int size;
+		private final long version;
+
+		Snapshot(Entry[][] slots, int[] used, int[] live, int chunkCount, int tailUsed, int tailLive, int size,
+				long version) {
+			this.slots = slots;
+			this.used = used;
+			this.live = live;
+			this.chunkCount = chunkCount;
+			this.tailUsed = tailUsed;
+			this.tailLive = tailLive;
+			this.size = size;
+			this.version = version;
+		}
+
+		int size() {
+			return size;
+		}
+
+		long version() {
+			return version;
+		}
+
+		int chunkCount() {
+			return chunkCount;
+		}
+
+		Entry[][] slots() {
+			return slots;
+		}
+
+		int used(int chunk) {
+			return chunk == chunkCount - 1 ? tailUsed : used[chunk];
+		}
+
+		int live(int chunk) {
+			return chunk == chunkCount - 1 ? tailLive : live[chunk];
+		}
+
+		int[] usedCounts() {
+			int[] counts = new int[chunkCount];
+			for (int i = 0; i < chunkCount; i++) {
+				counts[i] = used(i);
+			}
+			return counts;
+		}
+
+		List<BankingTransaction> range(int start, int count) {
+			if (start < 0 || count <= 0 || start >= size) {
+				return Collections.emptyList();
+			}
+			List<BankingTransaction> result = new ArrayList<>(Math.min(count, size - start));
+			int ci = 0;
+			while (ci < chunkCount && start >= live(ci)) {
+				start -= live(ci);
+				ci++;
+			}
+			for (; ci < chunkCount && result.size() < count; ci++) {
+				Entry[] chunk = slots[ci];
+				int chunkUsed = used(ci);
+				for (int i = 0; i < chunkUsed && result.size() < count; i++) {
+					Entry entry = chunk[i];
+					if (entry == null) {
+						continue;
+					}
+					if (start > 0) {
+						start--;
+						continue;
+					}
+					result.add(entry.trx);
+				}
+			}
+			return result;
+		}
+	}
+
+	Snapshot snapshot() {
+		return snapshot;
+	}
+
+	Entry add(BankingTransaction trx) {
+		Entry entry = new Entry(trx);
+		append(entry);
+		publish();
+		return entry;
+	}
+
+	// appends prepared entries and publishes a single snapshot for all of them
+	void addAll(List<Entry> entries) {
+		for (Entry entry : entries) {
+			append(entry);
+		}
+		publish();
+	}
+
+	boolean remove(Entry entry) {
+		if (!detach(entry)) {
+			return false;
+		}
+		publish();
+		return true;
+	}
+
+	void removeAll(List<Entry> entries) {
+		boolean removed = false;
+		for (Entry entry : entries) {
+			removed |= detach(entry);
+		}
+		if (removed) {
+			publish();
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	private void append(Entry entry) {
+		Chunk tail = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+		if (tail == null || tail.used == CHUNK_SIZE) {
+			tail = appendChunk();
+		}
+		entry.chunk = tail;
+		entry.offset = tail.used;
+		tail.slots[tail.used++] = entry;
+		tail.live++;
+		size++;
+	}
+
+	private boolean detach(Entry entry) {
+		Chunk chunk = entry.chunk;
+		if (chunk == null) {
+			return false;
+		}
+		writableSlots(chunk)[entry.offset] = null;
+		chunk.live--;
+		size--;
+		entry.chunk = null;
+
+		if (chunk.live == 0) {
+			if (chunk.index == chunks.size() - 1) {
+				chunk.used = 0;
+			} else {
+				unlink(chunk);
+			}
+		} else if (chunk.live <= chunk.used / 4) {
+			compact(chunk);
+		}
+		syncDir(chunk);
+		return true;
+	}
+
+	private void publish() {
+		int chunkCount = chunks.size();
+		Chunk tail = chunkCount == 0 ? null : chunks.get(chunkCount - 1);
+		snapshot = new Snapshot(dirSlots, dirUsed, dirLive, chunkCount, tail == null ? 0 : tail.used,
+				tail == null ? 0 : tail.live, size, ++epoch);
+	}
+
+	private Chunk appendChunk() {
+		int chunkCount = chunks.size();
+		if (chunkCount > 0) {
+			// the old tail counters were kept in the snapshots so far, no copy needed
+			Chunk oldTail = chunks.get(chunkCount - 1);
+			dirUsed[chunkCount - 1] = oldTail.used;
+			dirLive[chunkCount - 1] = oldTail.live;
+		}
+		if (chunkCount == dirSlots.length) {
+			growDir(chunkCount * 2);
+		}
+		Chunk chunk = new Chunk();
+		chunk.index = chunkCount;
+		chunk.slotsEpoch = epoch;
+		chunks.add(chunk);
+		dirSlots[chunkCount] = chunk.slots;
+		return chunk;
+	}
+
+	private Entry[] writableSlots(Chunk chunk) {
+		if (chunk.slotsEpoch != epoch) {
+			chunk.slots = chunk.slots.clone();
+			chunk.slotsEpoch = epoch;
+			writableDir();
+			dirSlots[chunk.index] = chunk.slots;
+		}
+		return chunk.slots;
+	}
+
+	private void writableDir() {
+		if (dirEpoch != epoch) {
+			growDir(dirSlots.length);
+			dirEpoch = epoch;
+		}
+	}
+
+	private void growDir(int capacity) {
+		Entry[][] slots = new Entry[capacity][];
+		int[] used = new int[capacity];
+		int[] live = new int[capacity];
+		int chunkCount = chunks.size();
+		System.arraycopy(dirSlots, 0, slots, 0, chunkCount);
+		System.arraycopy(dirUsed, 0, used, 0, chunkCount);
+		System.arraycopy(dirLive, 0, live, 0, chunkCount);
+		dirSlots = slots;
+		dirUsed = used;
+		dirLive = live;
+	}
+
+	private void syncDir(Chunk chunk) {
+		if (chunk.index < 0) {
+			return;
+		}
+		writableDir();
+		dirUsed[chunk.index] = chunk.used;
+		dirLive[chunk.index] = chunk.live;
+	}
+
+	private void unlink(Chunk chunk) {
+		writableDir();
+		int idx = chunk.index;
+		int chunkCount = chunks.size();
+		chunks.remove(idx);
+		System.arraycopy(dirSlots, idx + 1, dirSlots, idx, chunkCount - idx - 1);
+		System.arraycopy(dirUsed, idx + 1, dirUsed, idx, chunkCount - idx - 1);
+		System.arraycopy(dirLive, idx + 1, dirLive, idx, chunkCount - idx - 1);
+		dirSlots[chunkCount - 1] = null;
+		for (int i = idx; i < chunkCount - 1; i++) {
+			chunks.get(i).index = i;
+		}
+		chunk.index = -1;
+	}
+
+	private void compact(Chunk chunk) {
+		pack(chunk);
+		if (chunk.index + 1 < chunks.size()) {
+			Chunk next = chunks.get(chunk.index + 1);
+			if (chunk.used + next.live <= CHUNK_SIZE) {
+				moveInto(next, chunk);
+			}
+		}
+		if (chunk.index > 0) {
+			Chunk prev = chunks.get(chunk.index - 1);
+			if (prev.live + chunk.live <= CHUNK_SIZE) {
+				pack(prev);
+				moveInto(chunk, prev);
+				syncDir(prev);
+			}
+		}
+	}
+
+	private void pack(Chunk chunk) {
+		Entry[] slots = writableSlots(chunk);
+		int to = 0;
+		for (int i = 0; i < chunk.used; i++) {
+			Entry entry = slots[i];
+			if (entry != null) {
+				slots[i] = null;
+				slots[to] = entry;
+				entry.offset = to++;
+			}
+		}
+		chunk.used = to;
+	}
+
+	// appends the live entries of src to dst (which must directly precede src)
+	// and unlinks src
+	private void moveInto(Chunk src, Chunk dst) {
+		Entry[] slots = writableSlots(dst);
+		for (int i = 0; i < src.used; i++) {
+			Entry entry = src.slots[i];
+			if (entry != null) {
+				entry.chunk = dst;
+				entry.offset = dst.used;
+				slots[dst.used++] = entry;
+				dst.live++;
+			}
+		}
+		unlink(src);
+	}
+
+}
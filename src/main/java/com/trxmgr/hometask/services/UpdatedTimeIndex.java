@@ -0,0 +1,121 @@
+package com.trxmgr.hometask.services;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Time-bucketed (updated, id) pairs of the columnar engine, not thread safe.
+ * Pairs are appended on add and update: a reader checks each pair against
+ * the row's current updated time, and once stale pairs outnumber live rows
+ * the owner runs a prune pass, a bounded number of pairs per call. A bucket
+ * being pruned holds the pairs kept so far, then leftovers that are stale or
+ * copies of kept ones, then the pairs not checked yet, so readers that skip
+ * stale pairs and duplicates see the same rows throughout. A scan from a time
+ * costs a tree lookup plus the pairs of the buckets it reads.
+ */
+final class UpdatedTimeIndex {
+
+	static final long BUCKET_MILLIS = 1000;
+
+	private final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+	private long pairs;
+	// position of the prune pass: the bucket, the next pair to check in it
+	// and the end of the pairs kept
+	private boolean pruning;
+	private long pruneBucket;
+	private int pruneFrom;
+	private int pruneTo;
+
+	void add(long updated, long id) {
+		buckets.computeIfAbsent(Math.floorDiv(updated, BUCKET_MILLIS), b -> new Bucket()).add(updated, id);
+		pairs++;
+	}
+
+	long pairs() {
+		return pairs;
+	}
+
+	boolean pruning() {
+		return pruning;
+	}
+
+	void startPrune() {
+		pruning = true;
+		pruneBucket = Long.MIN_VALUE;
+		pruneFrom = 0;
+		pruneTo = 0;
+	}
+
+	/**
+	 * Checks up to max pairs of the prune pass and drops the stale ones.
+	 *
+	 * @return whether the pass is done
+	 */
+	boolean prune(int max, Current current) {
+		while (max > 0) {
+			Map.Entry<Long, Bucket> entry = buckets.ceilingEntry(pruneBucket);
+			if (entry == null) {
+				pruning = false;
+				return true;
+			}
+			if (entry.getKey() != pruneBucket) {
+				pruneBucket = entry.getKey();
+				pruneFrom = 0;
+				pruneTo = 0;
+			}
+			Bucket bucket = entry.getValue();
+			for (; pruneFrom < bucket.size && max > 0; pruneFrom++, max--) {
+				long time = bucket.times[pruneFrom];
+				long id = bucket.ids[pruneFrom];
+				if (current.test(time, id)) {
+					bucket.times[pruneTo] = time;
+					bucket.ids[pruneTo++] = id;
+				}
+			}
+			if (pruneFrom == bucket.size) {
+				pairs -= bucket.size - pruneTo;
+				bucket.size = pruneTo;
+				if (bucket.size == 0) {
+					buckets.remove(pruneBucket);
+				}
+				if (pruneBucket == Long.MAX_VALUE) {
+					pruning = false;
+					return true;
+				}
+				pruneBucket++;
+				pruneFrom = 0;
+				pruneTo = 0;
+			}
+		}
+		return false;
+	}
+
+	// buckets in time order, starting with the one holding the given time
+	Iterable<Bucket> from(long time) {
+		return buckets.tailMap(Math.floorDiv(time, BUCKET_MILLIS), true).values();
+	}
+
+	@FunctionalInterface
+	interface Current {
+		// whether the pair holds the row's current updated time
+		boolean test(long updated, long id);
+	}
+
+	static final class Bucket {
+
+		long[] times = new long[16];
+		long[] ids = new long[16];
+		int size;
+
+		void add(long updated, long id) {
+			if (size == times.length) {
+				times = Arrays.copyOf(times, size * 2);
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			times[size] = updated;
+			ids[size++] = id;
+		}
+	}
+
+}
@@ -0,0 +1,312 @@
+package com.trxmgr.hometask.services;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Token buckets per user, and per transaction type for the types with a limit
+ * of their own. A bucket is kept as a single long in the manner of the
+ * generic cell rate algorithm: the time at which it will be full again. A
+ * request is admitted when that time is no more than the burst ahead of now,
+ * and moves it one emission interval on.
+ *
+ * Buckets live in open-addressed tables of primitive arrays, split into
+ * stripes by hash. Requests of a known user update its bucket with a CAS and
+ * take no lock; only the first request of a user takes the stripe lock to
+ * insert. A bucket whose time has passed is full, no different from a
+ * missing one, so such idle buckets are dropped whenever a stripe is rebuilt
+ * to grow and by {@link #evictIdle()}, which runs every evict interval. A
+ * request racing with a rebuild of its stripe may go uncounted.
+ */
+@Service
+public class UserRateLimiter {
+
+	static final int STRIPE_BITS = 6;
+	static final int INITIAL_CAPACITY = 64;
+	private static final long EMPTY = Long.MIN_VALUE;
+	// bucket class of the types without a limit of their own
+	private static final int DEFAULT_CLASS = -1;
+	private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private final boolean enabled;
+	// by type, class, emission interval and burst tolerance in nanos
+	private final int[] classes = new int[BankingTransaction.MAX_TYPE + 1];
+	private final long[] intervals = new long[BankingTransaction.MAX_TYPE + 1];
+	private final long[] tolerances = new long[BankingTransaction.MAX_TYPE + 1];
+	private final long defaultInterval;
+	private final long defaultTolerance;
+	private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+	private final Counter rejected;
+	private final ScheduledExecutorService evictor;
+
+	public UserRateLimiter(RateLimitProperties properties) {
+		this(properties, new CompositeMeterRegistry());
+	}
+
+	@Autowired
+	public UserRateLimiter(RateLimitProperties properties, MeterRegistry registry) {
+		super();
+		this.enabled = properties.isEnabled();
+		this.defaultInterval = interval(properties.getDefaults());
+		this.defaultTolerance = tolerance(properties.getDefaults());
+		Arrays.fill(classes, DEFAULT_CLASS);
+		Arrays.fill(intervals, defaultInterval);
+		Arrays.fill(tolerances, defaultTolerance);
+		for (Map.Entry<Integer, RateLimitProperties.Limit> type : properties.getTypes().entrySet()) {
+			int t = type.getKey();
+			if (t >= 0 && t < classes.length) {
+				classes[t] = t;
+				intervals[t] = interval(type.getValue());
+				tolerances[t] = tolerance(type.getValue());
+			}
+		}
+		for (int i = 0; i < stripes.length; i++) {
+			stripes[i] = new Stripe();
+		}
+		this.rejected = Counter.builder("trxmgr.rate.limit.rejected").description("requests over their user's rate")
+				.register(registry);
+		Gauge.builder("trxmgr.rate.limit.buckets", this, UserRateLimiter::size).description("user buckets kept")
+				.register(registry);
+
+		long evictInterval = properties.getEvictIntervalSeconds();
+		if (enabled && evictInterval > 0) {
+			this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "rate-limit-evictor");
+				thread.setDaemon(true);
+				return thread;
+			});
+			evictor.scheduleWithFixedDelay(this::evictIdle, evictInterval, evictInterval, TimeUnit.SECONDS);
+		} else {
+			this.evictor = null;
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (evictor != null) {
+			evictor.shutdownNow();
+		}
+	}
+
+	private static long interval(RateLimitProperties.Limit limit) {
+		return limit.getRequestsPerSecond() > 0 ? Math.max(1, (long) (1e9 / limit.getRequestsPerSecond())) : 0;
+	}
+
+	private static long tolerance(RateLimitProperties.Limit limit) {
+		return Math.max(0, limit.getBurst() - 1) * interval(limit);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Takes a token from the user's bucket for the type. Invalid users and
+	 * types are let through to be rejected by validation, the latter counted
+	 * against the default limit.
+	 *
+	 * @return 0 if admitted, otherwise the nanos until a request would be
+	 */
+	public long tryAcquire(long user, int type) {
+		if (!enabled || user < 0) {
+			return 0;
+		}
+		boolean known = type >= 0 && type < classes.length;
+		long interval = known ? intervals[type] : defaultInterval;
+		if (interval == 0) {
+			return 0;
+		}
+		long tolerance = known ? tolerances[type] : defaultTolerance;
+		int cls = known ? classes[type] : DEFAULT_CLASS;
+		long hash = hash(user, cls);
+		Stripe stripe = stripes[(int) (hash >>> (64 - STRIPE_BITS))];
+		long now = System.nanoTime();
+		Table table = stripe.table;
+		int slot = table.find(user, cls, hash);
+		if (slot < 0) {
+			table = stripe.insert(user, cls, hash, now);
+			slot = table.find(user, cls, hash);
+		}
+		while (true) {
+			long full = table.fullAt(slot);
+			long start = full - now > 0 ? full : now;
+			long ahead = start - now;
+			if (ahead > tolerance) {
+				rejected.increment();
+				return ahead - tolerance;
+			}
+			if (LONGS.compareAndSet(table.slots, slot + Table.FULL_AT, full, start + interval)) {
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Drops the buckets that have filled up again.
+	 *
+	 * @return the number of buckets dropped
+	 */
+	public int evictIdle() {
+		int evicted = 0;
+		for (Stripe stripe : stripes) {
+			evicted += stripe.evictIdle(System.nanoTime());
+		}
+		return evicted;
+	}
+
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			size += stripe.size();
+		}
+		return size;
+	}
+
+	private static long hash(long user, int cls) {
+		long h = (user * 31 + cls) * 0x9E3779B97F4A7C15L;
+		return h ^ (h >>> 29);
+	}
+
+	// slots of three longs, user, class and when the bucket is full again in
+	// System.nanoTime, so a lookup mostly touches one cache line
+	private static final class Table {
+
+		static final int USER = 0;
+		static final int CLASS = 1;
+		static final int FULL_AT = 2;
+		static final int STRIDE = 3;
+
+		final long[] slots;
+		final int capacity;
+		// guarded by the stripe lock
+		int size;
+
+		Table(int capacity) {
+			this.slots = new long[capacity * STRIDE];
+			this.capacity = capacity;
+			for (int i = 0; i < slots.length; i += STRIDE) {
+				slots[i + USER] = EMPTY;
+			}
+		}
+
+		long fullAt(int slot) {
+			return (long) LONGS.getVolatile(slots, slot + FULL_AT);
+		}
+
+		// at most half full, so a probe always ends at an empty slot;
+		// returns the slot's offset in slots
+		int find(long user, int cls, long hash) {
+			int mask = capacity - 1;
+			for (int i = (int) hash & mask;; i = (i + 1) & mask) {
+				int slot = i * STRIDE;
+				long u = (long) LONGS.getAcquire(slots, slot + USER);
+				if (u == EMPTY) {
+					return -1;
+				}
+				if (u == user && slots[slot + CLASS] == cls) {
+					return slot;
+				}
+			}
+		}
+
+		// the user is published last, a reader that sees it sees the rest
+		void put(long user, long cls, long hash, long fullAt) {
+			int mask = capacity - 1;
+			int i = (int) hash & mask;
+			while (slots[i * STRIDE + USER] != EMPTY) {
+				i = (i + 1) & mask;
+			}
+			int slot = i * STRIDE;
+			LONGS.setRelease(slots, slot + FULL_AT, fullAt);
+			slots[slot + CLASS] = cls;
+			LONGS.setRelease(slots, slot + USER, user);
+			size++;
+		}
+	}
+
+	private static final class Stripe {
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private volatile Table table = new Table(INITIAL_CAPACITY);
+
+		Table insert(long user, int cls, long hash, long now) {
+			lock.lock();
+			try {
+				Table current = table;
+				if (current.find(user, cls, hash) >= 0) {
+					return current;
+				}
+				if ((current.size + 1) * 2 > current.capacity) {
+					current = rebuild(current, now, 1);
+				}
+				// a new bucket is full
+				current.put(user, cls, hash, now);
+				return current;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		int evictIdle(long now) {
+			lock.lock();
+			try {
+				Table current = table;
+				return current.size - rebuild(current, now, 0).size;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		// copies the buckets still filling up into a table with room for
+		// extra more, sized for them to take at most a quarter of it
+		private Table rebuild(Table from, long now, int extra) {
+			long[] slots = from.slots;
+			int live = 0;
+			for (int slot = 0; slot < slots.length; slot += Table.STRIDE) {
+				if (slots[slot + Table.USER] != EMPTY && from.fullAt(slot) - now > 0) {
+					live++;
+				}
+			}
+			int capacity = Math.max(INITIAL_CAPACITY,
+					Integer.highestOneBit(Math.max(1, (live + extra) * 4 - 1)) << 1);
+			Table to = new Table(capacity);
+			for (int slot = 0; slot < slots.length; slot += Table.STRIDE) {
+				long user = slots[slot + Table.USER];
+				long fullAt = from.fullAt(slot);
+				if (user != EMPTY && fullAt - now > 0) {
+					int cls = (int) slots[slot + Table.CLASS];
+					to.put(user, cls, hash(user, cls), fullAt);
+				}
+			}
+			table = to;
+			return to;
+		}
+
+		int size() {
+			lock.lock();
+			try {
+				return table.size;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,460 @@
+package com.trxmgr.hometask.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+
+/**
+ * Append-only log of engine mutations. Records are appended to an in-memory
+ * buffer inside the engine's critical section, so the log order is the apply
+ * order, and written to the file later by {@link #sync()} or the background
+ * flusher.
+ *
+ * A record is a type byte, a fixed-size big-endian payload and a CRC32C of
+ * both. A torn or corrupt tail is cut off when the log is replayed. The log is
+ * split into numbered segments, {@link #rotate()} starts a new one so that a
+ * snapshot can replace all earlier segments.
+ *
+ * With group durability the first writer to sync swaps the buffer, writes it
+ * and forces the file while later writers keep appending to the other buffer;
+ * they are all covered by the next force. With fsync durability every sync
+ * forces the file, async durability leaves it to a background flusher.
+ */
+class WriteAheadLog implements StorageListener, Closeable {
+
+	static final String PREFIX = "wal-";
+	static final String SUFFIX = ".log";
+
+	static final int MAGIC = 0x5452574C;
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 8;
+
+	static final byte ADD = 1;
+	static final byte DELETE = 2;
+	static final byte STATUS = 3;
+	static final byte AMOUNT = 4;
+
+	private static final int CRC_SIZE = 4;
+	private static final int INITIAL_BUFFER = 64 * 1024;
+	private static final int MAX_RECORD_SIZE = recordSize(ADD);
+
+	private final Path dir;
+	private final StorageProperties.Durability durability;
+	private final ScheduledExecutorService flusher;
+	private final long flushIntervalMillis;
+
+	// appendLock guards the pending buffer and the crc, syncLock is held by the
+	// single writer of the current segment; writers waiting for a flush park
+	// on a condition instead of a monitor so virtual threads are not pinned
+	private final ReentrantLock appendLock = new ReentrantLock();
+	private final ReentrantLock syncLock = new ReentrantLock();
+	private final ReentrantLock waitLock = new ReentrantLock();
+	private final Condition flushed = waitLock.newCondition();
+	private final CRC32C crc = new CRC32C();
+	private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER);
+	private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER);
+	private volatile long appended;
+	private volatile long durable;
+	// the first write failure, the log accepts no more syncs after it
+	private volatile IOException failure;
+	private FileChannel channel;
+	private long segment;
+
+	WriteAheadLog(Path dir, StorageProperties.Durability durability, long flushIntervalMillis) throws IOException {
+		Files.createDirectories(dir);
+		this.dir = dir;
+		this.durability = durability;
+		this.flushIntervalMillis = flushIntervalMillis;
+		if (durability == StorageProperties.Durability.async) {
+			this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "wal-flusher");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			this.flusher = null;
+		}
+	}
+
+	/**
+	 * Applies every intact record of the segments from {@code fromSegment} on
+	 * to the engine, cuts off a torn tail of the last segment and opens it for
+	 * appends. Must run before the log is attached to the engine.
+	 *
+	 * @return the number of records replayed
+	 */
+	long replay(StorageEngine engine, long fromSegment) throws IOException {
+		List<Long> segments = DataFiles.list(dir, PREFIX, SUFFIX);
+		segments.removeIf(number -> number < fromSegment);
+		long records = 0;
+		for (int i = 0; i < segments.size(); i++) {
+			Path file = DataFiles.path(dir, PREFIX, segments.get(i), SUFFIX);
+			try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				long[] count = new long[1];
+				long end = replay(in, file, engine, count);
+				records += count[0];
+				if (end < in.size()) {
+					// only the last segment can be torn, earlier ones were
+					// forced before the next one was started
+					if (i < segments.size() - 1) {
+						throw new IllegalStateException("corrupt transaction log: " + file);
+					}
+					in.truncate(end);
+					in.force(true);
+				}
+			}
+		}
+
+		segment = segments.isEmpty() ? fromSegment : segments.get(segments.size() - 1);
+		channel = openSegment(segment);
+		if (flusher != null) {
+			flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+					TimeUnit.MILLISECONDS);
+		}
+		return records;
+	}
+
+	private static long replay(FileChannel in, Path file, StorageEngine engine, long[] count) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		in.read(header, 0);
+		header.flip();
+		if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+			throw new IllegalStateException("not a transaction log: " + file);
+		}
+
+		// position is the end of the last intact record, readPosition the next
+		// byte to fetch from the file
+		long position = HEADER_SIZE;
+		long readPosition = HEADER_SIZE;
+		ByteBuffer buf = ByteBuffer.allocate(1 << 20).flip();
+		CRC32C check = new CRC32C();
+		while (true) {
+			if (buf.remaining() < MAX_RECORD_SIZE) {
+				buf.compact();
+				int read;
+				while (buf.hasRemaining() && (read = in.read(buf, readPosition)) > 0) {
+					readPosition += read;
+				}
+				buf.flip();
+			}
+			if (!buf.hasRemaining()) {
+				break;
+			}
+			int start = buf.position();
+			int size = recordSize(buf.get(start));
+			if (size < 0 || buf.remaining() < size) {
+				break;
+			}
+			check.reset();
+			check.update(buf.array(), start, size - CRC_SIZE);
+			if (buf.getInt(start + size - CRC_SIZE) != (int) check.getValue()) {
+				break;
+			}
+			apply(engine, buf);
+			buf.getInt();
+			position += size;
+			count[0]++;
+		}
+		return position;
+	}
+
+	private FileChannel openSegment(long number) throws IOException {
+		FileChannel opened = FileChannel.open(DataFiles.path(dir, PREFIX, number, SUFFIX), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (opened.size() == 0) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+			while (header.hasRemaining()) {
+				opened.write(header);
+			}
+			opened.force(true);
+		}
+		opened.position(opened.size());
+		return opened;
+	}
+
+	/**
+	 * Flushes everything appended so far into the current segment and starts
+	 * a new one. Writers are blocked for one force.
+	 *
+	 * @return the number of the new segment, every earlier mutation is in
+	 *         the segments before it
+	 */
+	long rotate() throws IOException {
+		syncLock.lock();
+		try {
+			if (failure != null) {
+				throw failure;
+			}
+			appendLock.lock();
+			try {
+				pending.flip();
+				writeFully(pending, channel.position());
+				channel.force(false);
+				pending.clear();
+				durable = appended;
+				FileChannel next = openSegment(segment + 1);
+				channel.close();
+				channel = next;
+				return ++segment;
+			} finally {
+				appendLock.unlock();
+			}
+		} catch (IOException e) {
+			failure = e;
+			throw e;
+		} finally {
+			syncLock.unlock();
+			signalFlushed();
+		}
+	}
+
+	void deleteSegmentsBefore(long number) throws IOException {
+		DataFiles.deleteBefore(dir, PREFIX, number, SUFFIX);
+	}
+
+	private static int recordSize(byte type) {
+		return switch (type) {
+		case ADD -> 1 + 48 + CRC_SIZE;
+		case DELETE -> 1 + 8 + CRC_SIZE;
+		case STATUS -> 1 + 28 + CRC_SIZE;
+		case AMOUNT -> 1 + 32 + CRC_SIZE;
+		default -> -1;
+		};
+	}
+
+	private static void apply(StorageEngine engine, ByteBuffer in) {
+		switch (in.get()) {
+		case ADD -> engine.add(new BankingTransaction(in.getLong(), in.getInt(), in.getLong(), in.getLong(),
+				in.getInt(), in.getLong(), in.getLong(), 1));
+		case DELETE -> engine.delete(in.getLong());
+		case STATUS -> {
+			long id = in.getLong();
+			int status = in.getInt();
+			long updated = in.getLong();
+			long version = in.getLong();
+			if (needs(engine, id, version)) {
+				engine.updateStatus(id, status, updated, version - 1);
+			}
+		}
+		case AMOUNT -> {
+			long id = in.getLong();
+			long amount = in.getLong();
+			long updated = in.getLong();
+			long version = in.getLong();
+			if (needs(engine, id, version)) {
+				engine.updateAmount(id, amount, updated, version - 1);
+			}
+		}
+		default -> throw new IllegalStateException();
+		}
+	}
+
+	// a row loaded from a snapshot may already include the update, or belong
+	// to a later add of the id whose delete follows in the log, so only the
+	// next version is applied
+	private static boolean needs(StorageEngine engine, long id, long version) {
+		BankingTransaction current = engine.get(id);
+		return current != null && current.getVersion() == version - 1;
+	}
+
+	@Override
+	public void added(BankingTransaction trx) {
+		appendLock.lock();
+		try {
+			ByteBuffer buf = reserve(recordSize(ADD));
+			int start = buf.position();
+			buf.put(ADD).putLong(trx.getId()).putInt(trx.getType()).putLong(trx.getUser()).putLong(trx.getAmount())
+					.putInt(trx.getStatus()).putLong(trx.getCreated()).putLong(trx.getUpdated());
+			seal(buf, start);
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	@Override
+	public void deleted(BankingTransaction trx) {
+		appendLock.lock();
+		try {
+			ByteBuffer buf = reserve(recordSize(DELETE));
+			int start = buf.position();
+			buf.put(DELETE).putLong(trx.getId());
+			seal(buf, start);
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	@Override
+	public void statusUpdated(BankingTransaction trx, int oldStatus) {
+		appendLock.lock();
+		try {
+			ByteBuffer buf = reserve(recordSize(STATUS));
+			int start = buf.position();
+			buf.put(STATUS).putLong(trx.getId()).putInt(trx.getStatus()).putLong(trx.getUpdated())
+					.putLong(trx.getVersion());
+			seal(buf, start);
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	@Override
+	public void amountUpdated(BankingTransaction trx, long oldAmount) {
+		appendLock.lock();
+		try {
+			ByteBuffer buf = reserve(recordSize(AMOUNT));
+			int start = buf.position();
+			buf.put(AMOUNT).putLong(trx.getId()).putLong(trx.getAmount()).putLong(trx.getUpdated())
+					.putLong(trx.getVersion());
+			seal(buf, start);
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	private ByteBuffer reserve(int size) {
+		if (pending.remaining() < size) {
+			ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + size));
+			pending.flip();
+			grown.put(pending);
+			pending = grown;
+		}
+		return pending;
+	}
+
+	private void seal(ByteBuffer buf, int start) {
+		crc.reset();
+		crc.update(buf.array(), start, buf.position() - start);
+		buf.putInt((int) crc.getValue());
+		appended++;
+	}
+
+	/**
+	 * Returns once every record appended before the call is on disk. Does not
+	 * wait with async durability.
+	 */
+	void sync() {
+		if (durability == StorageProperties.Durability.async) {
+			return;
+		}
+		if (durability == StorageProperties.Durability.fsync) {
+			// every caller forces on its own, even when already covered
+			syncLock.lock();
+			flushAndUnlock(Long.MAX_VALUE);
+			return;
+		}
+		long target = appended;
+		while (durable < target) {
+			if (failure != null) {
+				throw new UncheckedIOException(failure);
+			}
+			if (syncLock.tryLock()) {
+				flushAndUnlock(target);
+				continue;
+			}
+			// another writer is flushing, wait for it instead of queueing on the
+			// lock so all covered writers wake up together
+			waitLock.lock();
+			try {
+				while (durable < target && failure == null && syncLock.isLocked()) {
+					flushed.await();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted waiting for the log", e);
+			} finally {
+				waitLock.unlock();
+			}
+		}
+	}
+
+	private void signalFlushed() {
+		waitLock.lock();
+		try {
+			flushed.signalAll();
+		} finally {
+			waitLock.unlock();
+		}
+	}
+
+	private void flush() {
+		syncLock.lock();
+		flushAndUnlock(appended);
+	}
+
+	private void flushAndUnlock(long target) {
+		try {
+			if (failure != null) {
+				throw new UncheckedIOException(failure);
+			}
+			// a previous writer may already have covered this target
+			if (durable >= target) {
+				return;
+			}
+			ByteBuffer batch;
+			long upTo;
+			appendLock.lock();
+			try {
+				batch = pending;
+				pending = spare;
+				upTo = appended;
+			} finally {
+				appendLock.unlock();
+			}
+			batch.flip();
+			writeFully(batch, channel.position());
+			channel.force(false);
+			batch.clear();
+			spare = batch;
+			durable = upTo;
+		} catch (IOException e) {
+			failure = e;
+			throw new UncheckedIOException(e);
+		} finally {
+			syncLock.unlock();
+			signalFlushed();
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (UncheckedIOException e) {
+			// kept as the failure of the log, reported by close
+		}
+	}
+
+	private void writeFully(ByteBuffer buf, long position) throws IOException {
+		while (buf.hasRemaining()) {
+			position += channel.write(buf, position);
+		}
+		channel.position(position);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (flusher != null) {
+			flusher.shutdown();
+		}
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+}
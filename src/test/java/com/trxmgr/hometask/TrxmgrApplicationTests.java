@@ -1,10 +1,23 @@
 package com.trxmgr.hometask;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -15,24 +28,39 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.env.Environment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.trxmgr.hometask.entities.AggregateResponse;
 import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.BatchResponse;
 import com.trxmgr.hometask.entities.PageResponse;
+import com.trxmgr.hometask.entities.StatusUpdate;
+import com.trxmgr.hometask.services.TrxRecord;
 
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability
 public class TrxmgrApplicationTests {
 
 	@Autowired
 	private TestRestTemplate restTemplate;
 	@Autowired
 	private Environment environment;
+	@Autowired
+	private ObjectMapper objectMapper;
 
 	private static final String API_URL = "/transactions";
 
@@ -117,6 +145,68 @@ public class TrxmgrApplicationTests {
 		assertEquals(newStatus, response.getBody().getStatus());
 	}
 
+	@Test
+	public void testBasic_IfMatch() {
+		List<BankingTransaction> newTrxs = createTrxList(1, 0, r);
+		restTemplate.postForObject(API_URL, newTrxs.get(0), BankingTransaction.class);
+		String getUrl = getUrl(newTrxs.get(0).getId());
+		ResponseEntity<BankingTransaction> response = restTemplate.getForEntity(getUrl, BankingTransaction.class);
+		String etag = response.getHeaders().getETag();
+		assertEquals("\"1\"", etag);
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfMatch(etag);
+		response = restTemplate.exchange(updateStatusUrl(getUrl, BankingTransaction.COMPLETE_STATUS), HttpMethod.POST,
+				new HttpEntity<>(headers), BankingTransaction.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals("\"2\"", response.getHeaders().getETag());
+		assertEquals(2, response.getBody().getVersion());
+
+		// the stale tag no longer matches, the response carries the current one
+		ResponseEntity<String> conflict = restTemplate.exchange(updateAmountUrl(getUrl, 1), HttpMethod.POST,
+				new HttpEntity<>(headers), String.class);
+		assertEquals(HttpStatus.PRECONDITION_FAILED, conflict.getStatusCode());
+		assertEquals("\"2\"", conflict.getHeaders().getETag());
+		assertEquals(newTrxs.get(0).getAmount(),
+				restTemplate.getForObject(getUrl, BankingTransaction.class).getAmount());
+
+		headers.setIfMatch("*");
+		response = restTemplate.exchange(updateAmountUrl(getUrl, 1), HttpMethod.POST, new HttpEntity<>(headers),
+				BankingTransaction.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals(3, response.getBody().getVersion());
+	}
+
+	@Test
+	public void testBasic_IdempotencyKey() {
+		BankingTransaction newTrx = createTrxList(1, 0, r).get(0);
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("Idempotency-Key", "create-" + newTrx.getId());
+		ResponseEntity<BankingTransaction> response = restTemplate.postForEntity(API_URL,
+				new HttpEntity<>(newTrx, headers), BankingTransaction.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+
+		// a retry gets the original response instead of a duplicate error
+		ResponseEntity<BankingTransaction> retried = restTemplate.postForEntity(API_URL,
+				new HttpEntity<>(newTrx, headers), BankingTransaction.class);
+		assertEquals(HttpStatus.OK, retried.getStatusCode());
+		assertEquals("true", retried.getHeaders().getFirst("Idempotent-Replayed"));
+		assertEquals(response.getBody().toString(), retried.getBody().toString());
+		assertEquals(HttpStatus.BAD_REQUEST,
+				restTemplate.postForEntity(API_URL, newTrx, BankingTransaction.class).getStatusCode());
+
+		newTrx.setAmount(newTrx.getAmount() + 1);
+		ResponseEntity<String> reused = restTemplate.postForEntity(API_URL, new HttpEntity<>(newTrx, headers),
+				String.class);
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, reused.getStatusCode());
+
+		headers.set("Idempotency-Key", "k".repeat(256));
+		ResponseEntity<String> badKey = restTemplate.postForEntity(API_URL, new HttpEntity<>(newTrx, headers),
+				String.class);
+		assertEquals(HttpStatus.BAD_REQUEST, badKey.getStatusCode());
+		assertEquals("{\"message\":\"invalid Idempotency-Key header of length 256\"}", badKey.getBody());
+	}
+
 	@Test
 	public void testBasic_Delete() {
 		List<BankingTransaction> newTrxs = createTrxList(1, 0, r);
@@ -136,9 +226,18 @@ public class TrxmgrApplicationTests {
 	public void testBasic_ExceptionHandle() {
 		List<BankingTransaction> newTrxs = createTrxList(1, 0, r);
 		newTrxs.get(0).setId(-1);
-		ResponseEntity<BankingTransaction> response = restTemplate.postForEntity(API_URL, newTrxs.get(0),
-				BankingTransaction.class);
-		assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+		ResponseEntity<String> invalid = restTemplate.postForEntity(API_URL, newTrxs.get(0), String.class);
+		assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+		assertEquals(MediaType.APPLICATION_JSON, invalid.getHeaders().getContentType());
+		assertEquals("{\"message\":\"invalid transaction with field-id\"}", invalid.getBody());
+		// the rendered rejection is sent whatever format was asked for
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(List.of(MediaType.parseMediaType(TrxRecord.MEDIA_TYPE_VALUE)));
+		invalid = restTemplate.exchange(API_URL, HttpMethod.POST, new HttpEntity<>(newTrxs.get(0), headers),
+				String.class);
+		assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+		assertEquals("{\"message\":\"invalid transaction with field-id\"}", invalid.getBody());
+		ResponseEntity<BankingTransaction> response;
 
 		newTrxs.get(0).setId(r.nextLong(0, MAX_ID));
 		restTemplate.postForEntity(API_URL, newTrxs.get(0), BankingTransaction.class);
@@ -149,6 +248,288 @@ public class TrxmgrApplicationTests {
 
 		response = restTemplate.postForEntity(updateStatusUrl(getUrl, -1), null, BankingTransaction.class);
 		assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+
+		// a bad amount is refused before the id is looked up
+		response = restTemplate.postForEntity(updateAmountUrl(getUrl(-1), -1), null, BankingTransaction.class);
+		assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+	}
+
+	@Test
+	public void testBasic_CursorPage() {
+		List<BankingTransaction> newTrxs = createTrxList(3, 0, r);
+		List<Long> ids = new ArrayList<>();
+		long firstCreated = Long.MAX_VALUE;
+		for (BankingTransaction trx : newTrxs) {
+			BankingTransaction saved = restTemplate.postForObject(API_URL, trx, BankingTransaction.class);
+			ids.add(saved.getId());
+			firstCreated = Math.min(firstCreated, saved.getCreated());
+		}
+
+		List<Long> walked = new ArrayList<>();
+		String cursor = (firstCreated - 1) + "-0";
+		do {
+			String url = API_URL + "?limit=2&after=" + cursor;
+			ResponseEntity<PageResponse> response = restTemplate.getForEntity(url, PageResponse.class);
+			assertEquals(HttpStatus.OK, response.getStatusCode());
+			assertTrue(response.getBody().getData().size() <= 2);
+			response.getBody().getData().forEach(trx -> walked.add(trx.getId()));
+			cursor = response.getBody().getNextCursor();
+		} while (cursor != null);
+
+		assertTrue(walked.containsAll(ids));
+		assertEquals(walked.size(), new HashSet<>(walked).size());
+
+		ResponseEntity<String> badCursor = restTemplate.getForEntity(API_URL + "?limit=2&after=abc", String.class);
+		assertEquals(HttpStatus.BAD_REQUEST, badCursor.getStatusCode());
+	}
+
+	@Test
+	public void testBasic_FilteredPage() {
+		long user = MAX_ID + r.nextLong(0, MAX_ID);
+		List<BankingTransaction> newTrxs = createTrxList(5, 0, r);
+		for (BankingTransaction trx : newTrxs) {
+			trx.setUser(user);
+			restTemplate.postForObject(API_URL, trx, BankingTransaction.class);
+		}
+		restTemplate.postForObject(updateStatusUrl(getUrl(newTrxs.get(0).getId()), BankingTransaction.FAILED_STATUS),
+				null, BankingTransaction.class);
+
+		ResponseEntity<PageResponse> response = restTemplate
+				.getForEntity(API_URL + "?user=" + user + "&pageNo=1&pageSize=3", PageResponse.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals(5, response.getBody().getTotalElements());
+		assertEquals(3, response.getBody().getData().size());
+		response.getBody().getData().forEach(trx -> assertEquals(user, trx.getUser()));
+
+		response = restTemplate.getForEntity(
+				API_URL + "?user=" + user + "&status=" + BankingTransaction.FAILED_STATUS + "&limit=10",
+				PageResponse.class);
+		assertEquals(1, response.getBody().getData().size());
+		assertEquals(newTrxs.get(0).getId(), response.getBody().getData().get(0).getId());
+
+		BankingTransaction settled = response.getBody().getData().get(0);
+		response = restTemplate.getForEntity(API_URL + "?user=" + user + "&updatedSince=" + settled.getUpdated()
+				+ "&createdFrom=" + settled.getCreated() + "&limit=10", PageResponse.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertTrue(response.getBody().getData().stream().anyMatch(trx -> trx.getId() == settled.getId()));
+		response.getBody().getData().forEach(trx -> assertTrue(trx.getUpdated() >= settled.getUpdated()));
+
+		response = restTemplate.getForEntity(
+				API_URL + "?user=" + user + "&createdTo=" + settled.getCreated() + "&pageNo=1&pageSize=10",
+				PageResponse.class);
+		response.getBody().getData().forEach(trx -> assertTrue(trx.getCreated() < settled.getCreated()));
+	}
+
+	@Test
+	public void testBasic_Aggregate() {
+		long user = MAX_ID + r.nextLong(0, MAX_ID);
+		List<BankingTransaction> newTrxs = createTrxList(4, 0, r);
+		long sum = 0;
+		for (BankingTransaction trx : newTrxs) {
+			trx.setUser(user);
+			restTemplate.postForObject(API_URL, trx, BankingTransaction.class);
+			sum += trx.getAmount();
+		}
+
+		ResponseEntity<AggregateResponse> response = restTemplate
+				.getForEntity(API_URL + "/aggregate?groupBy=user&metric=sum&user=" + user, AggregateResponse.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals(1, response.getBody().getGroups().size());
+		assertEquals(user, response.getBody().getGroups().get(0).getKey());
+		assertEquals(4, response.getBody().getGroups().get(0).getCount());
+		assertEquals(sum, response.getBody().getGroups().get(0).getValue().longValue());
+
+		response = restTemplate.getForEntity(API_URL + "/aggregate?groupBy=type&metric=count", AggregateResponse.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertTrue(response.getBody().getGroups().stream()
+				.anyMatch(group -> group.getKey() == newTrxs.get(0).getType() && group.getCount() >= 1));
+
+		ResponseEntity<String> badMetric = restTemplate.getForEntity(API_URL + "/aggregate?groupBy=user&metric=median",
+				String.class);
+		assertEquals(HttpStatus.BAD_REQUEST, badMetric.getStatusCode());
+	}
+
+	@Test
+	@Timeout(60)
+	public void testBasic_ChangeStream() throws Exception {
+		HttpClient client = HttpClient.newHttpClient();
+		URI changes = URI.create(restTemplate.getRootUri() + API_URL + "/changes");
+		HttpResponse<InputStream> stream = client.send(HttpRequest.newBuilder(changes).build(),
+				HttpResponse.BodyHandlers.ofInputStream());
+		assertEquals(200, stream.statusCode());
+		assertTrue(stream.headers().firstValue("Content-Type").get().startsWith(MediaType.TEXT_EVENT_STREAM_VALUE));
+
+		BankingTransaction trx = createTrxList(1, 0, r).get(0);
+		restTemplate.postForObject(API_URL, trx, BankingTransaction.class);
+		restTemplate.postForObject(updateStatusUrl(getUrl(trx.getId()), BankingTransaction.COMPLETE_STATUS), null,
+				BankingTransaction.class);
+		restTemplate.delete(getUrl(trx.getId()));
+
+		List<String[]> events = readChanges(stream.body(), trx.getId(), 3);
+		assertEquals(List.of("added", "status", "deleted"), events.stream().map(event -> event[1]).toList());
+
+		// resumes after the added event
+		stream = client.send(HttpRequest.newBuilder(changes).header("Last-Event-ID", events.get(0)[0]).build(),
+				HttpResponse.BodyHandlers.ofInputStream());
+		assertEquals(List.of("status", "deleted"),
+				readChanges(stream.body(), trx.getId(), 2).stream().map(event -> event[1]).toList());
+	}
+
+	// (id, event name) of the first events about the transaction, closes the stream
+	private static List<String[]> readChanges(InputStream body, long trxId, int count) throws IOException {
+		List<String[]> events = new ArrayList<>();
+		try (BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+			String id = null;
+			String name = null;
+			while (events.size() < count) {
+				String line = lines.readLine();
+				if (line.startsWith("id:")) {
+					id = line.substring(3);
+				} else if (line.startsWith("event:")) {
+					name = line.substring(6);
+				} else if (line.startsWith("data:") && line.contains("\"id\":" + trxId + ",")) {
+					events.add(new String[] { id, name });
+				}
+			}
+		}
+		return events;
+	}
+
+	@Test
+	public void testBasic_Batch() {
+		List<BankingTransaction> newTrxs = createTrxList(20, 0, r);
+		newTrxs.add(newTrxs.get(0));
+		ResponseEntity<BatchResponse> response = restTemplate.postForEntity(API_URL + "/batch", newTrxs,
+				BatchResponse.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals(20, response.getBody().getSucceeded());
+		assertEquals(1, response.getBody().getFailed());
+		assertEquals(400, response.getBody().getResults().get(20).getStatus());
+
+		List<StatusUpdate> updates = List.of(new StatusUpdate(newTrxs.get(1).getId(), BankingTransaction.COMPLETE_STATUS),
+				new StatusUpdate(newTrxs.get(2).getId(), -1));
+		response = restTemplate.postForEntity(API_URL + "/batch/status", updates, BatchResponse.class);
+		assertEquals(1, response.getBody().getSucceeded());
+		assertEquals(BankingTransaction.COMPLETE_STATUS,
+				restTemplate.getForObject(getUrl(newTrxs.get(1).getId()), BankingTransaction.class).getStatus());
+
+		List<Long> ids = List.of(newTrxs.get(3).getId(), newTrxs.get(4).getId());
+		response = restTemplate.exchange(API_URL + "/batch", HttpMethod.DELETE, new HttpEntity<>(ids),
+				BatchResponse.class);
+		assertEquals(2, response.getBody().getSucceeded());
+		assertEquals(HttpStatus.NOT_FOUND,
+				restTemplate.getForEntity(getUrl(newTrxs.get(3).getId()), BankingTransaction.class).getStatusCode());
+	}
+
+	@Test
+	public void testBasic_ImportExport() throws Exception {
+		List<BankingTransaction> newTrxs = createTrxList(2500, 0, r);
+		StringBuilder ndjson = new StringBuilder();
+		for (BankingTransaction trx : newTrxs) {
+			ndjson.append(objectMapper.writeValueAsString(trx)).append('\n');
+		}
+		ndjson.append("{\"id\":-5,\"type\":0,\"user\":1,\"amount\":1}\n");
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_NDJSON);
+		ResponseEntity<BatchResponse> response = restTemplate.postForEntity(API_URL + "/import",
+				new HttpEntity<>(ndjson.toString(), headers), BatchResponse.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals(newTrxs.size(), response.getBody().getSucceeded());
+		assertEquals(1, response.getBody().getFailed());
+		assertEquals(-5, response.getBody().getResults().get(0).getId());
+
+		ResponseEntity<String> exported = restTemplate.getForEntity(API_URL + "/export", String.class);
+		assertEquals(HttpStatus.OK, exported.getStatusCode());
+		assertTrue(exported.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_NDJSON));
+		Set<Long> exportedIds = new HashSet<>();
+		for (String line : exported.getBody().split("\n")) {
+			exportedIds.add(objectMapper.readValue(line, BankingTransaction.class).getId());
+		}
+		newTrxs.forEach(trx -> assertTrue(exportedIds.contains(trx.getId())));
+
+		ResponseEntity<String> malformed = restTemplate.postForEntity(API_URL + "/import",
+				new HttpEntity<>("{\"id\":1,", headers), String.class);
+		assertEquals(HttpStatus.BAD_REQUEST, malformed.getStatusCode());
+	}
+
+	@Test
+	public void testBasic_BinaryFormats() throws Exception {
+		long user = MAX_ID + r.nextLong(0, MAX_ID);
+		List<BankingTransaction> newTrxs = createTrxList(2, 0, r);
+		newTrxs.forEach(trx -> trx.setUser(user));
+		CBORMapper cbor = new CBORMapper();
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_CBOR);
+		headers.setAccept(List.of(MediaType.APPLICATION_CBOR));
+		ResponseEntity<byte[]> created = restTemplate.exchange(API_URL, HttpMethod.POST,
+				new HttpEntity<>(cbor.writeValueAsBytes(newTrxs.get(0)), headers), byte[].class);
+		assertEquals(HttpStatus.OK, created.getStatusCode());
+		assertTrue(created.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_CBOR));
+		assertEquals(newTrxs.get(0).getId(), cbor.readValue(created.getBody(), BankingTransaction.class).getId());
+
+		ResponseEntity<byte[]> single = restTemplate.exchange(getUrl(newTrxs.get(0).getId()), HttpMethod.GET,
+				new HttpEntity<>(headers), byte[].class);
+		assertEquals(HttpStatus.OK, single.getStatusCode());
+		assertEquals(newTrxs.get(0).getAmount(), cbor.readValue(single.getBody(), BankingTransaction.class).getAmount());
+
+		MediaType record = MediaType.parseMediaType(TrxRecord.MEDIA_TYPE_VALUE);
+		headers.setContentType(record);
+		headers.setAccept(List.of(record));
+		created = restTemplate.exchange(API_URL, HttpMethod.POST,
+				new HttpEntity<>(TrxRecord.encode(newTrxs.get(1)), headers), byte[].class);
+		assertEquals(HttpStatus.OK, created.getStatusCode());
+		assertEquals(TrxRecord.SIZE, created.getBody().length);
+		assertEquals(newTrxs.get(1).getId(), TrxRecord.read(ByteBuffer.wrap(created.getBody())).getId());
+
+		ResponseEntity<byte[]> page = restTemplate.exchange(API_URL + "?user=" + user + "&limit=10", HttpMethod.GET,
+				new HttpEntity<>(headers), byte[].class);
+		assertEquals(HttpStatus.OK, page.getStatusCode());
+		assertTrue(page.getHeaders().getContentType().isCompatibleWith(record));
+		PageResponse decoded = TrxRecord.decodePage(ByteBuffer.wrap(page.getBody()));
+		assertEquals(2, decoded.getData().size());
+		decoded.getData().forEach(trx -> assertEquals(user, trx.getUser()));
+
+		// JSON stays the default and wins ties
+		headers.setAccept(MediaType.parseMediaTypes("application/json, application/cbor"));
+		ResponseEntity<String> json = restTemplate.exchange(getUrl(newTrxs.get(1).getId()), HttpMethod.GET,
+				new HttpEntity<>(headers), String.class);
+		assertTrue(json.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_JSON));
+		assertEquals(newTrxs.get(1).getId(), objectMapper.readValue(json.getBody(), BankingTransaction.class).getId());
+
+		// records are only offered for transactions, lists and pages
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		headers.setAccept(List.of(record));
+		assertEquals(HttpStatus.NOT_ACCEPTABLE, restTemplate.exchange(API_URL + "/batch", HttpMethod.POST,
+				new HttpEntity<>(List.of(createTrxList(1, 0, r).get(0)), headers), String.class).getStatusCode());
+		assertEquals(HttpStatus.NOT_ACCEPTABLE, restTemplate.exchange(API_URL + "/batch/status", HttpMethod.POST,
+				new HttpEntity<>(List.of(), headers), String.class).getStatusCode());
+		assertEquals(HttpStatus.NOT_ACCEPTABLE, restTemplate.exchange(API_URL + "/aggregate?groupBy=user&metric=sum",
+				HttpMethod.GET, new HttpEntity<>(headers), String.class).getStatusCode());
+		assertEquals(HttpStatus.NOT_ACCEPTABLE, restTemplate.exchange(API_URL + "/changes", HttpMethod.GET,
+				new HttpEntity<>(headers), String.class).getStatusCode());
+
+		headers.setContentType(record);
+		ResponseEntity<String> truncated = restTemplate.exchange(API_URL, HttpMethod.POST,
+				new HttpEntity<>(new byte[TrxRecord.SIZE - 1], headers), String.class);
+		assertEquals(HttpStatus.BAD_REQUEST, truncated.getStatusCode());
+	}
+
+	@Test
+	public void testBasic_Metrics() {
+		List<BankingTransaction> newTrxs = createTrxList(1, 0, r);
+		restTemplate.postForObject(API_URL, newTrxs.get(0), BankingTransaction.class);
+		restTemplate.getForObject(getUrl(newTrxs.get(0).getId()), BankingTransaction.class);
+
+		ResponseEntity<String> response = restTemplate.getForEntity("/actuator/prometheus", String.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		String metrics = response.getBody();
+		assertTrue(metrics.contains("trxmgr_storage_operation_seconds_bucket{"));
+		assertTrue(metrics.contains("op=\"add\""));
+		assertTrue(metrics.contains("trxmgr_storage_lock_wait_seconds_count{"));
+		assertTrue(metrics.contains("trxmgr_storage_size "));
+		assertTrue(metrics.contains("trxmgr_storage_heap_estimate_bytes "));
+		assertTrue(metrics.contains("http_server_requests_seconds_bucket{"));
 	}
 
 	///////////////////////////////////////////////////////////////////
@@ -0,0 +1,87 @@
+package com.trxmgr.hometask.unit;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.trxmgr.hometask.services.AdaptiveLimiter;
+import com.trxmgr.hometask.services.AdmissionProperties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveLimiterTest {
+
+	private static AdaptiveLimiter createLimiter(int initialLimit, long queueTimeoutMillis, int maxQueued) {
+		AdmissionProperties properties = new AdmissionProperties();
+		properties.setInitialLimit(initialLimit);
+		properties.setMinLimit(2);
+		properties.setMaxLimit(64);
+		properties.setTargetLatencyMillis(10);
+		properties.setQueueTimeoutMillis(queueTimeoutMillis);
+		properties.setMaxQueued(maxQueued);
+		return new AdaptiveLimiter(properties);
+	}
+
+	@Test
+	public void testQueueing() throws Exception {
+		AdaptiveLimiter limiter = createLimiter(2, 50, 1);
+		assertTrue(limiter.acquire());
+		assertTrue(limiter.acquire());
+		// waits for the queue timeout, then gives up
+		long start = System.nanoTime();
+		assertFalse(limiter.acquire());
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		AdaptiveLimiter waiting = createLimiter(2, 10_000, 1);
+		waiting.acquire();
+		waiting.acquire();
+		Future<Boolean> queued = executor.submit(waiting::acquire);
+		while (waiting.queued() == 0) {
+			Thread.sleep(1);
+		}
+		// the queue is full, later requests are refused at once
+		start = System.nanoTime();
+		assertFalse(waiting.acquire());
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		waiting.release(0);
+		assertTrue(queued.get());
+		assertEquals(2, waiting.inFlight());
+		assertEquals(0, waiting.queued());
+		executor.shutdown();
+	}
+
+	@Test
+	public void testAdaptsToLatency() throws Exception {
+		AdaptiveLimiter limiter = createLimiter(32, 0, 0);
+		long slow = TimeUnit.MILLISECONDS.toNanos(100);
+		// one decrease per target latency, however many slow requests end
+		for (int i = 0; i < 10; i++) {
+			assertTrue(limiter.acquire());
+			limiter.release(slow);
+		}
+		assertEquals(28, limiter.limit());
+		for (int round = 0; round < 40; round++) {
+			Thread.sleep(11);
+			assertTrue(limiter.acquire());
+			limiter.release(slow);
+		}
+		assertEquals(2, limiter.limit());
+
+		// fast requests at a used up limit raise it again
+		for (int i = 0; i < 200; i++) {
+			for (int j = 0; j < limiter.limit(); j++) {
+				assertTrue(limiter.acquire());
+			}
+			assertFalse(limiter.acquire());
+			for (int j = limiter.inFlight(); j > 0; j--) {
+				limiter.release(0);
+			}
+		}
+		assertTrue(limiter.limit() > 10, String.valueOf(limiter.limit()));
+	}
+
+}
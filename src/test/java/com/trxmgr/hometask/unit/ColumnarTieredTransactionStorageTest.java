@@ -0,0 +1,16 @@
+package com.trxmgr.hometask.unit;
+
+import com.trxmgr.hometask.services.StorageProperties;
+
+// a cold tier over sharded columnar engines, rows put back from it go to a
+// heap engine of their own
+public class ColumnarTieredTransactionStorageTest extends TieredTransactionStorageTest {
+
+	@Override
+	protected StorageProperties properties() {
+		StorageProperties properties = super.properties();
+		properties.setEngine(StorageProperties.Engine.columnar);
+		return properties;
+	}
+
+}
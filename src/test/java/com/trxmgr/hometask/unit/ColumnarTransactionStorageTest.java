@@ -0,0 +1,105 @@
+package com.trxmgr.hometask.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.PageResponse;
+import com.trxmgr.hometask.entities.TrxFilter;
+import com.trxmgr.hometask.services.StorageProperties;
+import com.trxmgr.hometask.services.TransactionStorage;
+
+public class ColumnarTransactionStorageTest extends TransactionStorageTest {
+
+	@Override
+	protected TransactionStorage createStorage() {
+		StorageProperties properties = new StorageProperties();
+		properties.setEngine(StorageProperties.Engine.columnar);
+		return new TransactionStorage(properties);
+	}
+
+	@Test
+	public void testCompaction() {
+		TransactionStorage storage = createStorage();
+		int size = 300000;
+		List<Long> expected = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			storage.add(new BankingTransaction(i, i % 10, i % 100, i, 0, 0, 0));
+		}
+		for (long id = 0; id < size; id++) {
+			if (id % 10 == 3) {
+				expected.add(id);
+			} else {
+				assertEquals(id, storage.delete(id).getId());
+			}
+		}
+		assertEquals(expected.size(), storage.size());
+
+		List<Long> paged = new ArrayList<>();
+		for (int pageNo = 1; pageNo <= storage.getTotalPages(1000); pageNo++) {
+			storage.getPage(pageNo, 1000).forEach(trx -> paged.add(trx.getId()));
+		}
+		assertEquals(expected, paged);
+		for (long id : expected) {
+			assertEquals(id, storage.get(id).getAmount());
+		}
+		assertEquals(size / 100, storage.findByUser(3, size).size());
+	}
+
+	@Test
+	public void testCompactionInSteps() {
+		TransactionStorage storage = createStorage();
+		int size = 200000;
+		for (int i = 0; i < size; i++) {
+			storage.add(new BankingTransaction(i, i % 10, i % 100, i, 0, 0, 0));
+		}
+		// deletes go on while compaction and pruning passes are part way
+		// through, and every listing must see the same rows meanwhile
+		for (long id = 0; id < size; id++) {
+			if (id % 10 != 3) {
+				assertEquals(id, storage.delete(id).getId());
+			}
+			if (id % 20000 == 19999) {
+				long deletedTo = id;
+				checkListings(storage, LongStream.range(0, size).filter(i -> i % 10 == 3 || i > deletedTo).boxed()
+						.collect(Collectors.toList()));
+			}
+		}
+		List<Long> remaining = LongStream.range(0, size).filter(i -> i % 10 == 3).boxed()
+				.collect(Collectors.toList());
+		for (long id : remaining) {
+			storage.updateStatus(id, 1);
+		}
+		checkListings(storage, remaining);
+	}
+
+	private void checkListings(TransactionStorage storage, List<Long> expected) {
+		assertEquals(expected.size(), storage.size());
+
+		List<Long> walked = new ArrayList<>();
+		String cursor = null;
+		do {
+			PageResponse page = storage.pageAfter(cursor, 5000);
+			page.getData().forEach(trx -> walked.add(trx.getId()));
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		assertEquals(expected, walked);
+
+		long createdFrom = storage.get(expected.get(expected.size() / 2)).getCreated();
+		List<Long> created = expected.stream().filter(id -> storage.get(id).getCreated() >= createdFrom)
+				.collect(Collectors.toList());
+		TrxFilter byCreated = new TrxFilter(null, null, null, createdFrom, null, null);
+		assertEquals(created.size(), storage.page(1, 10, byCreated).getTotalElements());
+
+		TrxFilter byUpdated = new TrxFilter(null, null, null, null, null, 0L);
+		assertEquals(expected.size(), storage.page(1, 10, byUpdated).getTotalElements());
+		assertEquals(expected.get(expected.size() - 1), storage.getPage(expected.size(), 1).get(0).getId());
+	}
+
+}
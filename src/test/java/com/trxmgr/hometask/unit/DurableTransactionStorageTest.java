@@ -0,0 +1,280 @@
+package com.trxmgr.hometask.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.trxmgr.hometask.entities.AggregateResponse;
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.StatusUpdate;
+import com.trxmgr.hometask.entities.TrxFilter;
+import com.trxmgr.hometask.services.StorageProperties;
+import com.trxmgr.hometask.services.TransactionStorage;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class DurableTransactionStorageTest extends TransactionStorageTest {
+
+	@TempDir
+	Path walDir;
+
+	@Override
+	protected TransactionStorage createStorage() {
+		return createStorage(StorageProperties.Durability.async);
+	}
+
+	private TransactionStorage createStorage(StorageProperties.Durability durability) {
+		StorageProperties properties = new StorageProperties();
+		properties.getWal().setDir(walDir.toString());
+		properties.getWal().setDurability(durability);
+		return new TransactionStorage(properties);
+	}
+
+	@ParameterizedTest
+	@EnumSource(StorageProperties.Durability.class)
+	public void testRecovery(StorageProperties.Durability durability) throws IOException {
+		Path dir = walDir.resolve(durability.name());
+		walDir = dir;
+		TransactionStorage storage = createStorage(durability);
+		List<BankingTransaction> batch = new ArrayList<>();
+		for (int i = 1; i <= 500; i++) {
+			BankingTransaction trx = new BankingTransaction(i, i % 10, i % 7, i * 100, 0, 0, 0);
+			if (i <= 200) {
+				storage.add(trx);
+			} else {
+				batch.add(trx);
+			}
+		}
+		storage.addAll(batch);
+		for (long id = 1; id <= 500; id += 5) {
+			storage.delete(id);
+		}
+		storage.updateStatus(2, BankingTransaction.COMPLETE_STATUS);
+		storage.updateStatusAll(List.of(new StatusUpdate(3, BankingTransaction.FAILED_STATUS)));
+		storage.updateAmount(4, 42);
+		List<BankingTransaction> expected = rows(storage);
+		storage.cleanup();
+
+		TransactionStorage recovered = createStorage(durability);
+		assertRows(expected, rows(recovered));
+		assertNull(recovered.get(1));
+		assertEquals(BankingTransaction.COMPLETE_STATUS, recovered.get(2).getStatus());
+		assertEquals(BankingTransaction.FAILED_STATUS, recovered.get(3).getStatus());
+		assertEquals(42, recovered.get(4).getAmount());
+		recovered.cleanup();
+	}
+
+	@Test
+	public void testTornTail() throws IOException {
+		walDir = walDir.resolve("torn");
+		TransactionStorage storage = createStorage(StorageProperties.Durability.group);
+		for (int i = 1; i <= 100; i++) {
+			storage.add(new BankingTransaction(i, 0, i, i, 0, 0, 0));
+		}
+		List<BankingTransaction> expected = rows(storage);
+		storage.cleanup();
+
+		// a crash in the middle of a record leaves a partial write behind
+		Path log = Files.list(walDir).findFirst().orElseThrow();
+		long intact = Files.size(log);
+		Files.write(log, new byte[] { 1, 0, 0, 0, 0, 0, 0, 0, 7, 3 }, StandardOpenOption.APPEND);
+
+		storage = createStorage(StorageProperties.Durability.group);
+		assertRows(expected, rows(storage));
+		assertEquals(intact, Files.size(log));
+		storage.add(new BankingTransaction(101, 0, 1, 1, 0, 0, 0));
+		storage.cleanup();
+
+		storage = createStorage(StorageProperties.Durability.group);
+		assertEquals(101, storage.size());
+		storage.cleanup();
+	}
+
+	@Test
+	public void testSnapshotRecovery() throws Exception {
+		walDir = walDir.resolve("snapshot");
+		TransactionStorage storage = createStorage(StorageProperties.Durability.group);
+		for (int i = 1; i <= 1000; i++) {
+			storage.add(new BankingTransaction(i, i % 10, i % 7, i, 0, 0, 0));
+		}
+		storage.snapshot();
+		for (long id = 1; id <= 1000; id += 3) {
+			storage.delete(id);
+		}
+		storage.updateStatus(2, BankingTransaction.COMPLETE_STATUS);
+		storage.add(new BankingTransaction(1, 0, 1, 1, 0, 0, 0));
+		storage.snapshot();
+		storage.updateAmount(3, 77);
+		List<BankingTransaction> expected = rows(storage);
+		String totals = storage.aggregate(AggregateResponse.GroupBy.type, AggregateResponse.Metric.sum, TrxFilter.NONE)
+				.toString();
+		storage.cleanup();
+
+		try (Stream<Path> files = Files.list(walDir)) {
+			assertEquals(2, files.count());
+		}
+		TransactionStorage recovered = createStorage(StorageProperties.Durability.group);
+		assertRows(expected, rows(recovered));
+		assertEquals(77, recovered.get(3).getAmount());
+		// running totals are rebuilt from the recovered rows
+		assertEquals(totals, recovered
+				.aggregate(AggregateResponse.GroupBy.type, AggregateResponse.Metric.sum, TrxFilter.NONE).toString());
+		recovered.cleanup();
+	}
+
+	@Test
+	public void testSnapshotUnderWrites() throws Exception {
+		walDir = walDir.resolve("concurrent");
+		TransactionStorage storage = createStorage(StorageProperties.Durability.async);
+		for (int i = 1; i <= 20000; i++) {
+			storage.add(new BankingTransaction(i, 0, i, i, 0, 0, 0));
+		}
+		AtomicBoolean stop = new AtomicBoolean();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		Future<?> writer = executor.submit(() -> {
+			Random random = new Random(7);
+			long nextId = 20001;
+			while (!stop.get()) {
+				long id = random.nextLong(1, nextId);
+				switch (random.nextInt(4)) {
+				case 0 -> storage.add(new BankingTransaction(nextId++, 0, 1, 1, 0, 0, 0));
+				case 1 -> storage.delete(id);
+				case 2 -> storage.updateStatus(id, BankingTransaction.COMPLETE_STATUS);
+				default -> storage.updateAmount(id, random.nextLong(1000));
+				}
+			}
+		});
+		for (int i = 0; i < 5; i++) {
+			storage.snapshot();
+		}
+		stop.set(true);
+		writer.get();
+		executor.shutdown();
+		List<BankingTransaction> expected = rows(storage);
+		storage.cleanup();
+
+		TransactionStorage recovered = createStorage(StorageProperties.Durability.async);
+		assertRows(expected, rows(recovered));
+		recovered.cleanup();
+	}
+
+	@Test
+	public void testVirtualThreadWriters() throws Exception {
+		walDir = walDir.resolve("virtual");
+		TransactionStorage storage = createStorage(StorageProperties.Durability.group);
+		int writers = 1000;
+		// writers waiting for a storage lock or a group commit park instead of
+		// pinning carriers, which JFR reports for any park however short
+		Path events = walDir.resolve("pinned.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("jdk.VirtualThreadPinned").withoutThreshold().withStackTrace();
+			recording.start();
+			try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				List<Future<?>> futures = new ArrayList<>();
+				for (int w = 0; w < writers; w++) {
+					long id = w + 1;
+					futures.add(executor.submit(() -> {
+						storage.add(new BankingTransaction(id, 0, id, id, 0, 0, 0));
+						storage.updateStatus(id, BankingTransaction.COMPLETE_STATUS);
+						storage.updateAmount(id, id * 2);
+						storage.add(new BankingTransaction(id + writers, 0, id, id, 0, 0, 0));
+						storage.delete(id + writers);
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			}
+			recording.stop();
+			recording.dump(events);
+		}
+		List<String> pinned = new ArrayList<>();
+		for (RecordedEvent event : RecordingFile.readAllEvents(events)) {
+			if (event.getStackTrace() != null && event.getStackTrace().getFrames().stream()
+					.anyMatch(frame -> frame.getMethod().getType().getName().startsWith("com.trxmgr"))) {
+				pinned.add(event.toString());
+			}
+		}
+		Files.delete(events);
+		assertEquals(List.of(), pinned);
+		List<BankingTransaction> expected = rows(storage);
+		assertEquals(writers, expected.size());
+		storage.cleanup();
+
+		TransactionStorage recovered = createStorage(StorageProperties.Durability.group);
+		assertRows(expected, rows(recovered));
+		recovered.cleanup();
+	}
+
+	@Test
+	public void testTieredRecovery() throws Exception {
+		Path tierDir = walDir.resolve("cold");
+		walDir = walDir.resolve("tiered");
+		TransactionStorage storage = createTieredStorage(tierDir);
+		for (int i = 1; i <= 100; i++) {
+			storage.add(new BankingTransaction(i, i % 10, i % 7, i, 0, 0, 0));
+			if (i % 2 == 0) {
+				storage.updateStatus(i, BankingTransaction.COMPLETE_STATUS);
+			}
+		}
+		assertEquals(50, storage.moveToColdTier());
+		storage.snapshot();
+		// logged after the snapshot, replayed over cold rows
+		storage.updateAmount(2, 42);
+		storage.delete(4);
+		List<BankingTransaction> expected = rows(storage);
+		storage.cleanup();
+
+		// the cold segments are rebuilt from the snapshot and the log
+		TransactionStorage recovered = createTieredStorage(tierDir);
+		assertRows(expected, rows(recovered));
+		assertEquals(42, recovered.get(2).getAmount());
+		assertNull(recovered.get(4));
+		// only the updated row came back to the hot engine
+		assertEquals(1, recovered.moveToColdTier());
+		recovered.cleanup();
+	}
+
+	private TransactionStorage createTieredStorage(Path tierDir) {
+		StorageProperties properties = new StorageProperties();
+		properties.getWal().setDir(walDir.toString());
+		properties.getWal().setDurability(StorageProperties.Durability.group);
+		properties.getTier().setDir(tierDir.toString());
+		properties.getTier().setColdAfterSeconds(0);
+		properties.getTier().setIntervalSeconds(0);
+		return new TransactionStorage(properties);
+	}
+
+	private static List<BankingTransaction> rows(TransactionStorage storage) {
+		List<BankingTransaction> rows = new ArrayList<>();
+		storage.forEach(rows::add);
+		return rows;
+	}
+
+	private static void assertRows(List<BankingTransaction> expected, List<BankingTransaction> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).toString(), actual.get(i).toString());
+		}
+	}
+
+}
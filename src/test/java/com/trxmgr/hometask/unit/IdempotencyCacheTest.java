@@ -0,0 +1,102 @@
+package com.trxmgr.hometask.unit;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import com.trxmgr.hometask.entities.IdempotencyConflictException;
+import com.trxmgr.hometask.entities.InvalidIdempotencyKeyException;
+import com.trxmgr.hometask.services.IdempotencyCache;
+import com.trxmgr.hometask.services.IdempotencyProperties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyCacheTest {
+
+	private static IdempotencyCache createCache(int maxEntries, long ttlSeconds) {
+		IdempotencyProperties properties = new IdempotencyProperties();
+		properties.setMaxEntries(maxEntries);
+		properties.setTtlSeconds(ttlSeconds);
+		return new IdempotencyCache(properties);
+	}
+
+	@Test
+	public void testReplay() {
+		IdempotencyCache cache = createCache(1000, 60);
+		AtomicInteger runs = new AtomicInteger();
+		ResponseEntity<String> first = cache.execute("k1", "a", () -> ResponseEntity.ok("r" + runs.incrementAndGet()));
+		ResponseEntity<String> retried = cache.execute("k1", "a",
+				() -> ResponseEntity.ok("r" + runs.incrementAndGet()));
+		assertEquals(1, runs.get());
+		assertEquals("r1", first.getBody());
+		assertEquals("r1", retried.getBody());
+		assertEquals("true", retried.getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER));
+		assertNull(first.getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER));
+
+		IdempotencyConflictException reused = assertThrows(IdempotencyConflictException.class,
+				() -> cache.execute("k1", "b", () -> ResponseEntity.ok("other")));
+		assertFalse(reused.isInFlight());
+		assertThrows(InvalidIdempotencyKeyException.class, () -> cache.execute("", "a", () -> ResponseEntity.ok("")));
+	}
+
+	@Test
+	public void testFailuresAreNotKept() {
+		IdempotencyCache cache = createCache(1000, 60);
+		assertEquals(400, cache.execute("k", "a", () -> ResponseEntity.badRequest().build()).getStatusCode().value());
+		assertThrows(IllegalStateException.class, () -> cache.execute("k", "a", () -> {
+			throw new IllegalStateException();
+		}));
+		assertEquals("ok", cache.execute("k", "a", () -> ResponseEntity.ok("ok")).getBody());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testInFlight() throws Exception {
+		IdempotencyCache cache = createCache(1000, 60);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<ResponseEntity<String>> first = executor.submit(() -> cache.execute("k", "a", () -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return ResponseEntity.ok("done");
+		}));
+		started.await();
+		IdempotencyConflictException running = assertThrows(IdempotencyConflictException.class,
+				() -> cache.execute("k", "a", () -> ResponseEntity.ok("again")));
+		assertTrue(running.isInFlight());
+		release.countDown();
+		assertEquals("done", first.get().getBody());
+		assertEquals("done", cache.execute("k", "a", () -> ResponseEntity.ok("again")).getBody());
+		executor.shutdown();
+	}
+
+	@Test
+	public void testBounded() throws Exception {
+		IdempotencyCache cache = createCache(1600, 1);
+		for (int i = 0; i < 100_000; i++) {
+			String key = "key-" + i;
+			cache.execute(key, key, () -> ResponseEntity.ok(key));
+		}
+		assertTrue(cache.size() <= 1600, String.valueOf(cache.size()));
+		// the newest keys are still remembered, the oldest are gone
+		AtomicInteger runs = new AtomicInteger();
+		cache.execute("key-99999", "key-99999", () -> ResponseEntity.ok("r" + runs.incrementAndGet()));
+		cache.execute("key-0", "key-0", () -> ResponseEntity.ok("r" + runs.incrementAndGet()));
+		assertEquals(1, runs.get());
+
+		Thread.sleep(1100);
+		cache.execute("key-99999", "key-99999", () -> ResponseEntity.ok("r" + runs.incrementAndGet()));
+		assertEquals(2, runs.get());
+	}
+
+}
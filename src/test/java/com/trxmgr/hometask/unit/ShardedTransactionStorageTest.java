@@ -0,0 +1,66 @@
+package com.trxmgr.hometask.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.services.StorageProperties;
+import com.trxmgr.hometask.services.TransactionStorage;
+
+public class ShardedTransactionStorageTest extends TransactionStorageTest {
+
+	@Override
+	protected TransactionStorage createStorage() {
+		StorageProperties properties = new StorageProperties();
+		properties.setShards(4);
+		return new TransactionStorage(properties);
+	}
+
+	// offset pages of a sharded store follow (created, id) instead of
+	// insertion order
+	@Override
+	@Test
+	public void testPagination() {
+		assertMergedPages(10188, 0);
+	}
+
+	@Override
+	@Test
+	public void testPaginationAfterDelete() {
+		assertMergedPages(10188, 8);
+	}
+
+	private void assertMergedPages(int size, int deletedTenths) {
+		TransactionStorage storage = createStorage();
+		Random random = new Random(size);
+		List<BankingTransaction> expected = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			storage.add(new BankingTransaction(random.nextLong(1, Long.MAX_VALUE), 0, 1, 1, 0, 0, 0));
+		}
+		storage.forEach(trx -> {
+			if (random.nextInt(10) < deletedTenths) {
+				assertEquals(trx.getId(), storage.delete(trx.getId()).getId());
+			} else {
+				expected.add(trx);
+			}
+		});
+		expected.sort(Comparator.comparingLong(BankingTransaction::getCreated)
+				.thenComparingLong(BankingTransaction::getId));
+		assertEquals(expected.size(), storage.size());
+
+		int pageSize = 100;
+		List<Long> paged = new ArrayList<>();
+		for (int pageNo = 1; pageNo <= storage.getTotalPages(pageSize); pageNo++) {
+			storage.getPage(pageNo, pageSize).forEach(trx -> paged.add(trx.getId()));
+		}
+		assertEquals(expected.stream().map(BankingTransaction::getId).toList(), paged);
+		storage.cleanup();
+	}
+
+}
@@ -0,0 +1,241 @@
+package com.trxmgr.hometask.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.trxmgr.hometask.entities.AggregateGroup;
+import com.trxmgr.hometask.entities.AggregateResponse;
+import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.PageResponse;
+import com.trxmgr.hometask.entities.TrxFilter;
+import com.trxmgr.hometask.services.StorageProperties;
+import com.trxmgr.hometask.services.TransactionStorage;
+
+// a cold tier over a sharded hot store, whose pages are merged as well
+public class TieredTransactionStorageTest extends ShardedTransactionStorageTest {
+
+	@TempDir
+	Path tierDir;
+
+	private final AtomicInteger stores = new AtomicInteger();
+
+	@Override
+	protected TransactionStorage createStorage() {
+		return new TransactionStorage(properties());
+	}
+
+	protected StorageProperties properties() {
+		StorageProperties properties = new StorageProperties();
+		properties.setShards(2);
+		properties.getTier().setDir(tierDir.resolve("store-" + stores.incrementAndGet()).toString());
+		properties.getTier().setColdAfterSeconds(0);
+		properties.getTier().setIntervalSeconds(0);
+		return properties;
+	}
+
+	@Test
+	public void testColdTier() {
+		TransactionStorage storage = createStorage();
+		Random random = new Random(7);
+		Map<Long, BankingTransaction> expected = new HashMap<>();
+		int settled = 0;
+		// one cold run per round, enough short runs to be compacted
+		for (int round = 0; round < 20; round++) {
+			int roundSettled = 0;
+			for (int i = 0; i < 200; i++) {
+				long id = round * 1000L + i;
+				storage.add(new BankingTransaction(id, i % 5, random.nextInt(10), random.nextInt(1000), 0, 0, 0));
+				if (i % 3 != 0) {
+					storage.updateStatus(id, i % 2 == 0 ? BankingTransaction.COMPLETE_STATUS
+							: BankingTransaction.FAILED_STATUS);
+					roundSettled++;
+				}
+			}
+			long head = storage.changes().head();
+			assertEquals(roundSettled, storage.moveToColdTier());
+			// moves are not changes
+			assertEquals(head, storage.changes().head());
+			settled += roundSettled;
+		}
+		storage.forEach(trx -> expected.put(trx.getId(), trx));
+		assertEquals(4000, storage.size());
+		assertEquals(4000, expected.size());
+		assertEquals(0, storage.moveToColdTier());
+		for (BankingTransaction trx : expected.values()) {
+			assertEquals(trx.toString(), storage.get(trx.getId()).toString());
+		}
+
+		List<BankingTransaction> ordered = new ArrayList<>(expected.values());
+		ordered.sort(Comparator.comparingLong(BankingTransaction::getCreated)
+				.thenComparingLong(BankingTransaction::getId));
+		List<Long> paged = new ArrayList<>();
+		for (int pageNo = 1; pageNo <= storage.getTotalPages(300); pageNo++) {
+			storage.getPage(pageNo, 300).forEach(trx -> paged.add(trx.getId()));
+		}
+		assertEquals(ordered.stream().map(BankingTransaction::getId).toList(), paged);
+		List<Long> walked = new ArrayList<>();
+		String cursor = null;
+		do {
+			PageResponse page = storage.pageAfter(cursor, 333);
+			page.getData().forEach(trx -> walked.add(trx.getId()));
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		assertEquals(paged, walked);
+
+		TrxFilter failed = new TrxFilter(3L, null, BankingTransaction.FAILED_STATUS);
+		List<Long> failedIds = ordered.stream().filter(failed::matches).map(BankingTransaction::getId).toList();
+		PageResponse page = storage.page(1, 10_000, failed);
+		assertEquals(failedIds.size(), page.getTotalElements());
+		assertEquals(failedIds, page.getData().stream().map(BankingTransaction::getId).toList());
+		long since = ordered.get(ordered.size() / 2).getUpdated();
+		TrxFilter recent = new TrxFilter(null, null, null, null, null, since);
+		assertEquals(ordered.stream().filter(recent::matches).count(), storage.pageAfter(null, 10_000, recent)
+				.getData().stream().filter(trx -> trx.getUpdated() >= since).count());
+		assertEquals(settled, storage.findAll(trx -> trx.getStatus() != 0, Integer.MAX_VALUE).size());
+		AggregateResponse max = storage.aggregate(AggregateResponse.GroupBy.status, AggregateResponse.Metric.max,
+				TrxFilter.NONE);
+		for (AggregateGroup group : max.getGroups()) {
+			assertEquals(ordered.stream().filter(trx -> trx.getStatus() == group.getKey())
+					.mapToLong(BankingTransaction::getAmount).max().getAsLong(), group.getValue());
+		}
+
+		// an update brings the row back to the hot engine, a delete drops it
+		BankingTransaction cold = storage.get(1);
+		BankingTransaction updated = storage.updateAmount(1, 4242, cold.getVersion());
+		assertEquals(cold.getVersion() + 1, updated.getVersion());
+		assertEquals(4242, storage.get(1).getAmount());
+		assertEquals(4000, storage.size());
+		assertEquals(1, storage.moveToColdTier());
+		assertEquals(4242, storage.get(1).getAmount());
+		assertEquals(BankingTransaction.COMPLETE_STATUS,
+				storage.updateStatus(2, BankingTransaction.COMPLETE_STATUS).getStatus());
+		assertEquals(2, storage.delete(2).getId());
+		assertNull(storage.get(2));
+		assertNull(storage.delete(2));
+		assertEquals(3999, storage.size());
+		storage.cleanup();
+	}
+
+	@Test
+	public void testAddDuringMove() throws Exception {
+		TransactionStorage storage = createStorage();
+		int size = 500;
+		Map<Long, Long> amounts = new HashMap<>();
+		for (long id = 1; id <= size; id++) {
+			storage.add(new BankingTransaction(id, 0, 1, 0, 0, 0, 0));
+			storage.updateStatus(id, BankingTransaction.COMPLETE_STATUS);
+			amounts.put(id, 0L);
+		}
+		AtomicBoolean done = new AtomicBoolean();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<?> mover = executor.submit(() -> {
+			while (!done.get()) {
+				storage.moveToColdTier();
+			}
+		});
+		// settled rows are replaced while passes move them, every id must end
+		// up with exactly one row, the last one added
+		Random random = new Random(7);
+		for (int round = 1; round <= 40; round++) {
+			for (int i = 0; i < 50; i++) {
+				long id = random.nextLong(1, size + 1);
+				storage.delete(id);
+				assertTrue(storage.add(new BankingTransaction(id, 0, 1, round, 0, 0, 0)));
+				storage.updateStatus(id, BankingTransaction.COMPLETE_STATUS);
+				amounts.put(id, (long) round);
+			}
+		}
+		done.set(true);
+		mover.get();
+		executor.shutdown();
+		storage.moveToColdTier();
+
+		List<Long> ids = new ArrayList<>();
+		storage.forEach(trx -> ids.add(trx.getId()));
+		assertEquals(size, ids.size());
+		assertEquals(size, ids.stream().distinct().count());
+		assertEquals(size, storage.size());
+		for (Map.Entry<Long, Long> amount : amounts.entrySet()) {
+			assertEquals(amount.getValue(), storage.get(amount.getKey()).getAmount(), "id " + amount.getKey());
+		}
+		storage.cleanup();
+	}
+
+	@Test
+	public void testPromotedRowsKeepCreated() throws Exception {
+		StorageProperties properties = properties();
+		properties.getWal().setDir(tierDir.resolve("wal-" + stores.get()).toString());
+		TransactionStorage storage = new TransactionStorage(properties);
+		for (long id = 1; id <= 100; id++) {
+			storage.add(new BankingTransaction(id, 0, 1, id, 0, 0, 0));
+			storage.updateStatus(id, BankingTransaction.COMPLETE_STATUS);
+		}
+		assertEquals(100, storage.moveToColdTier());
+		Thread.sleep(5);
+		for (long id = 101; id <= 200; id++) {
+			storage.add(new BankingTransaction(id, 0, 1, id, 0, 0, 0));
+		}
+
+		// an update puts the row back where its created time sorts it
+		long created = storage.get(1).getCreated();
+		assertEquals(4242, storage.updateAmount(1, 4242).getAmount());
+		assertEquals(created, storage.get(1).getCreated());
+		TrxFilter older = new TrxFilter(null, null, null, null, created + 1, null);
+		assertTrue(storage.pageAfter(null, 1000, older).getData().stream().anyMatch(trx -> trx.getId() == 1));
+		List<String> live = new ArrayList<>();
+		storage.forEach(trx -> live.add(trx.toString()));
+		assertEquals(200, live.size());
+		storage.cleanup();
+
+		TransactionStorage recovered = new TransactionStorage(properties);
+		List<String> replayed = new ArrayList<>();
+		recovered.forEach(trx -> replayed.add(trx.toString()));
+		assertEquals(live, replayed);
+		recovered.cleanup();
+	}
+
+	@Test
+	public void testGetDuringPromote() throws Exception {
+		TransactionStorage storage = createStorage();
+		storage.add(new BankingTransaction(1, 0, 1, 0, 0, 0, 0));
+		storage.updateStatus(1, BankingTransaction.COMPLETE_STATUS);
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicInteger misses = new AtomicInteger();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<?> reader = executor.submit(() -> {
+			while (!done.get()) {
+				if (storage.get(1) == null) {
+					misses.incrementAndGet();
+				}
+			}
+		});
+		// the row goes back and forth between the tiers while it is read
+		for (int i = 1; i <= 2000; i++) {
+			assertEquals(1, storage.moveToColdTier());
+			assertEquals(i, storage.updateAmount(1, i).getAmount());
+		}
+		done.set(true);
+		reader.get();
+		executor.shutdown();
+		assertEquals(0, misses.get());
+		storage.cleanup();
+	}
+
+}
@@ -1,24 +1,49 @@
 package com.trxmgr.hometask.unit;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
-
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
-import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.trxmgr.hometask.entities.AggregateGroup;
+import com.trxmgr.hometask.entities.AggregateResponse;
 import com.trxmgr.hometask.entities.BankingTransaction;
+import com.trxmgr.hometask.entities.BatchItemResult;
+import com.trxmgr.hometask.entities.ChangeEvent;
+import com.trxmgr.hometask.entities.InvalidCursorException;
+import com.trxmgr.hometask.entities.InvalidTransationException;
+import com.trxmgr.hometask.entities.PageResponse;
+import com.trxmgr.hometask.entities.StatusUpdate;
+import com.trxmgr.hometask.entities.StorageFullException;
+import com.trxmgr.hometask.entities.TrxFilter;
+import com.trxmgr.hometask.entities.VersionConflictException;
+import com.trxmgr.hometask.services.ChangeLog;
+import com.trxmgr.hometask.services.EncodedTransaction;
+import com.trxmgr.hometask.services.StorageProperties;
+import com.trxmgr.hometask.services.StorageTime;
 import com.trxmgr.hometask.services.TransactionStorage;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@ExtendWith(MockitoExtension.class)
 public class TransactionStorageTest {
 
 	private static long MAX_AMOUNT = 100000000;
@@ -29,9 +54,22 @@ public class TransactionStorageTest {
 		r = new Random(System.currentTimeMillis());
 	}
 
-	@InjectMocks
 	private TransactionStorage trxStorage;
 
+	@BeforeEach
+	public void initStorage() {
+		trxStorage = createStorage();
+	}
+
+	@AfterEach
+	public void closeStorage() {
+		trxStorage.cleanup();
+	}
+
+	protected TransactionStorage createStorage() {
+		return new TransactionStorage();
+	}
+
 	@Test
 	public void testAdd() {
 
@@ -106,6 +144,105 @@ public class TransactionStorageTest {
 		assertEquals(updatedTrx.getAmount(), newAmount);
 	}
 
+	@Test
+	public void testUpdateAmountValidation() {
+
+		BankingTransaction trx = createNewTrx(0, 0);
+		trxStorage.add(trx);
+
+		InvalidTransationException invalid = assertThrows(InvalidTransationException.class,
+				() -> trxStorage.updateAmount(trx.getId(), -1));
+		assertEquals(InvalidTransationException.InvalidField.amount, invalid.getField());
+		assertEquals(trx.getAmount(), trxStorage.get(trx.getId()).getAmount());
+		assertEquals(1, trxStorage.get(trx.getId()).getVersion());
+
+		assertEquals(0, trxStorage.updateAmount(trx.getId(), 0).getAmount());
+	}
+
+	@Test
+	public void testStorageTime() {
+
+		StorageTime.take();
+		BankingTransaction trx = createNewTrx(0, 0);
+		trxStorage.add(trx);
+		trxStorage.get(trx.getId());
+		assertTrue(StorageTime.take() > 0);
+		assertEquals(0, StorageTime.take());
+
+		// time of other threads is not counted
+		Thread other = new Thread(() -> trxStorage.get(trx.getId()));
+		other.start();
+		assertDoesNotThrow(() -> other.join());
+		assertEquals(0, StorageTime.take());
+	}
+
+	@Test
+	public void testValidation() {
+		BankingTransaction trx = createNewTrx(0, 0);
+		trx.setType(BankingTransaction.MAX_TYPE + 1);
+		InvalidTransationException invalid = assertThrows(InvalidTransationException.class, () -> trxStorage.add(trx));
+		assertEquals(InvalidTransationException.InvalidField.type, invalid.getField());
+		// rejections share one instance per field, without a stack trace
+		trx.setType(0);
+		trx.setUser(-1);
+		assertSame(InvalidTransationException.of(InvalidTransationException.InvalidField.user),
+				assertThrows(InvalidTransationException.class, () -> trxStorage.add(trx)));
+		assertEquals(0, invalid.getStackTrace().length);
+		assertEquals("invalid transaction with field-user",
+				InvalidTransationException.of(InvalidTransationException.InvalidField.user).toString());
+		assertTrue(invalid instanceof IllegalArgumentException);
+		assertEquals("invalid transaction with field-amount[-1]",
+				new InvalidTransationException(InvalidTransationException.InvalidField.amount, "-1").toString());
+		assertEquals(0, trxStorage.size());
+	}
+
+	@Test
+	public void testVersionedUpdates() throws Exception {
+		BankingTransaction trx = createNewTrx(1, 0);
+		trxStorage.add(trx);
+		BankingTransaction stored = trxStorage.get(1);
+		assertEquals(1, stored.getVersion());
+
+		BankingTransaction updated = trxStorage.updateStatus(1, BankingTransaction.COMPLETE_STATUS, 1);
+		assertEquals(2, updated.getVersion());
+		// rows handed out earlier are not modified by the update
+		assertEquals(0, stored.getStatus());
+		assertEquals(1, stored.getVersion());
+		VersionConflictException conflict = assertThrows(VersionConflictException.class,
+				() -> trxStorage.updateAmount(1, 5, 1));
+		assertEquals(2, conflict.getCurrentVersion());
+		assertEquals(updated.getAmount(), trxStorage.get(1).getAmount());
+		assertNull(trxStorage.updateAmount(2, 5, 1));
+
+		// concurrent read-modify-write increments with retries lose nothing
+		trxStorage.updateAmount(1, 0);
+		int threads = 4;
+		int increments = 500;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < increments; i++) {
+					while (true) {
+						BankingTransaction current = trxStorage.get(1);
+						try {
+							trxStorage.updateAmount(1, current.getAmount() + 1, current.getVersion());
+							break;
+						} catch (VersionConflictException e) {
+							// another writer won, read again
+						}
+					}
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		assertEquals(threads * increments, trxStorage.get(1).getAmount());
+		assertEquals(3 + threads * increments, trxStorage.get(1).getVersion());
+	}
+
 	@Test
 	public void testPagination() {
 		int size = 10188;
@@ -147,6 +284,546 @@ public class TransactionStorageTest {
 
 	}
 
+	@Test
+	public void testPaginationAfterDelete() {
+		int size = 10188;
+		int pageSize = 100;
+
+		List<Long> expected = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			BankingTransaction trx = createNewTrx(0, 0);
+			while (!trxStorage.add(trx)) {
+				trx = createNewTrx(0, 0);
+			}
+			expected.add(trx.getId());
+		}
+
+		Iterator<Long> it = expected.iterator();
+		while (it.hasNext()) {
+			long id = it.next();
+			if (r.nextInt(10) < 8) {
+				assertEquals(id, trxStorage.delete(id).getId());
+				assertNull(trxStorage.delete(id));
+				it.remove();
+			}
+		}
+		assertEquals(expected.size(), trxStorage.size());
+
+		List<Long> paged = new ArrayList<>();
+		int totalPages = trxStorage.getTotalPages(pageSize);
+		for (int pageNo = 1; pageNo <= totalPages; pageNo++) {
+			for (BankingTransaction trx : trxStorage.getPage(pageNo, pageSize)) {
+				paged.add(trx.getId());
+			}
+		}
+		assertEquals(expected, paged);
+	}
+
+	@Test
+	public void testConcurrentSearch() throws Exception {
+		int size = 50000;
+		int users = 8;
+		for (int i = 0; i < size; i++) {
+			BankingTransaction trx = createNewTrx(i + 1, i % 5);
+			trx.setUser(i % users);
+			trx.setAmount(i);
+			assertTrue(trxStorage.add(trx));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(users);
+		try {
+			List<Future<List<BankingTransaction>>> futures = new ArrayList<>();
+			for (int u = 0; u < users; u++) {
+				long user = u;
+				futures.add(executor.submit(() -> trxStorage.findByUser(user, size)));
+			}
+			for (int u = 0; u < users; u++) {
+				List<BankingTransaction> found = futures.get(u).get();
+				assertEquals(size / users, found.size());
+				for (BankingTransaction trx : found) {
+					assertEquals(u, trx.getUser());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(10, trxStorage.findByType(3, 10).size());
+		assertEquals(101, trxStorage.findByAmountRange(100, 200, size).size());
+		assertEquals(777, trxStorage.findAny(trx -> trx.getAmount() == 777).getAmount());
+		assertNull(trxStorage.findAny(trx -> trx.getAmount() < 0));
+	}
+
+	@Test
+	public void testSnapshotPaginationUnderWrites() throws Exception {
+		int size = 20000;
+		int pageSize = 100;
+		AtomicLong nextId = new AtomicLong(1);
+		for (int i = 0; i < size; i++) {
+			trxStorage.add(createNewTrx(nextId.getAndIncrement(), 0));
+		}
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Future<?> writer = executor.submit(() -> {
+				Random wr = new Random();
+				while (running.get()) {
+					trxStorage.delete(wr.nextLong(1, nextId.get()));
+					trxStorage.add(createNewTrx(nextId.getAndIncrement(), 0));
+				}
+			});
+
+			List<Future<Integer>> readers = new ArrayList<>();
+			for (int t = 0; t < 3; t++) {
+				readers.add(executor.submit(() -> {
+					int pages = 0;
+					for (int round = 0; round < 200; round++) {
+						int pageNo = 1 + (round * 37) % (size / pageSize);
+						PageResponse page = trxStorage.page(pageNo, pageSize);
+						long expected = Math.min(pageSize, page.getTotalElements() - (long) (pageNo - 1) * pageSize);
+						assertEquals(Math.max(expected, 0), page.getData().size());
+						long lastId = 0;
+						for (BankingTransaction trx : page.getData()) {
+							assertTrue(trx.getId() > lastId);
+							lastId = trx.getId();
+						}
+						pages++;
+					}
+					return pages;
+				}));
+			}
+			for (Future<Integer> reader : readers) {
+				assertEquals(200, reader.get());
+			}
+			running.set(false);
+			writer.get();
+		} finally {
+			running.set(false);
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testCursorPagination() {
+		int size = 5000;
+		int limit = 64;
+		List<BankingTransaction> added = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			BankingTransaction trx = createNewTrx(i + 1, 0);
+			trxStorage.add(trx);
+			added.add(trx);
+		}
+		added.sort(Comparator.comparingLong(BankingTransaction::getCreated).thenComparingLong(BankingTransaction::getId));
+
+		List<Long> expected = new ArrayList<>();
+		List<Long> walked = new ArrayList<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			PageResponse page = trxStorage.pageAfter(cursor, limit);
+			assertEquals(PageResponse.UNCOUNTED, page.getTotalElements());
+			for (BankingTransaction trx : page.getData()) {
+				walked.add(trx.getId());
+			}
+			cursor = page.getNextCursor();
+			pages++;
+
+			// rows deleted behind or ahead of the cursor never shift later pages
+			if (pages == 3) {
+				trxStorage.delete(added.get(0).getId());
+				trxStorage.delete(added.get(size - 1).getId());
+			}
+		} while (cursor != null);
+
+		for (int i = 0; i < size - 1; i++) {
+			expected.add(added.get(i).getId());
+		}
+		assertEquals(expected, walked);
+		assertEquals(0, trxStorage.pageAfter(null, 0).getData().size());
+		assertThrows(InvalidCursorException.class, () -> trxStorage.pageAfter("not-a-cursor", limit));
+	}
+
+	@Test
+	public void testFilteredListing() {
+		int size = 3000;
+		List<BankingTransaction> added = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			BankingTransaction trx = createNewTrx(i + 1, i % 7);
+			trx.setUser(i % 13);
+			trxStorage.add(trx);
+			added.add(trx);
+		}
+		for (int i = 0; i < size; i += 3) {
+			trxStorage.updateStatus(i + 1, BankingTransaction.COMPLETE_STATUS);
+		}
+		for (int i = 1; i < size; i += 5) {
+			trxStorage.delete(i + 1);
+		}
+
+		List<TrxFilter> filters = List.of(new TrxFilter(5L, null, null), new TrxFilter(null, 3, null),
+				new TrxFilter(null, null, BankingTransaction.COMPLETE_STATUS), new TrxFilter(5L, 3, 0),
+				new TrxFilter(99L, null, null));
+		for (TrxFilter filter : filters) {
+			List<Long> expected = new ArrayList<>();
+			added.stream()
+					.map(trx -> trxStorage.get(trx.getId()))
+					.filter(trx -> trx != null && filter.matches(trx))
+					.sorted(Comparator.comparingLong(BankingTransaction::getCreated)
+							.thenComparingLong(BankingTransaction::getId))
+					.forEach(trx -> expected.add(trx.getId()));
+
+			List<Long> paged = new ArrayList<>();
+			PageResponse first = trxStorage.page(1, 50, filter);
+			assertEquals(expected.size(), first.getTotalElements());
+			for (int pageNo = 1; pageNo <= first.getTotalPages(); pageNo++) {
+				trxStorage.page(pageNo, 50, filter).getData().forEach(trx -> paged.add(trx.getId()));
+			}
+			assertEquals(expected, paged, filter.toString());
+
+			List<Long> walked = new ArrayList<>();
+			String cursor = null;
+			do {
+				PageResponse page = trxStorage.pageAfter(cursor, 40, filter);
+				page.getData().forEach(trx -> walked.add(trx.getId()));
+				cursor = page.getNextCursor();
+			} while (cursor != null);
+			assertEquals(expected, walked, filter.toString());
+		}
+	}
+
+	@Test
+	public void testTimeRanges() throws Exception {
+		int size = 3000;
+		for (int i = 0; i < size; i++) {
+			trxStorage.add(createNewTrx(i + 1, i % 5));
+			if (i % 500 == 0) {
+				Thread.sleep(2);
+			}
+		}
+		Thread.sleep(2);
+		for (int i = 0; i < size; i += 4) {
+			trxStorage.updateStatus(i + 1, BankingTransaction.COMPLETE_STATUS);
+			if (i % 400 == 0) {
+				Thread.sleep(2);
+			}
+		}
+		for (int i = 2; i < size; i += 9) {
+			trxStorage.delete(i + 1);
+		}
+
+		List<BankingTransaction> rows = new ArrayList<>();
+		trxStorage.forEach(rows::add);
+		long from = rows.get(rows.size() / 4).getCreated();
+		long to = rows.get(rows.size() * 3 / 4).getCreated();
+		long since = rows.stream().mapToLong(BankingTransaction::getUpdated).sorted().toArray()[rows.size() * 7 / 8];
+		Comparator<BankingTransaction> byCreated = Comparator.comparingLong(BankingTransaction::getCreated)
+				.thenComparingLong(BankingTransaction::getId);
+		Comparator<BankingTransaction> byUpdated = Comparator.comparingLong(BankingTransaction::getUpdated)
+				.thenComparingLong(BankingTransaction::getId);
+
+		List<TrxFilter> filters = List.of(new TrxFilter(null, null, null, from, to, null),
+				new TrxFilter(null, 2, null, from, null, null), new TrxFilter(null, null, null, null, to, null),
+				new TrxFilter(null, null, null, to, from, null), new TrxFilter(null, null, null, null, null, since),
+				new TrxFilter(null, 3, BankingTransaction.COMPLETE_STATUS, from, null, since));
+		for (TrxFilter filter : filters) {
+			boolean updatedOrder = filter.getUpdatedSince() != null;
+			List<Long> expected = new ArrayList<>();
+			rows.stream().filter(filter::matches).sorted(updatedOrder ? byUpdated : byCreated)
+					.forEach(trx -> expected.add(trx.getId()));
+
+			List<Long> walked = new ArrayList<>();
+			String cursor = null;
+			do {
+				PageResponse page = trxStorage.pageAfter(cursor, 70, filter);
+				page.getData().forEach(trx -> walked.add(trx.getId()));
+				cursor = page.getNextCursor();
+			} while (cursor != null);
+			assertEquals(expected, walked, filter.toString());
+
+			List<Long> paged = new ArrayList<>();
+			PageResponse first = trxStorage.page(1, 100, filter);
+			assertEquals(expected.size(), first.getTotalElements(), filter.toString());
+			for (int pageNo = 1; pageNo <= first.getTotalPages(); pageNo++) {
+				trxStorage.page(pageNo, 100, filter).getData().forEach(trx -> paged.add(trx.getId()));
+			}
+			expected.sort(Comparator.comparing(id -> trxStorage.get(id), byCreated));
+			assertEquals(expected, paged, filter.toString());
+		}
+
+		// an update moves the row to the end of the updated order
+		TrxFilter recent = new TrxFilter(null, null, null, null, null, since);
+		BankingTransaction moved = trxStorage.pageAfter(null, 1, recent).getData().get(0);
+		Thread.sleep(2);
+		trxStorage.updateAmount(moved.getId(), 42);
+		List<BankingTransaction> last = trxStorage.pageAfter(null, size, recent).getData();
+		assertEquals(moved.getId(), last.get(last.size() - 1).getId());
+	}
+
+	@Test
+	public void testAggregate() {
+		int size = 4000;
+		for (int i = 0; i < size; i++) {
+			BankingTransaction trx = createNewTrx(i + 1, i % 6);
+			trx.setUser(i % 17);
+			trxStorage.add(trx);
+		}
+		for (int i = 0; i < size; i += 3) {
+			trxStorage.updateStatus(i + 1, i % 2 == 0 ? BankingTransaction.COMPLETE_STATUS
+					: BankingTransaction.FAILED_STATUS);
+		}
+		for (int i = 1; i < size; i += 7) {
+			trxStorage.updateAmount(i + 1, i);
+		}
+		for (int i = 2; i < size; i += 5) {
+			trxStorage.delete(i + 1);
+		}
+		List<BankingTransaction> rows = new ArrayList<>();
+		trxStorage.forEach(rows::add);
+
+		List<TrxFilter> filters = List.of(TrxFilter.NONE, new TrxFilter(3L, null, null),
+				new TrxFilter(null, 2, BankingTransaction.COMPLETE_STATUS),
+				new TrxFilter(null, null, null, null, rows.get(rows.size() / 2).getCreated(), null));
+		for (TrxFilter filter : filters) {
+			for (AggregateResponse.GroupBy groupBy : AggregateResponse.GroupBy.values()) {
+				Map<Long, List<Long>> expected = new TreeMap<>();
+				rows.stream().filter(filter::matches).forEach(trx -> expected
+						.computeIfAbsent(groupBy.keyOf(trx), key -> new ArrayList<>()).add(trx.getAmount()));
+				for (AggregateResponse.Metric metric : AggregateResponse.Metric.values()) {
+					AggregateResponse response = trxStorage.aggregate(groupBy, metric, filter);
+					String context = groupBy + " " + metric + " " + filter;
+					assertEquals(new ArrayList<>(expected.keySet()),
+							response.getGroups().stream().map(AggregateGroup::getKey).toList(), context);
+					for (AggregateGroup group : response.getGroups()) {
+						List<Long> amounts = expected.get(group.getKey());
+						assertEquals(amounts.size(), group.getCount(), context);
+						long sum = amounts.stream().mapToLong(Long::longValue).sum();
+						Number value = switch (metric) {
+						case sum -> sum;
+						case count -> (long) amounts.size();
+						case avg -> (double) sum / amounts.size();
+						case min -> Collections.min(amounts);
+						case max -> Collections.max(amounts);
+						};
+						assertEquals(value, group.getValue(), context);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testChangeLog() throws Exception {
+		ChangeLog changes = trxStorage.changes();
+		long from = changes.head();
+		trxStorage.add(createNewTrx(1, 0));
+		trxStorage.updateStatus(1, BankingTransaction.COMPLETE_STATUS);
+		trxStorage.updateAmount(1, 5);
+		trxStorage.delete(1);
+		List<ChangeEvent> events = changes.read(from, 10);
+		assertEquals(List.of(ChangeEvent.Operation.added, ChangeEvent.Operation.status, ChangeEvent.Operation.amount,
+				ChangeEvent.Operation.deleted), events.stream().map(ChangeEvent::getOperation).toList());
+		for (int i = 0; i < events.size(); i++) {
+			assertEquals(from + i, events.get(i).getSequence());
+		}
+		// a delete publishes the removed row
+		assertEquals(List.of(1L, 2L, 3L, 3L),
+				events.stream().map(event -> event.getTransaction().getVersion()).toList());
+		assertEquals(5, events.get(3).getTransaction().getAmount());
+
+		// concurrent writers get consecutive sequences and each id's events stay in order
+		from = changes.head();
+		int writers = 4;
+		int perWriter = 2000;
+		ExecutorService executor = Executors.newFixedThreadPool(writers);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int w = 0; w < writers; w++) {
+			long base = 1000L + w * perWriter;
+			futures.add(executor.submit(() -> {
+				for (long id = base; id < base + perWriter; id++) {
+					trxStorage.add(createNewTrx(id, 0));
+					trxStorage.updateStatus(id, BankingTransaction.FAILED_STATUS);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		events = changes.read(from, Integer.MAX_VALUE);
+		int expected = Math.min(writers * perWriter * 2, changes.capacity());
+		assertEquals(expected, events.size());
+		Set<Long> added = new HashSet<>();
+		for (ChangeEvent event : events) {
+			long id = event.getTransaction().getId();
+			if (event.getOperation() == ChangeEvent.Operation.added) {
+				added.add(id);
+			} else {
+				assertTrue(added.contains(id), event.toString());
+			}
+		}
+
+		// a reader that fell behind finds its sequences overwritten
+		for (int i = 0; i < changes.capacity(); i++) {
+			trxStorage.updateAmount(1000, i);
+		}
+		assertTrue(changes.oldest() > from);
+		assertEquals(0, changes.read(from, 10).size());
+		assertEquals(10, changes.read(changes.oldest(), 10).size());
+	}
+
+	@Test
+	public void testEncodedReads() throws Exception {
+		AtomicLong encodes = new AtomicLong();
+		Function<BankingTransaction, byte[]> encoder = trx -> {
+			encodes.incrementAndGet();
+			return trx.toString().getBytes(StandardCharsets.UTF_8);
+		};
+		trxStorage.add(createNewTrx(1, 0));
+		assertNull(trxStorage.getEncoded(2, encoder));
+		EncodedTransaction first = trxStorage.getEncoded(1, encoder);
+		assertSame(first, trxStorage.getEncoded(1, encoder));
+		assertEquals(1, encodes.get());
+		assertEquals(1, first.getVersion());
+
+		// every change drops the cached encoding
+		trxStorage.updateStatus(1, BankingTransaction.COMPLETE_STATUS);
+		assertEquals(2, trxStorage.getEncoded(1, encoder).getVersion());
+		trxStorage.updateAmount(1, 9);
+		assertEquals(trxStorage.get(1).toString(), new String(trxStorage.getEncoded(1, encoder).getBytes(),
+				StandardCharsets.UTF_8));
+		trxStorage.delete(1);
+		assertNull(trxStorage.getEncoded(1, encoder));
+
+		// readers racing writers never keep an outdated encoding
+		int ids = 50;
+		for (int id = 1; id <= ids; id++) {
+			trxStorage.add(createNewTrx(id, 0));
+		}
+		AtomicBoolean done = new AtomicBoolean();
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		List<Future<?>> readers = new ArrayList<>();
+		for (int t = 0; t < 2; t++) {
+			readers.add(executor.submit(() -> {
+				while (!done.get()) {
+					trxStorage.getEncoded(r.nextLong(1, ids + 1), encoder);
+				}
+			}));
+		}
+		Future<?> writer = executor.submit(() -> {
+			for (int i = 0; i < 20_000; i++) {
+				trxStorage.updateAmount(r.nextLong(1, ids + 1), i);
+			}
+		});
+		writer.get();
+		done.set(true);
+		for (Future<?> reader : readers) {
+			reader.get();
+		}
+		executor.shutdown();
+		for (long id = 1; id <= ids; id++) {
+			assertEquals(trxStorage.get(id).toString(),
+					new String(trxStorage.getEncoded(id, encoder).getBytes(), StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void testForEach() {
+		int size = 5000;
+		List<Long> expected = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			trxStorage.add(createNewTrx(i + 1, 0));
+		}
+		for (int i = 0; i < size; i++) {
+			if (i % 3 == 0) {
+				trxStorage.delete(i + 1);
+			} else {
+				expected.add(trxStorage.get(i + 1).getId());
+			}
+		}
+		expected.sort(Comparator.comparingLong((Long id) -> trxStorage.get(id).getCreated()).thenComparing(id -> id));
+
+		List<Long> visited = new ArrayList<>();
+		trxStorage.forEach(trx -> visited.add(trx.getId()));
+		assertEquals(expected, visited);
+	}
+
+	@Test
+	public void testStorageCaps() {
+		StorageProperties properties = new StorageProperties();
+		properties.setMaxRows(10);
+		TransactionStorage capped = new TransactionStorage(properties);
+		for (int i = 1; i <= 8; i++) {
+			assertTrue(capped.add(createNewTrx(i, 0)));
+		}
+		List<BankingTransaction> batch = new ArrayList<>();
+		for (int i = 9; i <= 12; i++) {
+			batch.add(createNewTrx(i, 0));
+		}
+		assertEquals(List.of(200, 200, 503, 503),
+				capped.addAll(batch).stream().map(BatchItemResult::getStatus).toList());
+		assertThrows(StorageFullException.class, () -> capped.add(createNewTrx(13, 0)));
+		// a delete makes room again
+		capped.delete(1);
+		assertTrue(capped.add(createNewTrx(13, 0)));
+		assertEquals(10, capped.size());
+		capped.cleanup();
+
+		properties = new StorageProperties();
+		properties.setMaxBytes(1);
+		TransactionStorage full = new TransactionStorage(properties);
+		full.add(createNewTrx(1, 0));
+		assertThrows(StorageFullException.class, () -> full.add(createNewTrx(2, 0)));
+		full.cleanup();
+	}
+
+	@Test
+	public void testBatchOperations() {
+		int size = 2500;
+		List<BankingTransaction> batch = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			batch.add(createNewTrx(i + 1, i % 5));
+		}
+		batch.add(createNewTrx(1, 0));
+		BankingTransaction invalid = createNewTrx(size + 1, 0);
+		invalid.setAmount(-1);
+		batch.add(invalid);
+
+		List<BatchItemResult> results = trxStorage.addAll(batch);
+		assertEquals(batch.size(), results.size());
+		for (int i = 0; i < size; i++) {
+			assertEquals(200, results.get(i).getStatus());
+			assertEquals(i + 1, results.get(i).getId());
+		}
+		assertEquals(400, results.get(size).getStatus());
+		assertEquals(BatchItemResult.DUPLICATE, results.get(size).getMessage());
+		assertEquals(400, results.get(size + 1).getStatus());
+		assertEquals(size, trxStorage.size());
+		assertEquals(size, trxStorage.page(1, size * 2).getData().size());
+
+		List<StatusUpdate> updates = List.of(new StatusUpdate(1, BankingTransaction.COMPLETE_STATUS),
+				new StatusUpdate(2, 7), new StatusUpdate(size + 10, BankingTransaction.FAILED_STATUS),
+				new StatusUpdate(3, BankingTransaction.FAILED_STATUS));
+		results = trxStorage.updateStatusAll(updates);
+		assertEquals(List.of(200, 400, 404, 200), results.stream().map(BatchItemResult::getStatus).toList());
+		assertEquals(BankingTransaction.COMPLETE_STATUS, trxStorage.get(1).getStatus());
+		assertEquals(0, trxStorage.get(2).getStatus());
+		assertEquals(BankingTransaction.FAILED_STATUS, trxStorage.get(3).getStatus());
+
+		List<Long> toDelete = new ArrayList<>();
+		for (long id = 1; id <= size; id += 2) {
+			toDelete.add(id);
+		}
+		toDelete.add((long) size + 10);
+		results = trxStorage.deleteAll(toDelete);
+		assertEquals(404, results.get(results.size() - 1).getStatus());
+		assertEquals(toDelete.size() - 1, results.stream().filter(BatchItemResult::succeeded).count());
+		assertEquals(size / 2, trxStorage.size());
+		List<BankingTransaction> remaining = trxStorage.page(1, size).getData();
+		assertEquals(size / 2, remaining.size());
+		remaining.forEach(trx -> assertEquals(0, trx.getId() % 2));
+	}
+
 	private static BankingTransaction createNewTrx(long givenID, int type) {
 		BankingTransaction trx = new BankingTransaction();
 		trx.setId(givenID > 0 ? givenID : r.nextLong(0, MAX_AMOUNT));
@@ -0,0 +1,120 @@
+package com.trxmgr.hometask.unit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import com.trxmgr.hometask.services.RateLimitProperties;
+import com.trxmgr.hometask.services.UserRateLimiter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserRateLimiterTest {
+
+	private static UserRateLimiter createLimiter(double requestsPerSecond, int burst) {
+		RateLimitProperties properties = new RateLimitProperties();
+		properties.setEnabled(true);
+		properties.setDefaults(new RateLimitProperties.Limit(requestsPerSecond, burst));
+		// type 7 gets a tighter limit and a bucket of its own
+		properties.getTypes().put(7, new RateLimitProperties.Limit(requestsPerSecond, 2));
+		return new UserRateLimiter(properties);
+	}
+
+	@Test
+	public void testBurstAndRefill() throws Exception {
+		UserRateLimiter limiter = createLimiter(100, 5);
+		for (int i = 0; i < 5; i++) {
+			assertEquals(0, limiter.tryAcquire(1, 0));
+		}
+		long wait = limiter.tryAcquire(1, 0);
+		assertTrue(wait > 0 && wait <= 10_000_000, String.valueOf(wait));
+		// other users and types with their own limit have their own buckets
+		assertEquals(0, limiter.tryAcquire(2, 0));
+		assertEquals(0, limiter.tryAcquire(1, 7));
+		assertEquals(0, limiter.tryAcquire(1, 7));
+		assertTrue(limiter.tryAcquire(1, 7) > 0);
+		// types without a limit of their own share the default bucket
+		assertTrue(limiter.tryAcquire(1, 3) > 0);
+
+		Thread.sleep(25);
+		assertEquals(0, limiter.tryAcquire(1, 0));
+		assertEquals(0, limiter.tryAcquire(1, 0));
+		// invalid users are left to validation
+		assertEquals(0, limiter.tryAcquire(-1, 0));
+	}
+
+	@Test
+	public void testConcurrentUsers() throws Exception {
+		UserRateLimiter limiter = createLimiter(0.01, 100);
+		int users = 20_000;
+		int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Integer>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			futures.add(executor.submit(() -> {
+				int admitted = 0;
+				for (int round = 0; round < 50; round++) {
+					for (long user = 0; user < users; user++) {
+						if (limiter.tryAcquire(user, 0) == 0) {
+							admitted++;
+						}
+					}
+				}
+				return admitted;
+			}));
+		}
+		int admitted = 0;
+		for (Future<Integer> future : futures) {
+			admitted += future.get();
+		}
+		executor.shutdown();
+		assertEquals(users, limiter.size());
+		// each user gets its burst, give or take requests racing with a stripe rebuild
+		assertTrue(admitted >= users * 100 && admitted < users * 100 + users, String.valueOf(admitted));
+	}
+
+	@Test
+	public void testIdleEviction() throws Exception {
+		UserRateLimiter limiter = createLimiter(1, 2);
+		for (long user = 0; user < 10_000; user++) {
+			limiter.tryAcquire(user, 0);
+		}
+		assertEquals(10_000, limiter.size());
+		Thread.sleep(1100);
+		assertEquals(0, limiter.tryAcquire(20_000, 0));
+		assertEquals(0, limiter.tryAcquire(20_000, 0));
+		assertTrue(limiter.tryAcquire(20_000, 0) > 0);
+		// full buckets are dropped, the one being refilled is kept
+		assertEquals(10_000, limiter.evictIdle());
+		assertEquals(1, limiter.size());
+		assertTrue(limiter.tryAcquire(20_000, 0) > 0);
+	}
+
+	@Test
+	public void testScheduledEviction() throws Exception {
+		RateLimitProperties properties = new RateLimitProperties();
+		properties.setEnabled(true);
+		properties.setDefaults(new RateLimitProperties.Limit(10, 2));
+		properties.setEvictIntervalSeconds(1);
+		UserRateLimiter limiter = new UserRateLimiter(properties);
+		try {
+			for (long user = 0; user < 1000; user++) {
+				limiter.tryAcquire(user, 0);
+			}
+			assertEquals(1000, limiter.size());
+			// idle buckets go without any further request
+			long deadline = System.currentTimeMillis() + 5000;
+			while (limiter.size() > 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(100);
+			}
+			assertEquals(0, limiter.size());
+		} finally {
+			limiter.shutdown();
+		}
+	}
+
+}